@@ -0,0 +1,20 @@
+package org.videodownloader;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Точка входа benchmarks.jar: тот же {@link Main} JMH, но с профайлером gc по умолчанию —
+ * рядом со временем всегда видна аллокация на операцию. Свой {@code -prof} в аргументах его заменяет.
+ */
+public final class BenchmarkMain {
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> all = new ArrayList<>(List.of(args));
+        if (!all.contains("-prof")) all.addAll(0, List.of("-prof", "gc"));
+        Main.main(all.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,47 @@
+package org.videodownloader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Работа над именами и адресами на каждую задачу: имя файла из заголовка или URL, абсолютный адрес embed. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileNameBenchmark {
+    @Param({
+            "Simple title",
+            "Что-то: «Обзор» / часть 2 | финал?  (1080p)  ",
+            "ﬁlm\t\"quotes\"  <tags>  ＦＵＬＬＷＩＤＴＨ __ underscores__"
+    })
+    public String title;
+
+    private final String pageUrl = "https://www.example.com/videos/12345/some-long-video-slug-here.html?ref=home#t=10";
+
+    @Benchmark
+    public String sanitizeForFilename() {
+        return VideoDownloadManager.sanitizeForFilename(title);
+    }
+
+    @Benchmark
+    public String fallbackFromUrl() {
+        return VideoDownloadManager.fallbackFromUrl(pageUrl);
+    }
+
+    @Benchmark
+    public String makeAbsoluteUrl() {
+        return VideoExtractor.makeAbsoluteUrl(pageUrl, "/embed/12345?autoplay=1");
+    }
+}
@@ -0,0 +1,58 @@
+package org.videodownloader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка строк статуса в окне: процент для индикатора и путь сохранённого файла из каждой строки,
+ * схлопывание пачки строк одного кадра консоли.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusLineBenchmark {
+    private final String progress = "[job 12] " + YtDlpLineBenchmark.PROGRESS;
+    private final String saved = "[job 12] Saved to: /home/user/Videos/Some_Title_20250101_120000_abcd1234.mp4";
+    private final List<String> frame = frame();
+
+    /** Кадр консоли при четырёх параллельных загрузках. */
+    private static List<String> frame() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            lines.add("[job " + (i % 4) + "] [download]  " + i + ".0% of ~ 100.00MiB at 2.00MiB/s ETA 00:40");
+            if (i % 10 == 0) lines.add("[job " + (i % 4) + "] " + YtDlpLineBenchmark.INFO);
+        }
+        return lines;
+    }
+
+    @Benchmark
+    public int progressPercent() {
+        return App.progressPercent(progress);
+    }
+
+    @Benchmark
+    public Object statusLine() {
+        // так App разбирает каждую строку: сначала процент, затем «Saved to»
+        int p = App.progressPercent(saved);
+        return p >= 0 ? p : App.savedPath(saved);
+    }
+
+    @Benchmark
+    public List<String> coalesceFrame() {
+        return StatusConsole.coalesce(frame);
+    }
+}
@@ -0,0 +1,87 @@
+package org.videodownloader;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заголовок страницы для имени файла: разбор Jsoup всей страницы из байт (кодировку определяет он сам, как
+ * в fetchPreferredTitle) и выбор og:title / twitter:title / title. Страницы — типичная видеостраница
+ * с разметкой карточек, скриптами и стилями; cards задаёт её размер.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TitleParseBenchmark {
+    /** 20 карточек — около 10 КБ, 400 — около 170 КБ (порядок больших порталов). */
+    @Param({"20", "400"})
+    public int cards;
+
+    @Param({"true", "false"})
+    public boolean ogTitle;
+
+    private byte[] page;
+
+    @Setup
+    public void setup() {
+        page = page(cards, ogTitle).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String page(int cards, boolean ogTitle) {
+        StringBuilder sb = new StringBuilder(1024 + cards * 640);
+        sb.append("<!DOCTYPE html><html lang=\"en\"><head><meta charset=\"utf-8\">")
+                .append("<title>Some Video Title — Example Tube</title>")
+                .append("<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">")
+                .append("<meta name=\"description\" content=\"Watch the video online in HD\">");
+        if (ogTitle) {
+            sb.append("<meta property=\"og:title\" content=\"Some Video Title\">")
+                    .append("<meta property=\"og:type\" content=\"video.other\">")
+                    .append("<meta property=\"og:image\" content=\"https://cdn.example.com/thumbs/12345.jpg\">");
+        }
+        sb.append("<meta name=\"twitter:card\" content=\"player\">")
+                .append("<link rel=\"stylesheet\" href=\"/static/css/app.css\">")
+                .append("<script>window.__CONFIG__ = {\"player\":{\"autoplay\":false,\"hls\":true},\"ads\":[1,2,3]};</script>")
+                .append("<style>.card{display:inline-block;width:240px}.card img{width:100%}</style>")
+                .append("</head><body><header><nav><ul>");
+        for (int i = 0; i < 12; i++) sb.append("<li><a href=\"/category/").append(i).append("\">Category ").append(i).append("</a></li>");
+        sb.append("</ul></nav></header><main><div class=\"player\"><iframe src=\"/embed/12345\" allowfullscreen></iframe></div>")
+                .append("<section class=\"related\">");
+        for (int i = 0; i < cards; i++) {
+            sb.append("<div class=\"card\" data-id=\"").append(10_000 + i).append("\">")
+                    .append("<a href=\"/videos/").append(10_000 + i).append("/related-video-").append(i).append("\">")
+                    .append("<img src=\"https://cdn.example.com/thumbs/").append(10_000 + i)
+                    .append(".jpg\" alt=\"Related video ").append(i).append("\" loading=\"lazy\">")
+                    .append("<span class=\"duration\">12:").append(10 + i % 50).append("</span></a>")
+                    .append("<div class=\"meta\"><a class=\"title\" href=\"/videos/").append(10_000 + i)
+                    .append("\">Related video number ").append(i).append(" &amp; some longer description text</a>")
+                    .append("<span class=\"views\">").append(i * 137).append(" views</span>")
+                    .append("<span class=\"added\">").append(i % 30).append(" days ago</span></div></div>\n");
+        }
+        sb.append("</section></main><footer><p>&copy; Example Tube</p></footer>")
+                .append("<script src=\"/static/js/player.js\" defer></script></body></html>");
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String parseAndPickTitle() throws IOException {
+        return VideoDownloadManager.preferredTitle(
+                Jsoup.parse(new ByteArrayInputStream(page), null, "https://www.example.com/videos/12345"));
+    }
+}
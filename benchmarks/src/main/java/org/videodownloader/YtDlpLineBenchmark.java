@@ -0,0 +1,78 @@
+package org.videodownloader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор вывода yt-dlp на каждую строку (как в handleYtDlpLine): строка прогресса, затем поиск пути файла.
+ * Вывод — типичная загрузка с фрагментами: в основном прогресс, немного служебных строк.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YtDlpLineBenchmark {
+    static final String PROGRESS = "[download]  45.3% of ~ 812.34MiB at    4.21MiB/s ETA 01:42 (frag 112/300)";
+    static final String INFO = "[hlsnative] Downloading m3u8 manifest";
+    static final String DESTINATION = "[download] Destination: /home/user/Videos/Some_Title_20250101_120000_abcd1234.f137.mp4";
+    static final String MERGE = "[Merger] Merging formats into \"/home/user/Videos/Some_Title_20250101_120000_abcd1234.mp4\"";
+
+    private final String[] output = output();
+
+    private static String[] output() {
+        List<String> lines = new ArrayList<>();
+        lines.add("[generic] Extracting URL: https://example.com/watch/123");
+        lines.add(INFO);
+        lines.add("[info] 123: Downloading 1 format(s): 137+140");
+        lines.add(DESTINATION);
+        for (int i = 0; i < 300; i++) {
+            lines.add(String.format(Locale.ROOT, "[download]  %.1f%% of ~ 812.34MiB at    4.21MiB/s ETA 01:42 (frag %d/300)", i / 3.0, i));
+        }
+        lines.add("[download] 100% of  812.34MiB in 00:03:12 at 4.21MiB/s");
+        lines.add(MERGE);
+        lines.add("Deleting original file /home/user/Videos/Some_Title.f137.mp4 (pass -k to keep)");
+        return lines.toArray(String[]::new);
+    }
+
+    @Benchmark
+    public YtDlpProgress progressLine() {
+        return YtDlpProgress.parse(PROGRESS);
+    }
+
+    @Benchmark
+    public Object nonProgressLine() {
+        YtDlpProgress p = YtDlpProgress.parse(INFO);
+        return p != null ? p : VideoDownloadManager.savedPathFrom(INFO);
+    }
+
+    @Benchmark
+    public Object mergeLine() {
+        YtDlpProgress p = YtDlpProgress.parse(MERGE);
+        return p != null ? p : VideoDownloadManager.savedPathFrom(MERGE);
+    }
+
+    /** Весь вывод одной загрузки (~300 строк); время — на весь вывод. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void wholeOutput(Blackhole bh) {
+        for (String line : output) {
+            YtDlpProgress p = YtDlpProgress.parse(line);
+            bh.consume(p != null ? p : VideoDownloadManager.savedPathFrom(line));
+        }
+    }
+}
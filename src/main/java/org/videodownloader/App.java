@@ -11,10 +11,13 @@ import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class App {
 
-    /** Колбэк, который ожидает VideoDownloadManager */
+    /** Колбэк, который ожидает VideoDownloadManager; вызывается из любого потока и не должен блокировать. */
     public interface DownloadListener {
         void onStatusUpdate(String status);
     }
@@ -27,13 +30,23 @@ public class App {
     private JButton cancelBtn;
     private JButton chooseFolderBtn;
     private JButton openFolderBtn;
+    private JButton previewBtn;
     private JTextArea statusArea;
+    private StatusConsole console;
     private JProgressBar progressBar;
 
     private volatile boolean downloading = false;
-    private volatile String lastAnnouncedPath = null; // чтобы не спамить "Saved to: ..."
+    private String lastAnnouncedPath = null; // чтобы не копировать один и тот же путь повторно
+
+    // статусы приходят из рабочих потоков; в UI попадает последнее значение раз в кадр консоли
+    private final AtomicInteger pendingProgress = new AtomicInteger(-1);
+    private final AtomicReference<String> pendingSaved = new AtomicReference<>();
+    private final AtomicBoolean pendingIdle = new AtomicBoolean();
 
     private VideoDownloadManager manager;
+    /** Задачи последнего запуска из окна — их отменяет кнопка Cancel. */
+    private volatile List<DownloadJob> interactiveJobs = List.of();
+    private LoadSampler sampler;
 
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> new App().start());
@@ -48,14 +61,16 @@ public class App {
                 if (downloading && manager != null) {
                     int ans = JOptionPane.showConfirmDialog(
                             frame,
-                            "Загрузка ещё идёт. Действительно выйти?",
+                            "Загрузка ещё идёт. Действительно выйти?\nОна продолжится при следующем запуске.",
                             "Подтверждение",
                             JOptionPane.YES_NO_OPTION,
                             JOptionPane.WARNING_MESSAGE
                     );
                     if (ans != JOptionPane.YES_OPTION) return;
-                    manager.cancelDownload();
                 }
+                // незавершённые задачи остаются в журнале и возобновятся при следующем запуске
+                if (manager != null) manager.shutdown();
+                if (sampler != null) sampler.close();
                 frame.dispose();
                 System.exit(0);
             }
@@ -79,7 +94,7 @@ public class App {
         top.add(urlLbl, gc);
 
         urlField = new JTextField();
-        urlField.setToolTipText("Вставьте ссылку на страницу с видео (Ctrl+L — фокус сюда)");
+        urlField.setToolTipText("Вставьте ссылку на страницу с видео, можно несколько через пробел (Ctrl+L — фокус сюда)");
         gc.gridx = 1; gc.gridy = 0; gc.weightx = 1;
         top.add(urlField, gc);
 
@@ -121,15 +136,29 @@ public class App {
         gc.gridx = 3; gc.gridy = 1; gc.weightx = 0;
         top.add(openFolderBtn, gc);
 
+        previewBtn = new JButton("Preview");
+        previewBtn.setToolTipText("Смотреть ролик, пока он качается (локальный адрес откроется в браузере)");
+        previewBtn.setEnabled(false);
+        gc.gridx = 4; gc.gridy = 1; gc.weightx = 0;
+        top.add(previewBtn, gc);
+
+        JButton logsBtn = new JButton("Logs");
+        logsBtn.setToolTipText("Журнал приложения с фильтром по уровню и задаче");
+        gc.gridx = 5; gc.gridy = 1; gc.weightx = 0;
+        top.add(logsBtn, gc);
+        logsBtn.addActionListener(e -> new LogManager().showLogWindow());
+
         root.add(top, BorderLayout.NORTH);
 
-        // Центр: статус/лог
+        // Лог статусов
         statusArea = new JTextArea();
         statusArea.setEditable(false);
         statusArea.setLineWrap(true);
         statusArea.setWrapStyleWord(true);
+        statusArea.setRows(8);
         JScrollPane scroll = new JScrollPane(statusArea);
-        root.add(scroll, BorderLayout.CENTER);
+        console = new StatusConsole(statusArea, AppConfig.consoleLines(), this::applyPendingStatus);
+        console.start();
 
         // Низ: прогресс
         progressBar = new JProgressBar();
@@ -142,6 +171,20 @@ public class App {
 
         // Менеджер
         manager = new VideoDownloadManager();
+        manager.registerGauges();
+
+        // Центр: таблица загрузок и графики нагрузки над логом
+        JobTableModel jobModel = new JobTableModel();
+        manager.addJobObserver(jobModel);
+        jobModel.start();
+        sampler = new LoadSampler(AppConfig.dashboardWindow());
+        sampler.start(manager::activeJobs);
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Jobs", new JobTablePanel(manager, jobModel, status -> appendStatus("[retry] " + status)));
+        tabs.addTab("Dashboard", new DashboardPanel(sampler));
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tabs, scroll);
+        split.setResizeWeight(0.6);
+        root.add(split, BorderLayout.CENTER);
 
         // Инициализация папки при старте
         boolean ready = manager.initOutputDirOnStartup(frame);
@@ -189,7 +232,8 @@ public class App {
         // Actions
         downloadBtn.addActionListener(e -> startDownload());
         cancelBtn.addActionListener(e -> {
-            manager.cancelDownload();
+            // только то, что запущено из окна; восстановленные и фоновые задачи отменяются в таблице задач
+            interactiveJobs.forEach(manager::cancel);
             appendStatus("Cancel requested");
             setBusy(false);
         });
@@ -217,6 +261,7 @@ public class App {
             }
         });
         openFolderBtn.addActionListener(e -> openFolderSafe());
+        previewBtn.addActionListener(e -> openPreview());
 
         // Shortcuts
         frame.getRootPane().setDefaultButton(downloadBtn); // Enter = Download
@@ -259,11 +304,20 @@ public class App {
         frame.pack();
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
+
+        manager.startMetricsServer();
+        // докачать то, что не успело завершиться в прошлый раз; окно при этом свободно —
+        // новые ссылки идут как интерактивные и обгоняют восстановленные задачи
+        manager.resumeUnfinished(status -> appendStatus("[resumed] " + status));
+        if (!AppConfig.syncInterval().isZero()) {
+            manager.startPeriodicSync(AppConfig.syncInterval(), status -> appendStatus("[sync] " + status));
+        }
     }
 
     private void startDownload() {
-        String url = urlField.getText().trim();
-        if (url.isEmpty() || !looksLikeUrl(url)) {
+        // можно вставить несколько ссылок через пробел — они уйдут одной пачкой
+        List<String> urls = List.of(urlField.getText().trim().split("\\s+"));
+        if (urls.getFirst().isEmpty() || !urls.stream().allMatch(this::looksLikeUrl)) {
             urlField.requestFocusInWindow();
             urlField.selectAll();
             JOptionPane.showMessageDialog(frame, "Введите корректный http/https URL.", "Некорректный URL", JOptionPane.ERROR_MESSAGE);
@@ -273,26 +327,45 @@ public class App {
         setBusy(true);
         appendStatus("Starting download…");
         lastAnnouncedPath = null;
+        pendingIdle.set(false);
 
-        manager.downloadVideo(url, status -> {
-            maybeUpdateProgress(status);
-            appendStatus(status);
-
-            var saved = manager.getLastSavedFile();
-            if (saved != null) {
-                String full = saved.toAbsolutePath().normalize().toString();
-                if (!full.equals(lastAnnouncedPath)) {
-                    appendStatus("Saved to: " + full);
-                    copyToClipboard(full);
-                    lastAnnouncedPath = full;
-                }
-            }
+        interactiveJobs = manager.downloadVideos(urls, this::onManagerStatus);
+    }
 
-            String s = status.toLowerCase();
-            if (s.contains("download complete") || s.contains("download failed")) {
-                SwingUtilities.invokeLater(() -> setBusy(false));
-            }
-        });
+    /**
+     * Статус от менеджера загрузок (любой поток): строка уходит в консоль, а прогресс, сохранённый файл
+     * и конец загрузки только запоминаются — в UI их переносит {@link #applyPendingStatus} раз в кадр.
+     */
+    private void onManagerStatus(String status) {
+        int progress = progressPercent(status);
+        if (progress >= 0) pendingProgress.set(progress);
+
+        String saved = savedPath(status);
+        if (saved != null) pendingSaved.set(saved);
+
+        String s = status.toLowerCase();
+        if (s.contains("download complete") || s.contains("download failed")) {
+            pendingIdle.set(true);
+        }
+        console.append(status);
+    }
+
+    /** Кадр консоли (EDT): последнее значение прогресса, путь в буфер обмена, конец загрузки. */
+    private void applyPendingStatus() {
+        int progress = pendingProgress.getAndSet(-1);
+        if (progress >= 0 && downloading) {
+            progressBar.setIndeterminate(false);
+            progressBar.setValue(progress);
+            progressBar.setString(progress + "%");
+        }
+        String saved = pendingSaved.getAndSet(null);
+        if (saved != null && !saved.equals(lastAnnouncedPath)) {
+            copyToClipboard(saved);
+            lastAnnouncedPath = saved;
+        }
+        if (pendingIdle.getAndSet(false)) {
+            setBusy(false);
+        }
     }
 
     private void setBusy(boolean busy) {
@@ -301,6 +374,7 @@ public class App {
         cancelBtn.setEnabled(busy);
         chooseFolderBtn.setEnabled(!busy);
         openFolderBtn.setEnabled(!busy && new File(manager.getSelectedOutputPath()).exists());
+        previewBtn.setEnabled(busy || manager.getLastSavedFile() != null);
         urlField.setEnabled(!busy);
         updateClearButtonState();
         progressBar.setIndeterminate(busy);
@@ -333,6 +407,21 @@ public class App {
         openFolderBtn.setEnabled(new File(path).exists());
     }
 
+    /** Предпросмотр текущей загрузки; адрес пишем в лог — его можно открыть и в VLC. */
+    private void openPreview() {
+        var uri = manager.previewCurrent();
+        if (uri.isEmpty()) {
+            appendStatus("Nothing to preview yet");
+            return;
+        }
+        appendStatus("Preview: " + uri.get());
+        try {
+            Desktop.getDesktop().browse(uri.get());
+        } catch (Exception ex) {
+            appendStatus("Cannot open browser: " + ex.getMessage());
+        }
+    }
+
     private void openFolderSafe() {
         try {
             File f = Paths.get(manager.getSelectedOutputPath()).toFile();
@@ -347,11 +436,9 @@ public class App {
         }
     }
 
+    /** Строка в лог окна; из любого потока. */
     private void appendStatus(String msg) {
-        SwingUtilities.invokeLater(() -> {
-            statusArea.append(msg + System.lineSeparator());
-            statusArea.setCaretPosition(statusArea.getDocument().getLength());
-        });
+        console.append(msg);
     }
 
     private boolean looksLikeUrl(String s) {
@@ -364,8 +451,8 @@ public class App {
         }
     }
 
-    /** Пробуем вытащить проценты из строки статуса (например, если yt-dlp пробрасывает прогресс). */
-    private void maybeUpdateProgress(String status) {
+    /** Пробуем вытащить проценты из строки статуса (например, если yt-dlp пробрасывает прогресс); -1 — нет. */
+    static int progressPercent(String status) {
         String s = status.trim();
         int i = s.indexOf('%');
         if (i > 0) {
@@ -373,16 +460,27 @@ public class App {
             while (j >= 0 && (Character.isDigit(s.charAt(j)) || s.charAt(j) == '.')) j--;
             try {
                 double p = Double.parseDouble(s.substring(j + 1, i));
-                int val = Math.max(0, Math.min(100, (int) Math.round(p)));
-                SwingUtilities.invokeLater(() -> {
-                    progressBar.setIndeterminate(false);
-                    progressBar.setValue(val);
-                    progressBar.setString(val + "%");
-                });
+                return Math.max(0, Math.min(100, (int) Math.round(p)));
             } catch (Exception ignored) {
                 // оставим индикатор как есть
             }
         }
+        return -1;
+    }
+
+    /** Путь из строк «Saved to: …» / «Already downloaded: …» (с префиксом задачи пачки или без); null — не они. */
+    static String savedPath(String status) {
+        for (String marker : new String[]{"Saved to: ", "Already downloaded: "}) {
+            int i = status.indexOf(marker);
+            if (i >= 0) {
+                try {
+                    return Paths.get(status.substring(i + marker.length()).trim()).toAbsolutePath().normalize().toString();
+                } catch (Exception e) {
+                    return null;
+                }
+            }
+        }
+        return null;
     }
 
     private void copyToClipboard(String text) {
@@ -0,0 +1,202 @@
+package org.videodownloader;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Настройки приложения, задаваемые через системные свойства (-Dvideodownloader.*).
+ * Все значения имеют разумные значения по умолчанию, так что запуск без параметров работает как раньше.
+ */
+public final class AppConfig {
+    private AppConfig() {}
+
+    private static final String PREFIX = "videodownloader.";
+
+    /** Окно без прогресса, после которого процесс yt-dlp считается зависшим. */
+    public static Duration stallTimeout() {
+        return Duration.ofSeconds(Math.max(5, Long.getLong(PREFIX + "stallTimeoutSec", 120)));
+    }
+
+    /**
+     * Окно сторожа во время слияния и постобработки ffmpeg: они молчат до конца работы,
+     * а на больших файлах идут минутами.
+     */
+    public static Duration postProcessingTimeout() {
+        return Duration.ofMinutes(Math.max(1, Long.getLong(PREFIX + "postProcessingTimeoutMin", 30)));
+    }
+
+    /** Исполняемый файл yt-dlp (имя в PATH или путь); нагрузочный тест подставляет сюда заглушку. */
+    public static String ytDlp() {
+        String custom = System.getProperty(PREFIX + "ytdlp");
+        return custom == null || custom.isBlank() ? "yt-dlp" : custom;
+    }
+
+    /** Сколько раз перезапускать зависшую загрузку через докачку, прежде чем сдаться. */
+    public static int stallRestarts() {
+        return Math.max(0, Integer.getInteger(PREFIX + "stallRestarts", 3));
+    }
+
+    /** Папка состояния приложения (транскрипты, индексы, журналы). */
+    public static Path dataDir() {
+        String custom = System.getProperty(PREFIX + "home");
+        if (custom != null && !custom.isBlank()) return Paths.get(custom);
+        return Paths.get(System.getProperty("user.home"), ".videodownloader");
+    }
+
+    /** Сколько последних строк вывода yt-dlp держать в памяти на задачу. */
+    public static int outputTailLines() {
+        return Math.max(1, Integer.getInteger(PREFIX + "outputTailLines", 200));
+    }
+
+    /** Предел хвоста вывода в байтах. */
+    public static long outputTailBytes() {
+        return Math.max(1024, Long.getLong(PREFIX + "outputTailBytes", 64 * 1024));
+    }
+
+    /** off | on_failure | always — когда писать вывод yt-dlp в transcripts/job-N.log. */
+    public static TranscriptWriter.Mode transcriptMode() {
+        String v = System.getProperty(PREFIX + "transcripts", "on_failure");
+        try {
+            return TranscriptWriter.Mode.valueOf(v.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return TranscriptWriter.Mode.ON_FAILURE;
+        }
+    }
+
+    /** Размер файла транскрипта, после которого он ротируется. */
+    public static long transcriptMaxBytes() {
+        return Math.max(64 * 1024, Long.getLong(PREFIX + "transcriptMaxBytes", 8L * 1024 * 1024));
+    }
+
+    /** auto | conservative | balanced | aggressive. null означает auto (выбор по истории хоста). */
+    public static PerformanceProfile performanceProfile() {
+        String v = System.getProperty(PREFIX + "profile", "auto").trim().toUpperCase(Locale.ROOT);
+        if (v.equals("AUTO")) return null;
+        try {
+            return PerformanceProfile.valueOf(v);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Объединять ли ссылки одного сайта в один запуск yt-dlp. */
+    public static boolean batchEnabled() {
+        return Boolean.parseBoolean(System.getProperty(PREFIX + "batch", "true"));
+    }
+
+    /** Максимум URL в одном пакетном запуске yt-dlp. */
+    public static int batchSize() {
+        return Math.max(1, Integer.getInteger(PREFIX + "batchSize", 20));
+    }
+
+    /** Не качать повторно то, что уже есть в истории загрузок (и файл на месте). */
+    public static boolean skipDuplicates() {
+        return Boolean.parseBoolean(System.getProperty(PREFIX + "skipDuplicates", "true"));
+    }
+
+    /** link | delete | off — что делать с файлом, содержимое которого уже есть в библиотеке. */
+    public static ContentLibrary.Mode dedupeMode() {
+        return ContentLibrary.parseMode(System.getProperty(PREFIX + "dedupe", "link"));
+    }
+
+    /** Сколько задач очереди качается одновременно. */
+    public static int maxConcurrentJobs() {
+        return Math.max(1, Integer.getInteger(PREFIX + "maxConcurrentJobs", 3));
+    }
+
+    /** Сколько задач одного сайта качается одновременно (общий предел на все плейлисты и пакеты). */
+    public static int maxJobsPerHost() {
+        return Math.max(1, Integer.getInteger(PREFIX + "maxJobsPerHost", 3));
+    }
+
+    /** off | auto | always — раскрывать ли плейлисты и каналы в отдельные задачи (auto — по виду ссылки). */
+    static PlaylistExpander.Mode playlistMode() {
+        return PlaylistExpander.parseMode(System.getProperty(PREFIX + "playlists", "auto"));
+    }
+
+    /** Список источников для синхронизации каналов: строка — {@code URL [окно]}. */
+    public static Path syncSources() {
+        String custom = System.getProperty(PREFIX + "syncSources");
+        if (custom != null && !custom.isBlank()) return Paths.get(custom);
+        return dataDir().resolve("sources.txt");
+    }
+
+    /** Интервал синхронизации каналов в минутах; 0 — не синхронизировать. */
+    public static Duration syncInterval() {
+        return Duration.ofMinutes(Math.max(0, Long.getLong(PREFIX + "syncIntervalMin", 0)));
+    }
+
+    /** Предел длительности записи живой трансляции; 0 — пока идёт трансляция или до отмены. */
+    public static Duration liveMaxDuration() {
+        return Duration.ofMinutes(Math.max(0, Long.getLong(PREFIX + "liveMaxMin", 240)));
+    }
+
+    /** Предел размера записи живой трансляции в байтах; 0 — без предела. */
+    public static long liveMaxBytes() {
+        return Math.max(0, Long.getLong(PREFIX + "liveMaxMB", 0)) * 1024 * 1024;
+    }
+
+    /** Сколько последних строк держит лог окна; старые выпадают. */
+    public static int consoleLines() {
+        return Math.max(100, Integer.getInteger(PREFIX + "consoleLines", 5000));
+    }
+
+    /** Окно графиков нагрузки. */
+    public static Duration dashboardWindow() {
+        return Duration.ofSeconds(Math.max(10, Long.getLong(PREFIX + "dashboardWindowSec", 300)));
+    }
+
+    /** Порт локального сервера предпросмотра (только 127.0.0.1); 0 — любой свободный. */
+    public static int previewPort() {
+        return Math.max(0, Integer.getInteger(PREFIX + "previewPort", 0));
+    }
+
+    /** Порт экспорта метрик Prometheus ({@code /metrics}); -1 (по умолчанию) — выключен, 0 — любой свободный. */
+    public static int metricsPort() {
+        return Math.max(-1, Integer.getInteger(PREFIX + "metricsPort", -1));
+    }
+
+    /** Адрес, на котором слушает экспорт метрик; для скрейпа с другой машины — 0.0.0.0. */
+    public static String metricsBind() {
+        return System.getProperty(PREFIX + "metricsBind", "127.0.0.1");
+    }
+
+    /** Ожидание, поднимающее задачу в очереди на класс приоритета выше. */
+    public static Duration queueAging() {
+        return Duration.ofMinutes(Math.max(1, Long.getLong(PREFIX + "queueAgingMin", 10)));
+    }
+
+    /** За сколько до срока задача считается срочной (идёт как интерактивная). */
+    public static Duration deadlineUrgency() {
+        return Duration.ofMinutes(Math.max(0, Long.getLong(PREFIX + "deadlineUrgencyMin", 15)));
+    }
+
+    /** Узнавать размер роликов из метаданных yt-dlp перед постановкой в очередь. */
+    public static boolean sizeProbe() {
+        return Boolean.parseBoolean(System.getProperty(PREFIX + "sizeProbe", "true"));
+    }
+
+    /** Папка, куда сессии Chrome записывают архивы страниц ({@link PageRecorder}); null — не записывать. */
+    public static Path recordDir() {
+        String custom = System.getProperty(PREFIX + "record");
+        return custom == null || custom.isBlank() ? null : Paths.get(custom);
+    }
+
+    /** Архив страницы, из которого Chrome получает все ответы вместо сети ({@link PageReplayer}); null — сеть. */
+    public static Path replayDir() {
+        String custom = System.getProperty(PREFIX + "replay");
+        return custom == null || custom.isBlank() ? null : Paths.get(custom);
+    }
+
+    /**
+     * Окно времени videodownloader.window.&lt;name&gt; (см. {@link DownloadWindow}); null, если не задано.
+     * Ошибка в описании — IllegalArgumentException.
+     */
+    public static DownloadWindow window(String name) {
+        String spec = System.getProperty(PREFIX + "window." + name);
+        if (spec == null || spec.isBlank()) return null;
+        return DownloadWindow.parse(name, spec);
+    }
+}
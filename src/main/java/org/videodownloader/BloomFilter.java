@@ -0,0 +1,56 @@
+package org.videodownloader;
+
+/**
+ * Фильтр Блума поверх 64-битных отпечатков ключей.
+ * «Нет» — точно нет (O(1), без обращения к диску); «да» — нужно проверить в хранилище.
+ * Принимает уже готовый отпечаток, поэтому его можно перестроить большего размера без исходных строк.
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashes;
+
+    /** Размер под ожидаемое число ключей при заданной доле ложных срабатываний. */
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        long n = Math.max(1, expectedKeys);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, m);
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (m + 63) >>> 6)];
+        this.bitCount = (long) bits.length << 6;
+        this.hashes = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    public void add(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long idx = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            bits[(int) (idx >>> 6)] |= 1L << idx;
+        }
+    }
+
+    public boolean mightContain(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            long idx = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((bits[(int) (idx >>> 6)] & (1L << idx)) == 0) return false;
+        }
+        return true;
+    }
+
+    /** 64-битный отпечаток строки: FNV-1a с финальным перемешиванием splitmix64. */
+    public static long fingerprint(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 30;
+        h *= 0xbf58476d1ce4e5b9L;
+        h ^= h >>> 27;
+        h *= 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        return h;
+    }
+}
@@ -0,0 +1,68 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Токен отмены одной загрузки. Каждый этап (получение заголовка, yt-dlp, Selenium)
+ * регистрирует в нём, как себя прервать; cancel() вызывает все зарегистрированные действия.
+ * Регистрация после отмены срабатывает сразу — так не теряется гонка «запустили процесс / нажали Cancel».
+ */
+public final class CancellationToken {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CancellationToken.class);
+
+    private final List<Runnable> hooks = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    /** Регистрация действия отмены; close() снимает его, когда этап закончился сам. */
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException("Download cancelled");
+    }
+
+    public Registration onCancel(Runnable hook) {
+        synchronized (hooks) {
+            if (!cancelled) {
+                hooks.add(hook);
+                return () -> {
+                    synchronized (hooks) {
+                        hooks.remove(hook);
+                    }
+                };
+            }
+        }
+        runSafely(hook);
+        return () -> {};
+    }
+
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (hooks) {
+            if (cancelled) return;
+            cancelled = true;
+            toRun = new ArrayList<>(hooks);
+            hooks.clear();
+        }
+        toRun.forEach(CancellationToken::runSafely);
+    }
+
+    private static void runSafely(Runnable hook) {
+        try {
+            hook.run();
+        } catch (Exception e) {
+            LOGGER.warn("Cancellation hook failed: {}", e.toString());
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Инкрементальная синхронизация каналов и страниц: для каждого источника хранится состояние
+ * (ETag/Last-Modified страницы, хеш её тела, курсор — самый новый ролик прошлого прохода, и множество
+ * уже виденных id), поэтому повторный проход стоит одного условного запроса на источник:
+ * <ol>
+ *   <li>GET с If-None-Match/If-Modified-Since; 304 или то же тело — источник не менялся, дальше не идём;</li>
+ *   <li>иначе — листинг через {@link PlaylistExpander#listUntil}, который останавливается на курсоре
+ *       или на {@link #KNOWN_RUN} подряд уже виденных роликах;</li>
+ *   <li>в очередь уходят только новые элементы.</li>
+ * </ol>
+ * Состояние пишется {@link #commit} только после постановки новых задач в очередь: сбой между листингом
+ * и постановкой не теряет ролики, в худшем случае они будут найдены ещё раз.
+ * <p>
+ * Курсор двигается только после полного листинга. Оборванный листинг (таймаут, ошибка yt-dlp) оставляет
+ * прежний курсор и помечает источник «недочитанным»: следующий проход не останавливается на
+ * {@link #KNOWN_RUN} виденных роликах — иначе он упёрся бы в только что поставленные и не дошёл бы
+ * до более старых, до которых оборванный листинг не добрался.
+ */
+final class ChannelSync {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChannelSync.class);
+
+    /** Столько виденных подряд роликов — и дальше листинг уже не читаем (закреплённые ролики ломают курсор). */
+    static final int KNOWN_RUN = 5;
+    /** Сколько последних id помнить на источник. */
+    static final int MAX_SEEN = 5000;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(20);
+
+    /** Источник из sources.txt: ссылка и необязательное имя окна videodownloader.window.&lt;name&gt;. */
+    record Source(String url, String window) {}
+
+    /** Сохраняемое состояние источника. */
+    static final class State {
+        String etag;
+        String lastModified;
+        String bodyHash;
+        String cursor;
+        /** Прошлый листинг оборвался: идти до курсора, не останавливаясь на виденных подряд. */
+        boolean backfill;
+        /** В порядке добавления: при переполнении забываются самые старые. */
+        final LinkedHashSet<String> seen = new LinkedHashSet<>();
+    }
+
+    /** Итог проверки источника. Пустой fresh при unchanged == false — страница менялась, а ролики нет. */
+    record Result(Source source, List<PlaylistExpander.Entry> fresh, boolean unchanged, boolean failed, State next) {}
+
+    /** Листинг источника до элемента, на котором stopAt вернул true (см. {@link PlaylistExpander#listUntil}). */
+    @FunctionalInterface
+    interface Lister {
+        PlaylistExpander.Listing list(String url, CancellationToken token, Predicate<PlaylistExpander.Entry> stopAt);
+    }
+
+    private final Path stateDir;
+    private final HttpClient http;
+    private final String userAgent;
+    private final Lister lister;
+
+    ChannelSync(Path stateDir, HttpClient http, String userAgent) {
+        this(stateDir, http, userAgent, PlaylistExpander::listUntil);
+    }
+
+    ChannelSync(Path stateDir, HttpClient http, String userAgent, Lister lister) {
+        this.stateDir = stateDir;
+        this.http = http;
+        this.userAgent = userAgent;
+        this.lister = lister;
+    }
+
+    /** Список источников: строка — {@code URL [окно]}, {@code #} — комментарий. Нет файла — нет источников. */
+    static List<Source> readSources(Path file) throws IOException {
+        if (!Files.exists(file)) return List.of();
+        List<Source> sources = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String s = line.strip();
+            if (s.isEmpty() || s.startsWith("#")) continue;
+            String[] f = s.split("\\s+");
+            sources.add(new Source(f[0], f.length > 1 ? f[1] : null));
+        }
+        return sources;
+    }
+
+    /** Проверить источник; сеть и yt-dlp — только если условный запрос не сказал «без изменений». */
+    Result check(Source source, CancellationToken token) {
+        State prev = load(source.url());
+        State next = copyValidators(prev);
+        if (conditionalGet(source.url(), prev, next)) {
+            LOGGER.debug("Source unchanged: {}", source.url());
+            return new Result(source, List.of(), true, false, prev);
+        }
+
+        int[] knownInRow = {0};
+        PlaylistExpander.Listing listing = lister.list(source.url(), token, e -> {
+            if (e.id().equals(prev.cursor)) return true;
+            if (prev.backfill) return false;
+            knownInRow[0] = prev.seen.contains(e.id()) ? knownInRow[0] + 1 : 0;
+            return knownInRow[0] >= KNOWN_RUN;
+        });
+        if (!listing.complete() && listing.entries().isEmpty()) {
+            // валидаторы не сохраняем: иначе следующий проход получит 304 и пропустит ролики
+            return new Result(source, List.of(), false, true, prev);
+        }
+
+        List<PlaylistExpander.Entry> fresh = new ArrayList<>();
+        for (PlaylistExpander.Entry e : listing.entries()) {
+            if (!prev.seen.contains(e.id())) fresh.add(e);
+        }
+        // самые новые — в конец, чтобы при обрезке уходили самые старые
+        for (PlaylistExpander.Entry e : listing.entries().reversed()) {
+            next.seen.remove(e.id());
+            next.seen.add(e.id());
+        }
+        while (next.seen.size() > MAX_SEEN) next.seen.removeFirst();
+        if (listing.complete()) {
+            if (!listing.entries().isEmpty()) next.cursor = listing.entries().getFirst().id();
+            next.backfill = false;
+        } else {
+            // часть роликов есть, но листинг оборвался — ни курсор, ни валидаторы не двигаем, проверим ещё раз
+            next.cursor = prev.cursor;
+            next.backfill = true;
+            next.etag = prev.etag;
+            next.lastModified = prev.lastModified;
+            next.bodyHash = prev.bodyHash;
+        }
+        return new Result(source, fresh, false, false, next);
+    }
+
+    /** Запомнить состояние после постановки новых роликов в очередь. */
+    void commit(Result result) throws IOException {
+        if (result.unchanged() || result.failed()) return;
+        State s = result.next();
+        StringBuilder sb = new StringBuilder();
+        sb.append("url\t").append(result.source().url()).append('\n');
+        if (s.etag != null) sb.append("etag\t").append(s.etag).append('\n');
+        if (s.lastModified != null) sb.append("lastModified\t").append(s.lastModified).append('\n');
+        if (s.bodyHash != null) sb.append("bodyHash\t").append(s.bodyHash).append('\n');
+        if (s.cursor != null) sb.append("cursor\t").append(s.cursor).append('\n');
+        if (s.backfill) sb.append("backfill\ttrue\n");
+        for (String id : s.seen) sb.append("seen\t").append(id).append('\n');
+
+        Files.createDirectories(stateDir);
+        Path file = stateFile(result.source().url());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    State load(String url) {
+        State s = new State();
+        Path file = stateFile(url);
+        if (!Files.exists(file)) return s;
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                int tab = line.indexOf('\t');
+                if (tab < 0) continue;
+                String value = line.substring(tab + 1);
+                switch (line.substring(0, tab)) {
+                    case "etag" -> s.etag = value;
+                    case "lastModified" -> s.lastModified = value;
+                    case "bodyHash" -> s.bodyHash = value;
+                    case "cursor" -> s.cursor = value;
+                    case "backfill" -> s.backfill = Boolean.parseBoolean(value);
+                    case "seen" -> s.seen.add(value);
+                    default -> { }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read sync state {}, source will be listed in full: {}", file, e.toString());
+            return new State();
+        }
+        return s;
+    }
+
+    private Path stateFile(String url) {
+        return stateDir.resolve(Long.toHexString(BloomFilter.fingerprint(url)) + ".state");
+    }
+
+    private static State copyValidators(State prev) {
+        State s = new State();
+        s.etag = prev.etag;
+        s.lastModified = prev.lastModified;
+        s.bodyHash = prev.bodyHash;
+        s.cursor = prev.cursor;
+        s.backfill = prev.backfill;
+        s.seen.addAll(prev.seen);
+        return s;
+    }
+
+    /**
+     * Условный запрос страницы источника. true — страница не менялась (304 или тело с тем же хешем);
+     * новые валидаторы записываются в next. Сетевая ошибка — не повод пропускать источник: решает листинг.
+     */
+    private boolean conditionalGet(String url, State prev, State next) {
+        HttpRequest.Builder rb;
+        try {
+            rb = HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT).header("User-Agent", userAgent).GET();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (prev.etag != null) rb.header("If-None-Match", prev.etag);
+        if (prev.lastModified != null) rb.header("If-Modified-Since", prev.lastModified);
+        try {
+            HttpResponse<InputStream> resp = http.send(rb.build(), HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = resp.body()) {
+                if (resp.statusCode() == 304) return true;
+                if (resp.statusCode() != 200) return false;
+                next.etag = resp.headers().firstValue("ETag").orElse(null);
+                next.lastModified = resp.headers().firstValue("Last-Modified").orElse(null);
+                next.bodyHash = sha256(body);
+                // без валидаторов сервер всё равно отдаёт тело — сравниваем его с прошлым
+                return prev.bodyHash != null && prev.bodyHash.equals(next.bodyHash);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Conditional GET failed for {}: {}", url, e.toString());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String sha256(InputStream in) throws IOException {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] buf = new byte[16 * 1024];
+            int n;
+            while ((n = in.read(buf)) > 0) md.update(buf, 0, n);
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
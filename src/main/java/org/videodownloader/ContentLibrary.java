@@ -0,0 +1,208 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Индекс содержимого библиотеки загрузок для дедупликации одинаковых роликов,
+ * пришедших с разных страниц (зеркала, embed).
+ * <p>
+ * Двухступенчатая проверка:
+ * <ol>
+ *   <li>частичный ключ — размер + SHA-256 первых и последних 64 КиБ. Читает максимум 128 КиБ
+ *       и отсекает почти все несовпадения;</li>
+ *   <li>полный SHA-256 — только при совпадении частичного ключа. Для файлов, которые пишем сами
+ *       через {@link HashingOutputStream}, он уже посчитан во время записи.</li>
+ * </ol>
+ * Дубликат заменяется жёсткой ссылкой на уже имеющийся файл (или удаляется — по настройке).
+ * Хранилище — только дописываемый library.idx: {@code размер\tчастичный\tполный|-\tпуть}, поздняя строка главнее.
+ */
+public class ContentLibrary {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentLibrary.class);
+
+    /** Сколько байт с каждого края файла входит в частичный ключ. */
+    static final int EDGE_BYTES = 64 * 1024;
+
+    public enum Mode { OFF, LINK, DELETE }
+
+    public record Fingerprint(long size, String partial, String full) {}
+
+    private final Path indexFile;
+    private final Map<String, List<Path>> byPartial = new HashMap<>();
+    private final Map<Path, String> fullByPath = new HashMap<>();
+
+    public ContentLibrary(Path indexFile) {
+        this.indexFile = indexFile;
+        load();
+    }
+
+    /**
+     * Проверить свежескачанный файл. Возвращает путь, по которому теперь лежит содержимое:
+     * тот же (уникален или заменён жёсткой ссылкой) или существующий (режим DELETE).
+     */
+    public Path deduplicate(Path file, Mode mode) {
+        return deduplicate(file, null, mode);
+    }
+
+    /** То же, но с отпечатком, посчитанным при записи (полный хеш не пересчитывается). */
+    public synchronized Path deduplicate(Path file, Fingerprint known, Mode mode) {
+        if (mode == Mode.OFF || file == null || !Files.isRegularFile(file)) return file;
+        Path self = file.toAbsolutePath().normalize();
+        try {
+            Fingerprint fp = known != null ? known : new Fingerprint(Files.size(self), partialKey(self), null);
+            String fullHash = fp.full();
+            List<Path> sameEdges = byPartial.getOrDefault(fp.partial(), List.of());
+            if (sameEdges.contains(self)) return self;   // уже в индексе
+
+            for (Path candidate : List.copyOf(sameEdges)) {
+                // файл мог быть заменён после индексации — старому хешу верим, только если размер тот же
+                if (candidate.equals(self) || !Files.isRegularFile(candidate) || Files.size(candidate) != fp.size()) continue;
+                if (Files.isSameFile(candidate, self)) return self;
+
+                // частичные ключи совпали — только теперь читаем файлы целиком
+                if (fullHash == null) fullHash = fullHash(self);
+                String other = fullByPath.get(candidate);
+                if (other == null) {
+                    other = fullHash(candidate);
+                    append(Files.size(candidate), fp.partial(), other, candidate);
+                }
+                if (other.equals(fullHash)) {
+                    return replaceWithExisting(self, candidate, mode, fp, fullHash);
+                }
+            }
+            append(fp.size(), fp.partial(), fullHash, self);
+            return self;
+        } catch (IOException e) {
+            LOGGER.warn("Deduplication skipped for {}: {}", file, e.toString());
+            return file;
+        }
+    }
+
+    private Path replaceWithExisting(Path duplicate, Path original, Mode mode, Fingerprint fp, String fullHash) throws IOException {
+        long size = fp.size();
+        if (mode == Mode.DELETE) {
+            Files.delete(duplicate);
+            LOGGER.info("Duplicate of {} dropped: {} ({} bytes reclaimed)", original, duplicate, size);
+            return original;
+        }
+        // ссылку создаём рядом и атомарно подменяем файл — имя дубликата не пропадает ни на миг
+        Path tmp = duplicate.resolveSibling(duplicate.getFileName() + ".dedup.tmp");
+        try {
+            Files.deleteIfExists(tmp);
+            Files.createLink(tmp, original);
+            Files.move(tmp, duplicate, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.deleteIfExists(tmp);
+            // другая ФС или нет прав на ссылки — оставляем копию, но индексируем её
+            LOGGER.warn("Cannot hard-link duplicate {} to {}: {}", duplicate, original, e.toString());
+            append(size, fp.partial(), fullHash, duplicate);
+            return duplicate;
+        }
+        append(size, fp.partial(), fullHash, duplicate);
+        LOGGER.info("Duplicate {} replaced by hard link to {} ({} bytes reclaimed)", duplicate, original, size);
+        return duplicate;
+    }
+
+    /** Частичный ключ файла на диске: читаем не больше 2 × EDGE_BYTES. */
+    static String partialKey(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            byte[] head = readAt(ch, 0, (int) Math.min(size, EDGE_BYTES));
+            int tailLen = (int) Math.min(size, EDGE_BYTES);
+            byte[] tail = readAt(ch, size - tailLen, tailLen);
+            return partialKey(size, head, tail);
+        }
+    }
+
+    static String partialKey(long size, byte[] head, byte[] tail) {
+        MessageDigest md = HashingOutputStream.sha256();
+        md.update(head);
+        md.update(tail);
+        return size + ":" + hex(md.digest()).substring(0, 32);
+    }
+
+    static String fullHash(Path file) throws IOException {
+        MessageDigest md = HashingOutputStream.sha256();
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) != -1) md.update(buf, 0, n);
+        }
+        return hex(md.digest());
+    }
+
+    static String hex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static byte[] readAt(FileChannel ch, long pos, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) break;
+        }
+        return buf.array();
+    }
+
+    private void index(String partial, String full, Path path) {
+        List<Path> list = byPartial.computeIfAbsent(partial, k -> new ArrayList<>(1));
+        if (!list.contains(path)) list.add(path);
+        if (full != null) fullByPath.put(path, full);
+    }
+
+    private void append(long size, String partial, String full, Path path) {
+        index(partial, full, path);
+        try {
+            Files.createDirectories(indexFile.toAbsolutePath().getParent());
+            try (BufferedWriter w = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                w.write(size + "\t" + partial + "\t" + (full == null ? "-" : full) + "\t" + path);
+                w.newLine();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot append to library index {}: {}", indexFile, e.toString());
+        }
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(indexFile)) return;
+        int n = 0;
+        try (var lines = Files.lines(indexFile, StandardCharsets.UTF_8)) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                String[] f = line.split("\t", -1);
+                if (f.length != 4) continue;
+                index(f[1], f[2].equals("-") ? null : f[2], Paths.get(f[3]));
+                n++;
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Cannot read library index {}: {}", indexFile, e.toString());
+        }
+        LOGGER.info("Content library index loaded: {} record(s)", n);
+    }
+
+    static Mode parseMode(String value) {
+        try {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Mode.LINK;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.videodownloader;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYStepRenderer;
+import org.jfree.data.xy.AbstractXYDataset;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Графики нагрузки за скользящее окно {@link LoadSampler}: скорость (всего и по сайтам) и
+ * параллельность (задачи в работе, сессии Chrome, очередь). По ним видно троттлинг сайта и упор в пределы.
+ * <p>
+ * Наборы данных читают снимок {@link LoadSampler.View} напрямую, без объектов на точку;
+ * снимок обновляется раз в {@link LoadSampler#INTERVAL}, пока панель на экране.
+ */
+final class DashboardPanel extends JPanel {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    private static final double MIB = 1024.0 * 1024.0;
+
+    private final transient LoadSampler sampler;
+    private final transient LoadSampler.View view;
+    private final ThroughputDataset throughput = new ThroughputDataset();
+    private final ConcurrencyDataset concurrency = new ConcurrencyDataset();
+    private final Timer timer;
+
+    DashboardPanel(LoadSampler sampler) {
+        super(new GridLayout(2, 1, 0, 4));
+        this.sampler = sampler;
+        this.view = new LoadSampler.View(sampler.capacity());
+
+        JFreeChart speed = ChartFactory.createTimeSeriesChart(null, null, "MiB/s", throughput);
+        JFreeChart load = ChartFactory.createTimeSeriesChart(null, null, "Count", concurrency);
+        // счётчики меняются скачками — ступеньки честнее наклонных линий
+        ((XYPlot) load.getPlot()).setRenderer(new XYStepRenderer());
+        for (JFreeChart chart : List.of(speed, load)) {
+            chart.setAntiAlias(false);
+            add(new ChartPanel(chart, false, false, false, false, false));
+        }
+
+        timer = new Timer((int) LoadSampler.INTERVAL.toMillis(), e -> refresh());
+        timer.setCoalesce(true);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        timer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        timer.stop();
+        super.removeNotify();
+    }
+
+    private void refresh() {
+        if (!isShowing()) return;
+        sampler.copyTo(view);
+        throughput.refresh();
+        concurrency.refresh();
+    }
+
+    /** Суммарная скорость и скорость по отслеживаемым сайтам, MiB/s. */
+    private final class ThroughputDataset extends AbstractXYDataset {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        /** Ряд → массив скоростей: 0 — всего, дальше слоты сайтов с именем. */
+        private final transient List<double[]> series = new ArrayList<>();
+        private final transient List<String> keys = new ArrayList<>();
+
+        void refresh() {
+            series.clear();
+            keys.clear();
+            series.add(view.total);
+            keys.add("total");
+            for (int h = 0; h < view.hostNames.length; h++) {
+                if (view.hostNames[h] == null || !anyPositive(view.hosts[h])) continue;
+                series.add(view.hosts[h]);
+                keys.add(view.hostNames[h]);
+            }
+            fireDatasetChanged();
+        }
+
+        private boolean anyPositive(double[] values) {
+            for (int i = 0; i < view.count; i++) {
+                if (values[i] > 0) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public int getSeriesCount() {
+            return series.size();
+        }
+
+        @Override
+        public Comparable<String> getSeriesKey(int s) {
+            return keys.get(s);
+        }
+
+        @Override
+        public int getItemCount(int s) {
+            return view.count;
+        }
+
+        @Override
+        public double getXValue(int s, int item) {
+            return view.times[item];
+        }
+
+        @Override
+        public double getYValue(int s, int item) {
+            return series.get(s)[item] / MIB;
+        }
+
+        @Override
+        public Number getX(int s, int item) {
+            return getXValue(s, item);
+        }
+
+        @Override
+        public Number getY(int s, int item) {
+            return getYValue(s, item);
+        }
+    }
+
+    /** Задачи в работе, сессии Chrome, глубина очереди. */
+    private final class ConcurrencyDataset extends AbstractXYDataset {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        private static final String[] KEYS = {"active jobs", "browser sessions", "queued"};
+        private final transient IntUnaryOperator[] values = {
+                i -> view.active[i], i -> view.browsers[i], i -> view.queued[i]};
+
+        void refresh() {
+            fireDatasetChanged();
+        }
+
+        @Override
+        public int getSeriesCount() {
+            return KEYS.length;
+        }
+
+        @Override
+        public Comparable<String> getSeriesKey(int s) {
+            return KEYS[s];
+        }
+
+        @Override
+        public int getItemCount(int s) {
+            return view.count;
+        }
+
+        @Override
+        public double getXValue(int s, int item) {
+            return view.times[item];
+        }
+
+        @Override
+        public double getYValue(int s, int item) {
+            return values[s].applyAsInt(item);
+        }
+
+        @Override
+        public Number getX(int s, int item) {
+            return getXValue(s, item);
+        }
+
+        @Override
+        public Number getY(int s, int item) {
+            return getYValue(s, item);
+        }
+    }
+}
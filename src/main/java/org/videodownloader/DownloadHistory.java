@@ -0,0 +1,277 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Журнал завершённых загрузок для мгновенной проверки дублей.
+ * <ul>
+ *   <li>history.log — только дописываемый файл, строка на загрузку:
+ *       {@code время\tURL страницы\tURL медиа\tпуть};</li>
+ *   <li>в памяти — фильтр Блума и компактная таблица «64-битный отпечаток → смещение записи»
+ *       (16 байт на ключ вместо самих строк).</li>
+ * </ul>
+ * Отрицательный ответ даёт фильтр без чтения диска; положительный подтверждается чтением одной записи.
+ */
+public class DownloadHistory implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadHistory.class);
+
+    private static final double BLOOM_FPP = 0.01;
+    private static final long MIN_CAPACITY = 1 << 16;
+    /** Параметры, которые не влияют на то, какое видео открывается. */
+    private static final Set<String> TRACKING_PARAMS = Set.of(
+            "fbclid", "gclid", "yclid", "igshid", "si", "feature", "ref", "ref_src", "from");
+
+    public record Entry(long timestamp, String pageUrl, String mediaUrl, Path file) {}
+
+    private final Path file;
+    private final FileChannel channel;
+    private BloomFilter bloom;
+    private long bloomCapacity;
+
+    // открытая адресация: fingerprints[i] == 0 — пустая ячейка
+    private long[] fingerprints = new long[1024];
+    private long[] offsets = new long[1024];
+    private int size;
+
+    public DownloadHistory(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        load();
+    }
+
+    /** Найти завершённую загрузку по URL страницы или медиа. */
+    public synchronized Optional<Entry> find(String url) {
+        String key = normalizeUrl(url);
+        if (key == null) return Optional.empty();
+        long fp = nonZero(BloomFilter.fingerprint(key));
+        if (!bloom.mightContain(fp)) return Optional.empty();
+
+        long offset = lookup(fp);
+        if (offset < 0) return Optional.empty();
+        try {
+            Entry e = readEntry(offset);
+            // отпечаток мог совпасть случайно — сверяем сами ключи
+            if (e != null && (key.equals(normalizeUrl(e.pageUrl())) || key.equals(normalizeUrl(e.mediaUrl())))) {
+                return Optional.of(e);
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Cannot read history record at {}: {}", offset, ex.toString());
+        }
+        return Optional.empty();
+    }
+
+    /** Записать завершённую загрузку. mediaUrl может быть null. */
+    public synchronized void record(String pageUrl, String mediaUrl, Path savedFile) {
+        String line = System.currentTimeMillis() + "\t" + clean(pageUrl) + "\t" + clean(mediaUrl) + "\t"
+                + clean(savedFile.toAbsolutePath().normalize().toString()) + "\n";
+        try {
+            long offset = channel.size();
+            ByteBuffer buf = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                channel.write(buf, offset + buf.position());
+            }
+            index(pageUrl, offset);
+            index(mediaUrl, offset);
+        } catch (IOException e) {
+            LOGGER.error("Cannot append to download history {}", file, e);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Ключ для сравнения: схема и хост в нижнем регистре, без www., без фрагмента,
+     * без утм-меток и трекинговых параметров, параметры отсортированы, без хвостового слеша.
+     */
+    static String normalizeUrl(String url) {
+        if (url == null || url.isBlank() || url.equals("-")) return null;
+        try {
+            URI u = new URI(url.trim());
+            String scheme = u.getScheme() == null ? "http" : u.getScheme().toLowerCase(Locale.ROOT);
+            if (scheme.equals("https")) scheme = "http";
+            String host = u.getHost() == null ? "" : u.getHost().toLowerCase(Locale.ROOT);
+            if (host.startsWith("www.")) host = host.substring(4);
+            String path = u.getRawPath() == null ? "" : u.getRawPath();
+            if (path.endsWith("/")) path = path.substring(0, path.length() - 1);
+
+            List<String> params = new ArrayList<>();
+            if (u.getRawQuery() != null) {
+                for (String p : u.getRawQuery().split("&")) {
+                    String name = p.contains("=") ? p.substring(0, p.indexOf('=')) : p;
+                    String lower = name.toLowerCase(Locale.ROOT);
+                    if (p.isEmpty() || lower.startsWith("utm_") || TRACKING_PARAMS.contains(lower)) continue;
+                    params.add(p);
+                }
+            }
+            params.sort(null);
+            int port = u.getPort();
+            return scheme + "://" + host + (port > 0 ? ":" + port : "") + path
+                    + (params.isEmpty() ? "" : "?" + String.join("&", params));
+        } catch (URISyntaxException e) {
+            return url.trim();
+        }
+    }
+
+    private void index(String url, long offset) {
+        String key = normalizeUrl(url);
+        if (key == null) return;
+        long fp = nonZero(BloomFilter.fingerprint(key));
+        if (size + 1 > bloomCapacity) {
+            rebuildBloom(bloomCapacity * 2);
+        }
+        bloom.add(fp);
+        put(fp, offset);
+    }
+
+    private void load() throws IOException {
+        long length = channel.size();
+        long offset = 0;
+        int records = 0;
+        bloomCapacity = MIN_CAPACITY;
+        bloom = new BloomFilter(bloomCapacity, BLOOM_FPP);
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] chunk = new byte[1 << 16];
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long lineStart = 0;
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                int from = 0;
+                for (int i = 0; i < n; i++) {
+                    if (chunk[i] != '\n') continue;
+                    line.write(chunk, from, i - from);
+                    String[] f = line.toString(StandardCharsets.UTF_8).split("\t", -1);
+                    if (f.length == 4) {
+                        index(f[1], lineStart);
+                        index(f[2], lineStart);
+                        records++;
+                    }
+                    line.reset();
+                    from = i + 1;
+                    lineStart = offset + from;
+                }
+                line.write(chunk, from, n - from);
+                offset += n;
+            }
+        }
+        // недописанная при сбое строка: закрываем её, чтобы новая запись не склеилась с мусором
+        if (length > 0 && readByte(length - 1) != '\n') {
+            channel.write(ByteBuffer.wrap(new byte[]{'\n'}), length);
+        }
+        LOGGER.info("Download history loaded: {} record(s), {} key(s) from {}", records, size, file);
+    }
+
+    private Entry readEntry(long offset) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        ByteBuffer buf = ByteBuffer.allocate(512);
+        long pos = offset;
+        outer:
+        while (true) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (b == '\n') break outer;
+                out.write(b);
+            }
+            pos += n;
+        }
+        String[] f = out.toString(StandardCharsets.UTF_8).split("\t", -1);
+        if (f.length != 4) return null;
+        try {
+            return new Entry(Long.parseLong(f[0]), f[1], f[2].equals("-") ? null : f[2], Paths.get(f[3]));
+        } catch (NumberFormatException | InvalidPathException e) {
+            // испорченная строка (ручная правка, чужая ОС) — просто промах
+            LOGGER.debug("Malformed history record at {}: {}", offset, e.toString());
+            return null;
+        }
+    }
+
+    private int readByte(long pos) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, pos);
+        return one.get(0);
+    }
+
+    private void rebuildBloom(long capacity) {
+        bloomCapacity = capacity;
+        bloom = new BloomFilter(capacity, BLOOM_FPP);
+        for (long fp : fingerprints) {
+            if (fp != 0) bloom.add(fp);
+        }
+    }
+
+    private long lookup(long fp) {
+        int mask = fingerprints.length - 1;
+        for (int i = (int) (fp ^ (fp >>> 32)) & mask; ; i = (i + 1) & mask) {
+            if (fingerprints[i] == 0) return -1;
+            if (fingerprints[i] == fp) return offsets[i];
+        }
+    }
+
+    /** Повторная запись того же ключа указывает на самую свежую загрузку. */
+    private void put(long fp, long offset) {
+        if ((size + 1) * 4L > fingerprints.length * 3L) grow();
+        int mask = fingerprints.length - 1;
+        for (int i = (int) (fp ^ (fp >>> 32)) & mask; ; i = (i + 1) & mask) {
+            if (fingerprints[i] == 0) {
+                fingerprints[i] = fp;
+                offsets[i] = offset;
+                size++;
+                return;
+            }
+            if (fingerprints[i] == fp) {
+                offsets[i] = offset;
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldFp = fingerprints;
+        long[] oldOff = offsets;
+        fingerprints = new long[oldFp.length * 2];
+        offsets = new long[oldOff.length * 2];
+        size = 0;
+        for (int i = 0; i < oldFp.length; i++) {
+            if (oldFp[i] != 0) put(oldFp[i], oldOff[i]);
+        }
+    }
+
+    private static long nonZero(long fp) {
+        return fp == 0 ? 1 : fp;
+    }
+
+    private static String clean(String s) {
+        if (s == null || s.isBlank()) return "-";
+        return s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
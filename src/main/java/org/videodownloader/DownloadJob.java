@@ -0,0 +1,196 @@
+package org.videodownloader;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Одна загрузка: исходный URL, её токен отмены, общий для всех этапов, и результат. */
+public class DownloadJob {
+    private static final AtomicLong SEQ = new AtomicLong();
+
+    private final long id;
+    private final String url;
+    /** Сайт URL: его каждую секунду читают замеры нагрузки, разбирать URL на каждый замер незачем. */
+    private final String host;
+    private final Path outputDir;
+    private final boolean restored;
+    private final CancellationToken token = new CancellationToken();
+    private final long queuedAt = System.currentTimeMillis();
+    private volatile JobState state = JobState.QUEUED;
+    private volatile JobPriority priority = JobPriority.NORMAL;
+    private volatile Instant deadline;
+    private volatile DownloadWindow window;
+    private volatile long sizeHint = -1;
+    private volatile CancellationToken pauseToken = new CancellationToken();
+    private volatile String smartBase;
+    private volatile String mediaUrl;
+    private volatile Path savedFile;
+    private volatile YtDlpProgress progress;
+
+    public DownloadJob(String url, Path outputDir) {
+        this(SEQ.incrementAndGet(), url, outputDir, false);
+    }
+
+    /** Задача, восстановленная из журнала, — с прежним номером. */
+    DownloadJob(long id, String url, Path outputDir) {
+        this(id, url, outputDir, true);
+        advanceSequence(id);
+    }
+
+    private DownloadJob(long id, String url, Path outputDir, boolean restored) {
+        this.id = id;
+        this.url = url;
+        this.host = HostThroughputStats.hostOf(url);
+        this.outputDir = outputDir;
+        this.restored = restored;
+    }
+
+    /** Новые номера не должны совпасть с номерами из журнала прошлых запусков. */
+    static void advanceSequence(long usedId) {
+        SEQ.accumulateAndGet(usedId, Math::max);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /** Сайт задачи, как его считает {@link HostThroughputStats#hostOf(String)}. */
+    public String getHost() {
+        return host;
+    }
+
+    /** Папка, выбранная на момент постановки в очередь. */
+    public Path getOutputDir() {
+        return outputDir;
+    }
+
+    /** Задача из журнала прошлого запуска. */
+    public boolean isRestored() {
+        return restored;
+    }
+
+    public CancellationToken getToken() {
+        return token;
+    }
+
+    public JobState getState() {
+        return state;
+    }
+
+    void setState(JobState state) {
+        this.state = state;
+    }
+
+    public JobPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(JobPriority priority) {
+        this.priority = priority;
+    }
+
+    /** Желательный срок готовности, null — без срока. */
+    public Instant getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Instant deadline) {
+        this.deadline = deadline;
+    }
+
+    /** Окно времени, в которое задаче разрешено качать; null — без ограничений. */
+    public DownloadWindow getWindow() {
+        return window;
+    }
+
+    public void setWindow(DownloadWindow window) {
+        this.window = window;
+    }
+
+    /** Ожидаемый размер в байтах (метаданные или прогресс yt-dlp), -1 — неизвестен. */
+    public long getSizeHint() {
+        return sizeHint;
+    }
+
+    public void setSizeHint(long sizeHint) {
+        this.sizeHint = sizeHint;
+    }
+
+    /** Когда задача встала в очередь в этом запуске приложения. */
+    public long getQueuedAt() {
+        return queuedAt;
+    }
+
+    /** Базовое имя файла; сохраняется в журнале, чтобы после перезапуска докачать тот же .part. */
+    public String getSmartBase() {
+        return smartBase;
+    }
+
+    public void setSmartBase(String smartBase) {
+        this.smartBase = smartBase;
+    }
+
+    /** Прямой медиа-URL, если его пришлось извлекать браузером. */
+    public String getMediaUrl() {
+        return mediaUrl;
+    }
+
+    public void setMediaUrl(String mediaUrl) {
+        this.mediaUrl = mediaUrl;
+    }
+
+    public Path getSavedFile() {
+        return savedFile;
+    }
+
+    public void setSavedFile(Path savedFile) {
+        this.savedFile = savedFile;
+    }
+
+    /** Последняя строка прогресса загрузки; null — прогресса ещё не было. */
+    public YtDlpProgress getProgress() {
+        return progress;
+    }
+
+    public void setProgress(YtDlpProgress progress) {
+        this.progress = progress;
+    }
+
+    public void cancel() {
+        token.cancel();
+    }
+
+    public boolean isCancelled() {
+        return token.isCancelled();
+    }
+
+    /**
+     * Токен текущего запуска. В отличие от отмены, его срабатывание — приостановка:
+     * процесс останавливается, задача возвращается в очередь.
+     */
+    public CancellationToken getPauseToken() {
+        return pauseToken;
+    }
+
+    public void pause() {
+        pauseToken.cancel();
+    }
+
+    public boolean isPauseRequested() {
+        return pauseToken.isCancelled();
+    }
+
+    /** Перед повторным запуском приостановленной задачи. */
+    void clearPause() {
+        pauseToken = new CancellationToken();
+    }
+
+    @Override
+    public String toString() {
+        return "job#" + id + " " + url;
+    }
+}
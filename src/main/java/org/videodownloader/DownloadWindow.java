@@ -0,0 +1,172 @@
+package org.videodownloader;
+
+import java.time.DayOfWeek;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Окно времени, в которое разрешено качать фоновые задачи, со своими пределами скорости и числа загрузок.
+ * Задаётся строкой вида {@code Mon-Fri 22:00-07:00, Sat-Sun; rate=8M; jobs=2}:
+ * <ul>
+ *   <li>правила через запятую: дни ({@code Mon}, {@code Fri-Mon}, {@code *}) и/или интервал {@code ЧЧ:ММ-ЧЧ:ММ};
+ *       интервал через полночь относится к дню начала, {@code 24:00} — конец суток;</li>
+ *   <li>{@code rate} — общая скорость окна в байтах/с (суффиксы K, M, G), делится между загрузками окна;</li>
+ *   <li>{@code jobs} — сколько задач окна качается одновременно.</li>
+ * </ul>
+ */
+public final class DownloadWindow {
+    private static final int DAY_MINUTES = 24 * 60;
+
+    private record Rule(Set<DayOfWeek> days, int startMin, int endMin) {
+        boolean covers(DayOfWeek day, int minute) {
+            if (startMin < endMin) {
+                return days.contains(day) && minute >= startMin && minute < endMin;
+            }
+            // через полночь: хвост вчерашнего интервала или начало сегодняшнего
+            return (days.contains(day) && minute >= startMin) || (days.contains(day.minus(1)) && minute < endMin);
+        }
+    }
+
+    private final String name;
+    private final List<Rule> rules;
+    private final long rateBytesPerSec;
+    private final int maxJobs;
+
+    private DownloadWindow(String name, List<Rule> rules, long rateBytesPerSec, int maxJobs) {
+        this.name = name;
+        this.rules = rules;
+        this.rateBytesPerSec = rateBytesPerSec;
+        this.maxJobs = maxJobs;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** Общий предел скорости окна, -1 — без предела. */
+    public long rateBytesPerSec() {
+        return rateBytesPerSec;
+    }
+
+    /** Одновременных загрузок в окне, 0 — ограничивает только общий предел очереди. */
+    public int maxJobs() {
+        return maxJobs;
+    }
+
+    /**
+     * Предел для одного процесса yt-dlp: доля общей скорости окна, -1 — без предела.
+     * Без {@code jobs} одновременно идёт до {@link AppConfig#maxConcurrentJobs()} загрузок окна — на них и делим.
+     */
+    public long perJobRate() {
+        if (rateBytesPerSec <= 0) return -1;
+        int concurrent = AppConfig.maxConcurrentJobs();
+        if (maxJobs > 0) concurrent = Math.min(maxJobs, concurrent);
+        return Math.max(1024, rateBytesPerSec / concurrent);
+    }
+
+    public boolean isOpen(ZonedDateTime time) {
+        int minute = time.getHour() * 60 + time.getMinute();
+        for (Rule rule : rules) {
+            if (rule.covers(time.getDayOfWeek(), minute)) return true;
+        }
+        return false;
+    }
+
+    /** Разбор описания окна; при ошибке — IllegalArgumentException с понятным текстом. */
+    public static DownloadWindow parse(String name, String spec) {
+        String[] parts = spec.split(";");
+        List<Rule> rules = new ArrayList<>();
+        for (String ruleText : parts[0].split(",")) {
+            if (!ruleText.isBlank()) rules.add(parseRule(ruleText.trim()));
+        }
+        if (rules.isEmpty()) throw new IllegalArgumentException("Window '" + name + "' has no time rules");
+
+        long rate = -1;
+        int jobs = 0;
+        for (int i = 1; i < parts.length; i++) {
+            String option = parts[i].trim();
+            if (option.isEmpty()) continue;
+            int eq = option.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("Window '" + name + "': bad option '" + option + "'");
+            String key = option.substring(0, eq).trim().toLowerCase(Locale.ROOT);
+            String value = option.substring(eq + 1).trim();
+            switch (key) {
+                case "rate" -> rate = parseRate(value);
+                case "jobs" -> jobs = Math.max(0, Integer.parseInt(value));
+                default -> throw new IllegalArgumentException("Window '" + name + "': unknown option '" + key + "'");
+            }
+        }
+        return new DownloadWindow(name, List.copyOf(rules), rate, jobs);
+    }
+
+    private static Rule parseRule(String text) {
+        Set<DayOfWeek> days = EnumSet.allOf(DayOfWeek.class);
+        int start = 0;
+        int end = DAY_MINUTES;
+        for (String token : text.split("\\s+")) {
+            if (Character.isDigit(token.charAt(0))) {
+                String[] range = token.split("-");
+                if (range.length != 2) throw new IllegalArgumentException("Bad time range: " + token);
+                start = parseMinute(range[0]);
+                end = parseMinute(range[1]);
+            } else {
+                days = parseDays(token);
+            }
+        }
+        if (start == end) {
+            start = 0;
+            end = DAY_MINUTES;
+        }
+        return new Rule(days, start, end);
+    }
+
+    private static Set<DayOfWeek> parseDays(String token) {
+        if (token.equals("*") || token.equalsIgnoreCase("daily")) return EnumSet.allOf(DayOfWeek.class);
+        String[] range = token.split("-");
+        DayOfWeek from = parseDay(range[0]);
+        DayOfWeek to = range.length > 1 ? parseDay(range[1]) : from;
+        Set<DayOfWeek> days = EnumSet.of(from);
+        for (DayOfWeek d = from; d != to; d = d.plus(1)) {
+            days.add(d.plus(1));
+        }
+        return days;
+    }
+
+    private static DayOfWeek parseDay(String s) {
+        String prefix = s.trim().toUpperCase(Locale.ROOT);
+        for (DayOfWeek d : DayOfWeek.values()) {
+            if (prefix.length() >= 2 && d.name().startsWith(prefix)) return d;
+        }
+        throw new IllegalArgumentException("Unknown day: " + s);
+    }
+
+    private static int parseMinute(String hhmm) {
+        String[] f = hhmm.split(":");
+        int h = Integer.parseInt(f[0]);
+        int m = f.length > 1 ? Integer.parseInt(f[1]) : 0;
+        int minute = h * 60 + m;
+        if (h < 0 || m < 0 || m > 59 || minute > DAY_MINUTES) throw new IllegalArgumentException("Bad time: " + hhmm);
+        return minute;
+    }
+
+    static long parseRate(String value) {
+        String v = value.trim().toUpperCase(Locale.ROOT);
+        long mul = switch (v.isEmpty() ? ' ' : v.charAt(v.length() - 1)) {
+            case 'K' -> 1024L;
+            case 'M' -> 1024L * 1024;
+            case 'G' -> 1024L * 1024 * 1024;
+            default -> 1L;
+        };
+        if (mul != 1) v = v.substring(0, v.length() - 1);
+        return (long) (Double.parseDouble(v) * mul);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
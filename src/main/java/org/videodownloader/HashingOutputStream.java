@@ -0,0 +1,84 @@
+package org.videodownloader;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Поток записи, который считает отпечаток содержимого на лету: полный SHA-256
+ * и «частичный» ключ (размер + первые и последние 64 КиБ, см. {@link ContentLibrary}).
+ * Файл, записанный через него, не нужно перечитывать для дедупликации.
+ */
+public class HashingOutputStream extends FilterOutputStream {
+    private final MessageDigest full = sha256();
+    private final byte[] head = new byte[ContentLibrary.EDGE_BYTES];
+    private final byte[] tail = new byte[ContentLibrary.EDGE_BYTES];
+    private int headLen;
+    private long tailPos;   // сколько всего байт прошло через кольцо хвоста
+    private long size;
+    private ContentLibrary.Fingerprint result;
+
+    public HashingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        full.update(b, off, len);
+        if (headLen < head.length) {
+            int n = Math.min(len, head.length - headLen);
+            System.arraycopy(b, off, head, headLen, n);
+            headLen += n;
+        }
+        // кольцо последних EDGE_BYTES байт: из длинного блока нужен только его конец
+        int skip = Math.max(0, len - tail.length);
+        tailPos += skip;
+        for (int i = off + skip; i < off + len; ) {
+            int pos = (int) (tailPos % tail.length);
+            int n = Math.min(off + len - i, tail.length - pos);
+            System.arraycopy(b, i, tail, pos, n);
+            i += n;
+            tailPos += n;
+        }
+        size += len;
+    }
+
+    /** Отпечаток после закрытия потока. */
+    public ContentLibrary.Fingerprint fingerprint() {
+        if (result == null) throw new IllegalStateException("Stream is not closed yet");
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        if (result != null) return;
+        int tailLen = (int) Math.min(size, tail.length);
+        byte[] lastBytes = new byte[tailLen];
+        long from = tailPos - tailLen;
+        for (int i = 0; i < tailLen; i++) {
+            lastBytes[i] = tail[(int) ((from + i) % tail.length)];
+        }
+        byte[] firstBytes = Arrays.copyOf(head, headLen);
+        result = new ContentLibrary.Fingerprint(size,
+                ContentLibrary.partialKey(size, firstBytes, lastBytes),
+                ContentLibrary.hex(full.digest()));
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,606 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Собственная загрузка HLS: запись живого потока (медиа-плейлист без {@code #EXT-X-ENDLIST}), который yt-dlp
+ * пишет ненадёжно и без контроля длительности, и записи, зашифрованные {@code METHOD=AES-128}.
+ * <ul>
+ *   <li>плейлист перечитывается раз в target duration (половину — если он не изменился);</li>
+ *   <li>новые сегменты качаются параллельно, повторы отсекаются по media sequence;</li>
+ *   <li>AES-128 расшифровывается в памяти по мере чтения сегмента из сети ({@link CipherInputStream}):
+ *       ключи кешируются по адресу, IV — из {@code IV=} или из номера сегмента; временных файлов фрагментов,
+ *       как у пути yt-dlp + ffmpeg, нет;</li>
+ *   <li>запись идёт по порядку номеров прямо в файл: в памяти одновременно не больше
+ *       {@link #MAX_BUFFERED} сегментов, сколько бы часов ни шла запись;</li>
+ *   <li>сегмент, который так и не скачался, и сегменты, ушедшие из окна плейлиста, считаются пропусками;</li>
+ *   <li>остановка — конец трансляции, предел длительности или размера, отмена или пауза задачи
+ *       (записанное остаётся);</li>
+ *   <li>запись (не трансляция), остановленная паузой, продолжается со следующего сегмента после
+ *       непрерывно записанного начала: оно описано в файле {@code <имя>.hls-resume} рядом с результатом.</li>
+ * </ul>
+ */
+class HlsRecorder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HlsRecorder.class);
+
+    /** Сегментов в полёте и в ожидании записи. */
+    static final int MAX_BUFFERED = 6;
+    private static final int SEGMENT_ATTEMPTS = 3;
+    /** Подряд неудачных чтений плейлиста, после которых трансляция считается оборвавшейся. */
+    private static final int PLAYLIST_ATTEMPTS = 5;
+    private static final long STATUS_EVERY_MILLIS = 10_000;
+
+    /** Сколько ключей помнить: у долгой трансляции они ротируются. */
+    private static final int KEY_CACHE = 64;
+
+    /** Суффикс файла с точкой продолжения записи. */
+    static final String RESUME_SUFFIX = ".hls-resume";
+
+    /** Сегмент в очереди записи; sequence == -1 — init-сегмент. */
+    private record Queued(long sequence, CompletableFuture<byte[]> data) {}
+
+    /** Метка конца очереди записи. */
+    private static final Queued END = new Queued(Long.MIN_VALUE, CompletableFuture.completedFuture(null));
+
+    /** Точка продолжения: следующий номер сегмента и длина непрерывно записанного начала файла. */
+    record Resume(long next, long bytes) {}
+
+    private static final Pattern ATTR = Pattern.compile("([A-Z0-9-]+)=(\"[^\"]*\"|[^,]*)");
+
+    /** Ключ {@code #EXT-X-KEY}; iv == null — IV берётся из номера сегмента. */
+    record Key(String method, URI uri, byte[] iv) {}
+
+    /** Сегмент; key == null — без шифрования. */
+    record Segment(long sequence, URI uri, double durationSec, Key key) {}
+
+    /**
+     * Разобранный плейлист с адресом, откуда он прочитан. Для мастер-плейлиста заполнен только variant
+     * (самый высокий битрейт). unsupportedKey — метод шифрования, который мы не умеем (SAMPLE-AES и т. п.).
+     */
+    record Playlist(URI uri, double targetDurationSec, long mediaSequence, boolean endList, List<Segment> segments,
+                    URI initSegment, String unsupportedKey, URI variant) {
+
+        boolean encrypted() {
+            return segments.stream().anyMatch(s -> s.key() != null);
+        }
+    }
+
+    /**
+     * Итог записи. fingerprint — отпечаток файла, посчитанный при записи ({@link HashingOutputStream});
+     * null, если файл дописывался после паузы (начало прошло мимо потока) или запись сломалась.
+     */
+    record Result(long bytes, double seconds, int segments, long gaps, String stopReason,
+                  ContentLibrary.Fingerprint fingerprint) {}
+
+    private final HttpClient http;
+    private final String userAgent;
+    private final Duration maxDuration;
+    private final long maxBytes;
+    /** Ключи по адресу; один запрос на ключ, даже если его ждут несколько сегментов сразу. */
+    private final Map<URI, CompletableFuture<byte[]>> keys = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxDuration предел длительности записи, {@link Duration#ZERO} — без предела
+     * @param maxBytes    предел размера файла, 0 — без предела
+     */
+    HlsRecorder(HttpClient http, String userAgent, Duration maxDuration, long maxBytes) {
+        this.http = http;
+        this.userAgent = userAgent;
+        this.maxDuration = maxDuration;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Плейлист, который стоит качать здесь: живая трансляция или запись с AES-128 (мастер раскрывается
+     * в вариант). null — не HLS, обычная запись без шифрования (её лучше отдать yt-dlp),
+     * неподдерживаемое шифрование или плейлист не читается.
+     */
+    Playlist probe(URI url, CancellationToken token) {
+        try {
+            Playlist p = fetchPlaylist(url, token);
+            if (p.variant() != null) p = fetchPlaylist(p.variant(), token);
+            if (p.segments().isEmpty() || p.unsupportedKey() != null) return null;
+            return !p.endList() || p.encrypted() ? p : null;
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.debug("Not a live HLS playlist {}: {}", url, e.toString());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Записать поток в файл; probed — результат {@link #probe}, с его адреса и читаем дальше.
+     * Пределы длительности и размера действуют только для живой трансляции.
+     * <p>
+     * Отмена и пауза останавливают запись сразу, включая сегменты в полёте. Запись, докачанная целиком,
+     * остаётся целой и при поздней паузе (stopReason {@code complete}); недокачанная по паузе — {@code paused},
+     * её начало и точка продолжения сохраняются, и следующий вызов с тем же target докачивает остальное.
+     */
+    Result record(Playlist probed, Path target, CancellationToken cancel, CancellationToken pause,
+                  Consumer<String> status) throws IOException {
+        URI media = probed.uri();
+        BlockingQueue<Queued> ordered = new LinkedBlockingQueue<>();
+        Semaphore buffered = new Semaphore(MAX_BUFFERED);
+        CountDownLatch wake = new CountDownLatch(1);
+        boolean live = !probed.endList();
+        // трансляцию не продолжить с места остановки — её окно уже ушло
+        Resume resume = live ? null : readResume(target, probed);
+        if (resume == null) Files.deleteIfExists(resumeFile(target));
+        Writer writer = new Writer(target, ordered, buffered, resume);
+
+        int total = probed.segments().size();
+        String stopReason = "cancelled";
+        long gaps = 0;
+        // остановка по любой из причин: отмена или пауза задачи
+        CancellationToken token = new CancellationToken();
+        List<CancellationToken.Registration> registrations = new ArrayList<>();
+        try (ExecutorService fetchers = Executors.newVirtualThreadPerTaskExecutor()) {
+            registrations.add(cancel.onCancel(token::cancel));
+            registrations.add(pause.onCancel(token::cancel));
+            registrations.add(token.onCancel(wake::countDown));
+            // прервать сегменты в полёте, а не ждать их таймаута
+            registrations.add(token.onCancel(fetchers::shutdownNow));
+            Thread writerThread = Thread.ofVirtual().name("hls-writer").start(writer);
+            Playlist playlist = probed;
+            long next = resume != null ? resume.next() : -1;   // следующий ожидаемый номер сегмента
+            int playlistFailures = 0;
+            boolean initWritten = resume != null;
+            long lastStatus = System.currentTimeMillis();
+
+            while (!token.isCancelled() && writer.failure == null) {
+                if (playlist == null) {
+                    try {
+                        playlist = fetchPlaylist(media, token);
+                        playlistFailures = 0;
+                    } catch (IOException | IllegalArgumentException e) {
+                        if (++playlistFailures >= PLAYLIST_ATTEMPTS) {
+                            stopReason = "playlist unavailable: " + e.getMessage();
+                            break;
+                        }
+                        LOGGER.debug("Live playlist reload failed ({}): {}", playlistFailures, e.toString());
+                        if (wake.await(2L * playlistFailures, TimeUnit.SECONDS)) break;
+                        continue;
+                    }
+                }
+                if (playlist.unsupportedKey() != null) {
+                    stopReason = "encrypted stream (" + playlist.unsupportedKey() + ") is not supported";
+                    break;
+                }
+                if (!initWritten && playlist.initSegment() != null) {
+                    if (!acquireSlot(buffered, writer, token)) break;
+                    ordered.add(new Queued(-1, fetch(fetchers, new Segment(-1, playlist.initSegment(), 0, null), token)));
+                    initWritten = true;
+                }
+
+                boolean fresh = false;
+                for (Segment s : playlist.segments()) {
+                    if (s.sequence() < next) continue;
+                    if (next >= 0 && s.sequence() > next) {
+                        // окно плейлиста ушло дальше, чем мы успели прочитать
+                        gaps += s.sequence() - next;
+                        LOGGER.warn("Live stream gap: segments {}..{} expired", next, s.sequence() - 1);
+                    }
+                    if (!acquireSlot(buffered, writer, token)) break;
+                    ordered.add(new Queued(s.sequence(), fetch(fetchers, s, token).thenApply(b -> {
+                        // прерванное отменой — не пропуск
+                        if (b == null && !token.isCancelled()) writer.gaps.incrementAndGet();
+                        else if (b != null) writer.seconds.add(s.durationSec());
+                        return b;
+                    })));
+                    next = s.sequence() + 1;
+                    fresh = true;
+                }
+
+                if (playlist.endList()) {
+                    stopReason = live ? "stream ended" : "complete";
+                    break;
+                }
+                String limit = live ? limitReached(writer) : null;
+                if (limit != null) {
+                    stopReason = limit;
+                    break;
+                }
+                if (System.currentTimeMillis() - lastStatus >= STATUS_EVERY_MILLIS) {
+                    lastStatus = System.currentTimeMillis();
+                    status.accept(progressLine(writer, gaps, live ? -1 : total));
+                }
+                // RFC 8216 6.3.4: без изменений — следующая попытка через половину target duration
+                double wait = fresh ? playlist.targetDurationSec() : playlist.targetDurationSec() / 2;
+                if (wake.await(Math.max(500, (long) (wait * 1000)), TimeUnit.MILLISECONDS)) break;
+                playlist = null;
+            }
+            ordered.add(END);
+            if (!live && !token.isCancelled()) {
+                // у записи весь список уже в очереди — показываем, как он докачивается
+                while (!writerThread.join(Duration.ofMillis(STATUS_EVERY_MILLIS))) {
+                    status.accept(progressLine(writer, gaps, total));
+                }
+            }
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopReason = "interrupted";
+        } finally {
+            registrations.forEach(CancellationToken.Registration::close);
+        }
+        if (writer.failure != null) throw writer.failure;
+        if ("cancelled".equals(stopReason) && !cancel.isCancelled() && pause.isCancelled()) stopReason = "paused";
+        if (!live) stopReason = finishVod(probed, target, writer, cancel, pause, stopReason);
+        Result result = new Result(writer.bytes, writer.seconds.sum(), writer.segments,
+                gaps + writer.gaps.get(), stopReason, writer.fingerprint);
+        LOGGER.info("HLS recording {} stopped ({}): {} bytes, {} s, {} segment(s), {} gap(s)", target,
+                result.stopReason(), result.bytes(), Math.round(result.seconds()), result.segments(), result.gaps());
+        return result;
+    }
+
+    /** Итог записи (не трансляции) по тому, что реально легло в файл, и точка продолжения для паузы. */
+    private static String finishVod(Playlist probed, Path target, Writer writer, CancellationToken cancel,
+                                    CancellationToken pause, String stopReason) throws IOException {
+        List<Segment> segments = probed.segments();
+        long end = segments.get(segments.size() - 1).sequence() + 1;
+        if (writer.contiguousNext == end) {
+            // всё на месте — поздняя пауза или отмена уже ничего не испортила
+            Files.deleteIfExists(resumeFile(target));
+            return "complete";
+        }
+        if (cancel.isCancelled()) return "cancelled";
+        if (pause.isCancelled()) {
+            if (writer.contiguousNext >= 0) {
+                Files.writeString(resumeFile(target), writer.contiguousNext + " " + writer.contiguousBytes + "\n",
+                        StandardCharsets.UTF_8);
+            }
+            return "paused";
+        }
+        return "complete".equals(stopReason) ? "incomplete" : stopReason;
+    }
+
+    /** Файл с точкой продолжения записи target. */
+    static Path resumeFile(Path target) {
+        return target.resolveSibling(target.getFileName() + RESUME_SUFFIX);
+    }
+
+    /** Удалить недокачанную запись вместе с точкой продолжения. */
+    static void discard(Path target) throws IOException {
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(resumeFile(target));
+    }
+
+    /** Точка продолжения для этого плейлиста или null, если её нет, она испорчена или файл короче неё. */
+    static Resume readResume(Path target, Playlist playlist) {
+        Path file = resumeFile(target);
+        if (!Files.isRegularFile(file) || !Files.isRegularFile(target)) return null;
+        try {
+            String[] f = Files.readString(file, StandardCharsets.UTF_8).trim().split(" ");
+            Resume r = new Resume(Long.parseLong(f[0]), Long.parseLong(f[1]));
+            List<Segment> segments = playlist.segments();
+            boolean inPlaylist = r.next() >= segments.get(0).sequence()
+                    && r.next() <= segments.get(segments.size() - 1).sequence();
+            return inPlaylist && r.bytes() > 0 && Files.size(target) >= r.bytes() ? r : null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Ignoring HLS resume point {}: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    /** Место в буфере; false — ждать нечего (отмена или запись на диск сломалась). */
+    private static boolean acquireSlot(Semaphore buffered, Writer writer, CancellationToken token)
+            throws InterruptedException {
+        while (!buffered.tryAcquire(500, TimeUnit.MILLISECONDS)) {
+            if (writer.failure != null || token.isCancelled()) return false;
+        }
+        return true;
+    }
+
+    private String limitReached(Writer writer) {
+        if (maxBytes > 0 && writer.bytes >= maxBytes) return "size limit";
+        if (!maxDuration.isZero() && writer.seconds.sum() >= maxDuration.toSeconds()) return "time limit";
+        return null;
+    }
+
+    /** total &lt; 0 — живая трансляция (время записи), иначе доля готовых сегментов записи. */
+    private static String progressLine(Writer writer, long gaps, int total) {
+        long sec = Math.round(writer.seconds.sum());
+        String line = total < 0
+                ? String.format(Locale.ROOT, "Live: recorded %d:%02d:%02d, %.1f MiB",
+                        sec / 3600, sec / 60 % 60, sec % 60, writer.bytes / (1024.0 * 1024))
+                : String.format(Locale.ROOT, "HLS: %.1f%% of %d segments, %.1f MiB",
+                        100.0 * writer.segments / Math.max(1, total), total, writer.bytes / (1024.0 * 1024));
+        long missed = gaps + writer.gaps.get();
+        return missed > 0 ? line + ", " + missed + " segment(s) missed" : line;
+    }
+
+    /** Загрузка (и расшифровка) сегмента с повторами; null — не удалось (пропуск). */
+    private CompletableFuture<byte[]> fetch(ExecutorService pool, Segment segment, CancellationToken token) {
+        try {
+            return fetchAsync(pool, segment, token);
+        } catch (RejectedExecutionException e) {
+            // остановка успела закрыть пул между проверкой токена и постановкой сегмента
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private CompletableFuture<byte[]> fetchAsync(ExecutorService pool, Segment segment, CancellationToken token) {
+        return CompletableFuture.supplyAsync(() -> {
+            for (int attempt = 1; attempt <= SEGMENT_ATTEMPTS && !token.isCancelled(); attempt++) {
+                try {
+                    return download(segment);
+                } catch (IOException | GeneralSecurityException e) {
+                    LOGGER.debug("Segment {} failed (attempt {}): {}", segment.uri(), attempt, e.toString());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                if (attempt == SEGMENT_ATTEMPTS) break;
+                try {
+                    Thread.sleep(500L * attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            LOGGER.warn("Segment {} skipped after {} attempt(s)", segment.uri(), SEGMENT_ATTEMPTS);
+            return null;
+        }, pool);
+    }
+
+    private byte[] download(Segment segment) throws IOException, InterruptedException, GeneralSecurityException {
+        // ключ — до запроса сегмента: иначе соединение простаивало бы, пока он качается
+        Cipher cipher = segment.key() != null ? cipher(segment) : null;
+        HttpResponse<InputStream> resp = http.send(request(segment.uri()), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = resp.body()) {
+            if (resp.statusCode() != 200) throw new IOException("HTTP " + resp.statusCode());
+            if (cipher == null) return body.readAllBytes();
+            // расшифровка идёт блоками по мере прихода данных, открытый текст сразу копится в буфер сегмента
+            try (InputStream plain = new CipherInputStream(body, cipher)) {
+                return plain.readAllBytes();
+            }
+        }
+    }
+
+    private Cipher cipher(Segment segment) throws IOException, InterruptedException, GeneralSecurityException {
+        Key key = segment.key();
+        byte[] iv = key.iv() != null ? key.iv() : sequenceIv(segment.sequence());
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(keyBytes(key.uri()), "AES"), new IvParameterSpec(iv));
+        return cipher;
+    }
+
+    /** RFC 8216 5.2: без атрибута IV вектор — номер сегмента, big-endian в 16 байтах. */
+    static byte[] sequenceIv(long sequence) {
+        return ByteBuffer.allocate(16).putLong(8, sequence).array();
+    }
+
+    private byte[] keyBytes(URI uri) throws IOException, InterruptedException {
+        if (keys.size() > KEY_CACHE) keys.clear();
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> known = keys.putIfAbsent(uri, mine);
+        if (known != null) {
+            try {
+                return known.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Key unavailable: " + uri, e.getCause());
+            }
+        }
+        try {
+            HttpResponse<byte[]> resp = http.send(request(uri), HttpResponse.BodyHandlers.ofByteArray());
+            if (resp.statusCode() != 200) throw new IOException("Key HTTP " + resp.statusCode());
+            if (resp.body().length != 16) throw new IOException("Key is " + resp.body().length + " bytes, expected 16");
+            mine.complete(resp.body());
+            return resp.body();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            // неудачу не кешируем: следующий сегмент попробует ещё раз
+            keys.remove(uri, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private HttpRequest request(URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).header("User-Agent", userAgent).GET().build();
+    }
+
+    private Playlist fetchPlaylist(URI uri, CancellationToken token) throws IOException, InterruptedException {
+        token.throwIfCancelled();
+        HttpResponse<String> resp = http.send(request(uri), HttpResponse.BodyHandlers.ofString());
+        if (resp.statusCode() != 200) throw new IOException("HTTP " + resp.statusCode());
+        return parse(resp.body(), resp.uri());
+    }
+
+    /** Разбор плейлиста (RFC 8216); относительные адреса разрешаются от base. */
+    static Playlist parse(String text, URI base) {
+        if (!text.stripLeading().startsWith("#EXTM3U")) throw new IllegalArgumentException("Not an M3U8 playlist");
+        double target = 6;
+        long sequence = 0;
+        boolean endList = false;
+        URI init = null;
+        Key key = null;
+        String unsupportedKey = null;
+        List<Segment> segments = new ArrayList<>();
+        URI bestVariant = null;
+        long bestBandwidth = -1;
+
+        double duration = 0;
+        long variantBandwidth = -1;
+        for (String raw : text.split("\\R")) {
+            String line = raw.strip();
+            if (line.isEmpty()) continue;
+            if (line.startsWith("#EXT-X-TARGETDURATION:")) {
+                target = Double.parseDouble(line.substring(line.indexOf(':') + 1));
+            } else if (line.startsWith("#EXT-X-MEDIA-SEQUENCE:")) {
+                sequence = Long.parseLong(line.substring(line.indexOf(':') + 1));
+            } else if (line.startsWith("#EXT-X-ENDLIST")) {
+                endList = true;
+            } else if (line.startsWith("#EXTINF:")) {
+                String v = line.substring(line.indexOf(':') + 1);
+                int comma = v.indexOf(',');
+                duration = Double.parseDouble(comma < 0 ? v : v.substring(0, comma));
+            } else if (line.startsWith("#EXT-X-MAP:")) {
+                String u = attribute(line, "URI");
+                if (u != null) init = base.resolve(u);
+            } else if (line.startsWith("#EXT-X-KEY:")) {
+                String method = attribute(line, "METHOD");
+                String keyUri = attribute(line, "URI");
+                if (method == null || method.equals("NONE")) {
+                    key = null;
+                } else if (method.equals("AES-128") && keyUri != null) {
+                    String iv = attribute(line, "IV");
+                    key = new Key(method, base.resolve(keyUri), iv != null ? parseIv(iv) : null);
+                } else {
+                    unsupportedKey = method;
+                }
+            } else if (line.startsWith("#EXT-X-STREAM-INF:")) {
+                String bw = attribute(line, "BANDWIDTH");
+                variantBandwidth = bw != null ? Long.parseLong(bw) : 0;
+            } else if (!line.startsWith("#")) {
+                URI uri = base.resolve(line);
+                if (variantBandwidth >= 0) {
+                    if (variantBandwidth > bestBandwidth) {
+                        bestBandwidth = variantBandwidth;
+                        bestVariant = uri;
+                    }
+                    variantBandwidth = -1;
+                } else {
+                    segments.add(new Segment(sequence + segments.size(), uri, duration, key));
+                    duration = 0;
+                }
+            }
+        }
+        return new Playlist(base, target, sequence, endList, List.copyOf(segments), init, unsupportedKey, bestVariant);
+    }
+
+    /** {@code 0x} и 32 шестнадцатеричные цифры; короткое значение дополняется нулями слева. */
+    static byte[] parseIv(String hex) {
+        String digits = hex.regionMatches(true, 0, "0x", 0, 2) ? hex.substring(2) : hex;
+        if (digits.isEmpty() || digits.length() > 32) throw new IllegalArgumentException("Bad IV: " + hex);
+        return HexFormat.of().parseHex("0".repeat(32 - digits.length()) + digits);
+    }
+
+    private static String attribute(String line, String name) {
+        Matcher m = ATTR.matcher(line.substring(line.indexOf(':') + 1));
+        while (m.find()) {
+            if (m.group(1).equals(name)) {
+                String v = m.group(2);
+                return v.startsWith("\"") ? v.substring(1, v.length() - 1) : v;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Пишет сегменты строго по порядку постановки и освобождает место в буфере. Помнит конец непрерывно
+     * записанного начала файла (до первого пропуска) — с него продолжается запись после паузы.
+     */
+    private static final class Writer implements Runnable {
+        private final Path target;
+        private final BlockingQueue<Queued> ordered;
+        private final Semaphore buffered;
+        private final Resume resume;
+        final AtomicLong gaps = new AtomicLong();
+        final DoubleAdder seconds = new DoubleAdder();
+        volatile long bytes;
+        volatile int segments;
+        volatile IOException failure;
+        /** Номер сегмента после непрерывного начала (-1 — ни одного) и длина этого начала. */
+        volatile long contiguousNext = -1;
+        volatile long contiguousBytes;
+        volatile ContentLibrary.Fingerprint fingerprint;
+        private boolean broken;
+
+        Writer(Path target, BlockingQueue<Queued> ordered, Semaphore buffered, Resume resume) {
+            this.target = target;
+            this.ordered = ordered;
+            this.buffered = buffered;
+            this.resume = resume;
+            if (resume != null) {
+                contiguousNext = resume.next();
+                contiguousBytes = bytes = resume.bytes();
+            }
+        }
+
+        private OutputStream open() throws IOException {
+            // отпечаток для дедупликации считается по ходу записи — готовый файл не перечитывается
+            if (resume == null) return new HashingOutputStream(Files.newOutputStream(target));
+            // хвост после точки продолжения мог остаться от сегментов, записанных после пропуска
+            try (FileChannel ch = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                ch.truncate(resume.bytes());
+            }
+            return Files.newOutputStream(target, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        @Override
+        public void run() {
+            try {
+                OutputStream file = open();
+                try (OutputStream out = new BufferedOutputStream(file, 256 * 1024)) {
+                    while (true) {
+                        Queued next = ordered.take();
+                        if (next == END) break;
+                        byte[] data = next.data().join();
+                        buffered.release();
+                        if (data == null) {
+                            broken = true;
+                            continue;
+                        }
+                        out.write(data);
+                        bytes += data.length;
+                        segments++;
+                        if (!broken) {
+                            contiguousBytes = bytes;
+                            if (next.sequence() >= 0) contiguousNext = next.sequence() + 1;
+                        }
+                    }
+                }
+                if (file instanceof HashingOutputStream hashing) fingerprint = hashing.fingerprint();
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Измеренная скорость прошлых загрузок по хостам и профилям (скользящее среднее)
+ * и выбор профиля для новой загрузки. Хранится в throughput.properties в папке приложения.
+ * <p>
+ * Неудачей профиля считается только сбой передачи ({@link #isTransferFailure(String)}): ошибки
+ * извлечения, «Unsupported URL» перед поиском медиа в браузере и закрытые ролики от числа
+ * параллельных фрагментов не зависят и профиль не порочат.
+ * <p>
+ * Доля неудач — такое же скользящее среднее, как скорость: старые сбои забываются по мере новых попыток.
+ * Отвергнутый профиль новых попыток не получает, поэтому раз в {@link #REPROBE_AFTER} его пробуют снова —
+ * иначе одна плохая ночь навсегда оставила бы хост на осторожном профиле.
+ */
+public class HostThroughputStats {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HostThroughputStats.class);
+
+    /** Вес нового замера в скользящем среднем. */
+    private static final double ALPHA = 0.3;
+    /** Доля неудач, после которой профиль считаем неподходящим для хоста. */
+    private static final double MAX_FAILURE_RATE = 0.5;
+    /** Через сколько после последней попытки отвергнутый профиль пробуется снова. */
+    static final Duration REPROBE_AFTER = Duration.ofHours(12);
+    /** Строки вывода yt-dlp о сбое сети или сервера при передаче данных. */
+    private static final Pattern TRANSFER_FAILURE = Pattern.compile(
+            "HTTP Error 5\\d\\d|timed out|Connection (?:reset|refused|aborted)|IncompleteRead"
+                    + "|fragment \\d+ not found|fragment retries|Did not get any data blocks|content too short",
+            Pattern.CASE_INSENSITIVE);
+
+    private final Path file;
+    private final LongSupplier clock;
+    private final Map<String, Stat> stats = new HashMap<>();
+
+    private static final class Stat {
+        double bytesPerSec;
+        int samples;
+        int failures;
+        /** Скользящая доля неудач по попыткам. */
+        double failureRate;
+        /** Время последней попытки (мс), 0 — неизвестно. */
+        long lastAttempt;
+
+        double failureRate() {
+            return failureRate;
+        }
+
+        void attempt(boolean failed, long now) {
+            double outcome = failed ? 1 : 0;
+            failureRate = samples + failures == 0 ? outcome : ALPHA * outcome + (1 - ALPHA) * failureRate;
+            if (failed) failures++;
+            else samples++;
+            lastAttempt = now;
+        }
+    }
+
+    public HostThroughputStats(Path file) {
+        this(file, System::currentTimeMillis);
+    }
+
+    /** clock — текущее время в мс (тесты подставляют своё). */
+    HostThroughputStats(Path file, LongSupplier clock) {
+        this.file = file;
+        this.clock = clock;
+        load();
+    }
+
+    /** Профиль из настроек или, в режиме auto, лучший по истории хоста. */
+    public synchronized PerformanceProfile choose(String url) {
+        PerformanceProfile fixed = AppConfig.performanceProfile();
+        if (fixed != null) return fixed;
+
+        String host = hostOf(url);
+        Stat balanced = stats.get(key(host, PerformanceProfile.BALANCED));
+        Stat aggressive = stats.get(key(host, PerformanceProfile.AGGRESSIVE));
+        Stat conservative = stats.get(key(host, PerformanceProfile.CONSERVATIVE));
+
+        // неизвестный хост — сразу параллельные фрагменты
+        if (balanced == null) return PerformanceProfile.BALANCED;
+        PerformanceProfile reprobe = reprobe(host, clock.getAsLong());
+        if (reprobe != null) return reprobe;
+        // один раз пробуем агрессивный, чтобы было с чем сравнивать
+        if (aggressive == null && balanced.failureRate() < MAX_FAILURE_RATE) return PerformanceProfile.AGGRESSIVE;
+
+        boolean parallelFails = balanced.failureRate() >= MAX_FAILURE_RATE
+                && (aggressive == null || aggressive.failureRate() >= MAX_FAILURE_RATE);
+        if (parallelFails) return PerformanceProfile.CONSERVATIVE;
+
+        PerformanceProfile best = PerformanceProfile.BALANCED;
+        double bestScore = -1;
+        for (PerformanceProfile p : PerformanceProfile.values()) {
+            Stat s = p == PerformanceProfile.BALANCED ? balanced
+                    : p == PerformanceProfile.AGGRESSIVE ? aggressive : conservative;
+            if (s == null || s.samples == 0 || s.failureRate() >= MAX_FAILURE_RATE) continue;
+            double score = s.bytesPerSec * (1 - s.failureRate());
+            if (score > bestScore) {
+                bestScore = score;
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    /** Отвергнутый профиль, последняя попытка которого старше {@link #REPROBE_AFTER}; одна попытка на окно. */
+    private PerformanceProfile reprobe(String host, long now) {
+        for (PerformanceProfile p : PerformanceProfile.values()) {
+            Stat s = stats.get(key(host, p));
+            if (s == null || s.failureRate() < MAX_FAILURE_RATE || now - s.lastAttempt < REPROBE_AFTER.toMillis()) {
+                continue;
+            }
+            // пока идёт пробная загрузка, другие задачи хоста её не повторяют
+            s.lastAttempt = now;
+            LOGGER.info("Re-probing profile {} for {} (failure rate {})", p, host,
+                    String.format(Locale.ROOT, "%.2f", s.failureRate()));
+            return p;
+        }
+        return null;
+    }
+
+    public synchronized void recordSuccess(String url, PerformanceProfile profile, long bytes, long millis) {
+        if (bytes <= 0 || millis <= 0) return;
+        Stat s = stats.computeIfAbsent(key(hostOf(url), profile), k -> new Stat());
+        double rate = bytes * 1000.0 / millis;
+        s.bytesPerSec = s.samples == 0 ? rate : ALPHA * rate + (1 - ALPHA) * s.bytesPerSec;
+        s.attempt(false, clock.getAsLong());
+        LOGGER.debug("Throughput {} [{}]: {} B/s (avg {} B/s)", hostOf(url), profile, (long) rate, (long) s.bytesPerSec);
+        save();
+    }
+
+    public synchronized void recordFailure(String url, PerformanceProfile profile) {
+        stats.computeIfAbsent(key(hostOf(url), profile), k -> new Stat()).attempt(true, clock.getAsLong());
+        save();
+    }
+
+    /** Провал yt-dlp по его выводу — сбой передачи (HTTP 5xx, тайм-аут, фрагменты), а не ошибка извлечения. */
+    static boolean isTransferFailure(String output) {
+        return output != null && TRANSFER_FAILURE.matcher(output).find();
+    }
+
+    static String hostOf(String url) {
+        if (url == null) return "unknown";
+        try {
+            String host = URI.create(url).getHost();
+            if (host == null) return "unknown";
+            host = host.toLowerCase(Locale.ROOT);
+            return host.startsWith("www.") ? host.substring(4) : host;
+        } catch (IllegalArgumentException e) {
+            return "unknown";
+        }
+    }
+
+    private static String key(String host, PerformanceProfile profile) {
+        return host + "|" + profile.name();
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) return;
+        Properties props = new Properties();
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(r);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read throughput stats {}: {}", file, e.toString());
+            return;
+        }
+        for (String k : props.stringPropertyNames()) {
+            String[] parts = props.getProperty(k).split(",");
+            if (parts.length != 3 && parts.length != 5) continue;
+            try {
+                Stat s = new Stat();
+                s.bytesPerSec = Double.parseDouble(parts[0]);
+                s.samples = Integer.parseInt(parts[1]);
+                s.failures = Integer.parseInt(parts[2]);
+                if (parts.length == 5) {
+                    s.failureRate = Double.parseDouble(parts[3]);
+                    s.lastAttempt = Long.parseLong(parts[4]);
+                } else if (s.samples + s.failures > 0) {
+                    // запись прежнего формата: доля за всё время, время попытки неизвестно — пробуем заново
+                    s.failureRate = (double) s.failures / (s.samples + s.failures);
+                }
+                stats.put(k, s);
+            } catch (NumberFormatException ignored) {
+                // битую запись просто пропускаем
+            }
+        }
+    }
+
+    private void save() {
+        Properties props = new Properties();
+        stats.forEach((k, s) -> props.setProperty(k, (long) s.bytesPerSec + "," + s.samples + "," + s.failures + ","
+                + String.format(Locale.ROOT, "%.4f", s.failureRate) + "," + s.lastAttempt));
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                props.store(w, "yt-dlp throughput per host|profile: bytesPerSec,samples,failures,failureRate,lastAttemptMs");
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot save throughput stats {}: {}", file, e.toString());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал предзаписи (WAL) очереди загрузок: каждый переход задачи — строка в jobs.wal,
+ * записанная на диск до того, как задача пойдёт дальше.
+ * <p>
+ * Строка содержит полный снимок задачи, поэтому при чтении достаточно последней строки на номер:
+ * {@code время\tномер\tсостояние\tURL\tпапка\tбаза имени\tмедиа-URL\tприоритет\tсрок\tокно\tcrc32}.
+ * Строка с неверной контрольной суммой (обрыв записи при сбое) пропускается.
+ * Завершённые задачи выбрасываются при сжатии: журнал переписывается во временный файл
+ * и атомарно подменяет старый — при запуске и каждые {@link #COMPACT_EVERY} записей.
+ */
+public class JobJournal implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobJournal.class);
+
+    /** Сколько строк дописать между сжатиями. */
+    static final int COMPACT_EVERY = 1024;
+
+    public record Entry(long timestamp, long id, JobState state, String url, Path outputDir,
+                        String smartBase, String mediaUrl, JobPriority priority, Instant deadline, String window) {}
+
+    private final Path file;
+    private FileChannel channel;
+    /** Незавершённые задачи в порядке постановки в очередь. */
+    private final Map<Long, Entry> live = new LinkedHashMap<>();
+    private long maxId;
+    private int appended;
+    private boolean closed;
+
+    public JobJournal(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        load();
+        compact();
+    }
+
+    /** Незавершённые на момент открытия (и с тех пор) задачи — их нужно возобновить. */
+    public synchronized List<Entry> unfinished() {
+        return List.copyOf(live.values());
+    }
+
+    /** Наибольший номер задачи, встречавшийся в журнале. */
+    public synchronized long maxId() {
+        return maxId;
+    }
+
+    /** Записать переход задачи в новое состояние. После {@link #close()} ничего не пишет. */
+    public synchronized void record(DownloadJob job, JobState state) {
+        if (closed) return;
+        Entry e = new Entry(System.currentTimeMillis(), job.getId(), state, job.getUrl(), job.getOutputDir(),
+                job.getSmartBase(), job.getMediaUrl(), job.getPriority(), job.getDeadline(),
+                job.getWindow() == null ? null : job.getWindow().name());
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(format(e).getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            // без force() «записанный» переход может пропасть вместе с питанием
+            channel.force(false);
+            apply(e);
+            if (++appended >= COMPACT_EVERY) {
+                compact();
+            }
+        } catch (IOException ex) {
+            LOGGER.error("Cannot append to job journal {}", file, ex);
+        }
+    }
+
+    /**
+     * Закрыть журнал. Переходы после закрытия (отмена при выходе из приложения) не записываются,
+     * поэтому прерванные задачи остаются незавершёнными и возобновятся при следующем запуске.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    private void apply(Entry e) {
+        maxId = Math.max(maxId, e.id());
+        if (e.state().isTerminal()) {
+            live.remove(e.id());
+        } else {
+            live.put(e.id(), e);
+        }
+    }
+
+    private void load() throws IOException {
+        if (!Files.isRegularFile(file)) return;
+        int records = 0;
+        int corrupt = 0;
+        try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                Entry e = parse(line);
+                if (e == null) {
+                    corrupt++;
+                    continue;
+                }
+                apply(e);
+                records++;
+            }
+        } catch (UncheckedIOException e) {
+            // битые байты в оборванном хвосте — всё прочитанное до них годно
+            LOGGER.warn("Job journal {} read stopped early: {}", file, e.getCause().toString());
+        }
+        if (corrupt > 0) {
+            LOGGER.warn("Job journal {}: {} damaged record(s) skipped", file, corrupt);
+        }
+        LOGGER.info("Job journal loaded: {} record(s), {} unfinished job(s)", records, live.size());
+    }
+
+    /** Переписать журнал, оставив по строке на незавершённую задачу. */
+    private void compact() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             BufferedWriter w = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8))) {
+            for (Entry e : live.values()) {
+                w.write(format(e));
+            }
+            w.flush();
+            out.force(true);
+        }
+        if (channel != null) channel.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        appended = 0;
+        LOGGER.debug("Job journal compacted: {} unfinished job(s)", live.size());
+    }
+
+    static String format(Entry e) {
+        String body = e.timestamp() + "\t" + e.id() + "\t" + e.state() + "\t" + clean(e.url()) + "\t"
+                + clean(e.outputDir() == null ? null : e.outputDir().toAbsolutePath().normalize().toString()) + "\t"
+                + clean(e.smartBase()) + "\t" + clean(e.mediaUrl()) + "\t" + e.priority() + "\t"
+                + (e.deadline() == null ? "-" : String.valueOf(e.deadline().toEpochMilli())) + "\t" + clean(e.window());
+        return body + "\t" + Long.toHexString(crc(body)) + "\n";
+    }
+
+    static Entry parse(String line) {
+        int lastTab = line.lastIndexOf('\t');
+        if (lastTab < 0) return null;
+        String body = line.substring(0, lastTab);
+        String[] f = body.split("\t", -1);
+        // поля после медиа-URL добавлялись позже — в старых записях их нет
+        if (f.length < 7) return null;
+        try {
+            if (Long.parseUnsignedLong(line.substring(lastTab + 1), 16) != crc(body)) return null;
+            JobPriority priority = f.length > 7 ? JobPriority.valueOf(f[7]) : JobPriority.NORMAL;
+            Instant deadline = f.length > 8 && value(f[8]) != null ? Instant.ofEpochMilli(Long.parseLong(f[8])) : null;
+            String window = f.length > 9 ? value(f[9]) : null;
+            return new Entry(Long.parseLong(f[0]), Long.parseLong(f[1]), JobState.valueOf(f[2]), value(f[3]),
+                    value(f[4]) == null ? null : Paths.get(f[4]), value(f[5]), value(f[6]), priority, deadline, window);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static long crc(String body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static String value(String field) {
+        return field.equals("-") ? null : field;
+    }
+
+    private static String clean(String s) {
+        if (s == null || s.isBlank()) return "-";
+        return s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,18 @@
+package org.videodownloader;
+
+import java.time.Instant;
+
+/**
+ * Как ставить задачи в очередь: класс приоритета, желательный срок (null — без срока)
+ * и окно времени (null — качать сразу).
+ */
+public record JobOptions(JobPriority priority, Instant deadline, DownloadWindow window) {
+
+    /** Ссылки, вставленные пользователем в окно приложения. */
+    public static final JobOptions INTERACTIVE = new JobOptions(JobPriority.INTERACTIVE, null, null);
+
+    /** Фоновый прогон в окне videodownloader.window.&lt;name&gt; (или сразу, если окно не задано). */
+    public static JobOptions batch(DownloadWindow window) {
+        return new JobOptions(JobPriority.BATCH, null, window);
+    }
+}
@@ -0,0 +1,10 @@
+package org.videodownloader;
+
+/** Класс приоритета задачи: чем раньше в списке, тем раньше запускается. */
+public enum JobPriority {
+    /** Ссылка, вставленная пользователем в окно: ждёт её человек. */
+    INTERACTIVE,
+    NORMAL,
+    /** Ночные и массовые прогоны: уступают место остальным. */
+    BATCH
+}
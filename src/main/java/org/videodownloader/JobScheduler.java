@@ -0,0 +1,331 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Очередь загрузок с ограниченным числом одновременно работающих задач.
+ * <p>
+ * Порядок запуска:
+ * <ol>
+ *   <li>класс приоритета ({@link JobPriority}); каждые {@code aging} ожидания поднимают задачу на класс выше,
+ *       так что пакетные прогоны не голодают вечно. Задача, чей срок (deadline) ближе {@code urgent},
+ *       считается интерактивной;</li>
+ *   <li>внутри класса — более ранний срок;</li>
+ *   <li>затем — меньший ожидаемый размер (короткий ролик не ждёт четырёхчасовой стрим);</li>
+ *   <li>затем — порядок постановки.</li>
+ * </ol>
+ * Если интерактивной задаче не хватило места, одна работающая задача ниже классом приостанавливается
+ * ({@link DownloadJob#pause()}): её процесс останавливается, а сама задача возвращается в очередь
+ * и потом докачивается через --continue.
+ * <p>
+ * Одновременно с одного сайта качается не больше {@code maxPerHost} задач — сколько бы их ни пришло
+ * из плейлистов и пакетов.
+ * <p>
+ * Задача с {@link DownloadWindow окном} запускается, только пока окно открыто и в нём есть свободное место;
+ * после {@link #start()} раз в {@link #TICK} планировщик приостанавливает задачи закрывшихся окон
+ * и запускает задачи открывшихся.
+ */
+public class JobScheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobScheduler.class);
+
+    /** Оценка размера задачи без подсказки из метаданных. */
+    static final long UNKNOWN_SIZE_GUESS = 256L * 1024 * 1024;
+
+    /** Как часто проверять открытие и закрытие окон. */
+    static final Duration TICK = Duration.ofSeconds(30);
+
+    /** Единица планирования: одна задача или пакет задач одного сайта. */
+    public static final class Task {
+        private static final AtomicLong SEQ = new AtomicLong();
+
+        private final long seq = SEQ.incrementAndGet();
+        private final List<DownloadJob> jobs;
+        private final Runnable body;
+        private volatile boolean preempted;
+
+        Task(List<DownloadJob> jobs, Runnable body) {
+            this.jobs = List.copyOf(jobs);
+            this.body = body;
+        }
+
+        public List<DownloadJob> jobs() {
+            return jobs;
+        }
+
+        /** Высший приоритет среди задач пакета (читается заново: приоритет можно поменять в очереди). */
+        public JobPriority priority() {
+            JobPriority best = JobPriority.BATCH;
+            for (DownloadJob job : jobs) {
+                if (job.getPriority().compareTo(best) < 0) best = job.getPriority();
+            }
+            return best;
+        }
+
+        /** Ближайший срок, 0 — срока нет. */
+        long deadlineMillis() {
+            long best = 0;
+            for (DownloadJob job : jobs) {
+                Instant d = job.getDeadline();
+                if (d != null && (best == 0 || d.toEpochMilli() < best)) best = d.toEpochMilli();
+            }
+            return best;
+        }
+
+        /** Сайт пакета: пакеты собираются из задач одного сайта. */
+        String host() {
+            return jobs.getFirst().getHost();
+        }
+
+        /** Окно пакета: пакеты собираются из задач одного окна. */
+        DownloadWindow window() {
+            return jobs.getFirst().getWindow();
+        }
+
+        long expectedBytes() {
+            long sum = 0;
+            for (DownloadJob job : jobs) {
+                long hint = job.getSizeHint();
+                sum += hint > 0 ? hint : UNKNOWN_SIZE_GUESS;
+            }
+            return sum;
+        }
+
+        /** Все задачи отменены, пока ждали в очереди: слот им не нужен. */
+        boolean cancelled() {
+            return jobs.stream().allMatch(DownloadJob::isCancelled);
+        }
+
+        /** Ожидание считается от первой постановки — приостановленная задача не теряет накопленный возраст. */
+        long queuedAtMillis() {
+            long first = Long.MAX_VALUE;
+            for (DownloadJob job : jobs) first = Math.min(first, job.getQueuedAt());
+            return first;
+        }
+
+        int effectiveClass(long now, long agingMillis, long urgentMillis) {
+            long deadline = deadlineMillis();
+            if (deadline != 0 && deadline - now <= urgentMillis) return JobPriority.INTERACTIVE.ordinal();
+            int cls = priority().ordinal();
+            if (agingMillis > 0) {
+                cls -= (int) Math.min(cls, Math.max(0, now - queuedAtMillis()) / agingMillis);
+            }
+            return cls;
+        }
+    }
+
+    private final int maxConcurrent;
+    private final int maxPerHost;
+    private final long agingMillis;
+    private final long urgentMillis;
+    private final ExecutorService executor;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService ticker;
+
+    private final List<Task> pending = new ArrayList<>();
+    private final List<Task> running = new ArrayList<>();
+    private boolean shutdown;
+
+    public JobScheduler(int maxConcurrent, int maxPerHost, Duration aging, Duration urgent) {
+        this(maxConcurrent, maxPerHost, aging, urgent, newSlotExecutor(), System::currentTimeMillis, newTicker());
+    }
+
+    /** Для тестов: свои потоки и часы; ticker == null — окна проверяются только вызовом {@link #tick()}. */
+    JobScheduler(int maxConcurrent, int maxPerHost, Duration aging, Duration urgent, ExecutorService executor,
+                 LongSupplier clock, ScheduledExecutorService ticker) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxPerHost = Math.max(1, maxPerHost);
+        this.agingMillis = aging.toMillis();
+        this.urgentMillis = urgent.toMillis();
+        this.executor = executor;
+        this.clock = clock;
+        this.ticker = ticker;
+    }
+
+    /** Запускает проверку окон раз в {@link #TICK}; без вызова окна проверяются только через {@link #tick()}. */
+    public JobScheduler start() {
+        if (ticker != null) {
+            // исключение остановило бы все следующие проверки — ловим его здесь
+            ticker.scheduleWithFixedDelay(() -> {
+                try {
+                    tick();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Window check failed", e);
+                }
+            }, TICK.toMillis(), TICK.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    private static ScheduledExecutorService newTicker() {
+        return Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "download-window-ticker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static ExecutorService newSlotExecutor() {
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "download-slot-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Поставить в очередь; body выполняется в потоке-слоте, когда до задачи дойдёт очередь. */
+    public Task submit(List<DownloadJob> jobs, Runnable body) {
+        Task task = new Task(jobs, body);
+        synchronized (this) {
+            pending.add(task);
+            dispatch();
+            if (pending.contains(task) && task.priority() == JobPriority.INTERACTIVE) {
+                preemptFor(task);
+            }
+        }
+        return task;
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    public synchronized int runningCount() {
+        return running.size();
+    }
+
+    /**
+     * Пересмотреть очередь после изменения задач из окна: отменённые уходят из очереди сразу,
+     * поднятая до INTERACTIVE задача может вытеснить работающую.
+     */
+    public synchronized void reconsider() {
+        dispatch();
+        // уже приостанавливаемые задачи освобождают место для первых ожидающих
+        long freeing = running.stream().filter(r -> r.preempted).count();
+        for (Task task : List.copyOf(pending)) {
+            if (task.priority() != JobPriority.INTERACTIVE) continue;
+            if (freeing > 0) {
+                freeing--;
+            } else {
+                preemptFor(task);
+            }
+        }
+    }
+
+    /** Больше ничего не запускать. Ожидающие задачи остаются в журнале и возобновятся при следующем старте. */
+    public synchronized void shutdown() {
+        shutdown = true;
+        pending.clear();
+        if (ticker != null) ticker.shutdownNow();
+    }
+
+    /** Приостановить задачи закрывшихся окон, запустить задачи открывшихся. */
+    synchronized void tick() {
+        ZonedDateTime now = now();
+        for (Task task : running) {
+            DownloadWindow window = task.window();
+            if (window != null && !task.preempted && !window.isOpen(now)) {
+                task.preempted = true;
+                LOGGER.info("Window {} closed, pausing {}", window, task.jobs);
+                task.jobs.forEach(DownloadJob::pause);
+            }
+        }
+        dispatch();
+    }
+
+    /** Порядок выбора следующей задачи (см. описание класса). */
+    static Comparator<Task> order(long now, long agingMillis, long urgentMillis) {
+        return Comparator.comparingInt((Task t) -> t.effectiveClass(now, agingMillis, urgentMillis))
+                .thenComparingLong(t -> t.deadlineMillis() == 0 ? Long.MAX_VALUE : t.deadlineMillis())
+                .thenComparingLong(Task::expectedBytes)
+                .thenComparingLong(t -> t.seq);
+    }
+
+    private void dispatch() {
+        if (!shutdown) {
+            // тело отменённой задачи лишь выставит итоговое состояние — не держим её до свободного слота
+            for (Task task : List.copyOf(pending)) {
+                if (task.cancelled()) {
+                    pending.remove(task);
+                    executor.execute(() -> run(task));
+                }
+            }
+        }
+        while (!shutdown && running.size() < maxConcurrent) {
+            ZonedDateTime now = now();
+            Task next = pending.stream()
+                    .filter(t -> canStart(t, now))
+                    .min(order(clock.getAsLong(), agingMillis, urgentMillis))
+                    .orElse(null);
+            if (next == null) return;
+            pending.remove(next);
+            running.add(next);
+            executor.execute(() -> run(next));
+        }
+    }
+
+    private void run(Task task) {
+        try {
+            task.body.run();
+        } catch (RuntimeException e) {
+            LOGGER.error("Download task failed: {}", task.jobs, e);
+        } finally {
+            synchronized (this) {
+                running.remove(task);
+                dispatch();
+            }
+        }
+    }
+
+    private boolean canStart(Task task, ZonedDateTime now) {
+        if (hostFull(task)) return false;
+        DownloadWindow window = task.window();
+        if (window == null) return true;
+        if (!window.isOpen(now)) return false;
+        if (window.maxJobs() <= 0) return true;
+        long inWindow = running.stream()
+                .filter(r -> r.window() != null && r.window().name().equals(window.name()))
+                .count();
+        return inWindow < window.maxJobs();
+    }
+
+    private boolean hostFull(Task task) {
+        String host = task.host();
+        return running.stream().filter(r -> r.host().equals(host)).count() >= maxPerHost;
+    }
+
+    private ZonedDateTime now() {
+        return Instant.ofEpochMilli(clock.getAsLong()).atZone(ZoneId.systemDefault());
+    }
+
+    /** Освободить слот для интерактивной задачи: приостановить самую «дешёвую» из работающих. */
+    private void preemptFor(Task task) {
+        // если мешает предел сайта, место освобождает только задача того же сайта
+        boolean sameHostOnly = hostFull(task);
+        Task victim = running.stream()
+                .filter(r -> !r.preempted && r.priority().compareTo(task.priority()) > 0)
+                .filter(r -> !sameHostOnly || r.host().equals(task.host()))
+                .max(Comparator.comparing(Task::priority).thenComparingLong(r -> r.seq))
+                .orElse(null);
+        if (victim == null) return;
+        victim.preempted = true;
+        LOGGER.info("Pausing {} ({}) for interactive {}", victim.jobs, victim.priority(), task.jobs);
+        victim.jobs.forEach(DownloadJob::pause);
+    }
+}
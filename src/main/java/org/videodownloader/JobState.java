@@ -0,0 +1,21 @@
+package org.videodownloader;
+
+/** Этапы жизни задачи загрузки; каждый переход записывается в {@link JobJournal}. */
+public enum JobState {
+    QUEUED,
+    /** Заголовок страницы или медиа-URL через браузер. */
+    RESOLVING,
+    DOWNLOADING,
+    /** Вытеснена задачей выше приоритетом, ждёт в очереди докачки. */
+    PAUSED,
+    /** Дедупликация и запись в историю. */
+    POST_PROCESSING,
+    DONE,
+    FAILED,
+    CANCELLED;
+
+    /** Задача завершена и после перезапуска не возобновляется. */
+    public boolean isTerminal() {
+        return this == DONE || this == FAILED || this == CANCELLED;
+    }
+}
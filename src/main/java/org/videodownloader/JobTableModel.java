@@ -0,0 +1,201 @@
+package org.videodownloader;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.io.Serial;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Модель таблицы загрузок. Прогресс приходит из рабочих потоков на каждую строку yt-dlp;
+ * {@link #jobChanged} лишь отмечает задачу в множестве изменённых (сколько бы событий ни пришло — одна отметка),
+ * а таймер Swing раз в {@link #REFRESH_MILLIS} добавляет новые строки и одним событием обновляет
+ * диапазон изменённых. Сотни активных строк — несколько перерисовок в секунду.
+ * <p>
+ * Значения ячеек читаются прямо из {@link DownloadJob} (поля volatile). Завершённых строк хранится
+ * не больше {@link #MAX_FINISHED_ROWS}: старые удаляются.
+ */
+final class JobTableModel extends AbstractTableModel implements VideoDownloadManager.JobObserver {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    static final int REFRESH_MILLIS = 250;
+    static final int MAX_FINISHED_ROWS = 500;
+
+    static final int COL_ID = 0;
+    static final int COL_URL = 1;
+    static final int COL_STATE = 2;
+    static final int COL_PRIORITY = 3;
+    static final int COL_PROGRESS = 4;
+    static final int COL_SPEED = 5;
+    static final int COL_ETA = 6;
+    static final int COL_SIZE = 7;
+    static final int COL_FILE = 8;
+    private static final String[] COLUMNS = {"#", "URL", "State", "Priority", "Progress", "Speed", "ETA", "Size", "File"};
+
+    private final transient Set<DownloadJob> changed = ConcurrentHashMap.newKeySet();
+    // только EDT
+    private final transient List<DownloadJob> rows = new ArrayList<>();
+    private final transient Map<Long, Integer> rowById = new HashMap<>();
+    private final Timer timer;
+
+    JobTableModel() {
+        timer = new Timer(REFRESH_MILLIS, e -> flush());
+        timer.setCoalesce(true);
+    }
+
+    void start() {
+        timer.start();
+    }
+
+    void stop() {
+        timer.stop();
+    }
+
+    /** Из любого потока; не блокирует. */
+    @Override
+    public void jobChanged(DownloadJob job) {
+        changed.add(job);
+    }
+
+    /** Перенести накопленные изменения в таблицу (EDT). */
+    void flush() {
+        if (changed.isEmpty()) return;
+        List<DownloadJob> batch = new ArrayList<>();
+        // снимаем отметку до чтения значений: изменение после неё отметит задачу снова
+        for (Iterator<DownloadJob> it = changed.iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+            it.remove();
+        }
+        // новые строки — в порядке постановки
+        batch.sort(Comparator.comparingLong(DownloadJob::getId));
+
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        int inserted = rows.size();
+        for (DownloadJob job : batch) {
+            Integer row = rowById.get(job.getId());
+            if (row == null) {
+                rowById.put(job.getId(), rows.size());
+                rows.add(job);
+            } else {
+                first = Math.min(first, row);
+                last = Math.max(last, row);
+            }
+        }
+        if (last >= 0) fireTableRowsUpdated(first, last);
+        if (rows.size() > inserted) fireTableRowsInserted(inserted, rows.size() - 1);
+        dropOldFinished();
+    }
+
+    /** Убрать самые старые завершённые строки сверх предела. */
+    private void dropOldFinished() {
+        int finished = 0;
+        for (DownloadJob job : rows) {
+            if (job.getState().isTerminal()) finished++;
+        }
+        int excess = finished - MAX_FINISHED_ROWS;
+        if (excess <= 0) return;
+        for (int i = 0; i < rows.size() && excess > 0; ) {
+            DownloadJob job = rows.get(i);
+            if (job.getState().isTerminal()) {
+                rows.remove(i);
+                fireTableRowsDeleted(i, i);
+                excess--;
+            } else {
+                i++;
+            }
+        }
+        rowById.clear();
+        for (int i = 0; i < rows.size(); i++) rowById.put(rows.get(i).getId(), i);
+    }
+
+    DownloadJob jobAt(int row) {
+        return rows.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return switch (column) {
+            case COL_ID, COL_PROGRESS -> Integer.class;
+            default -> String.class;
+        };
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        DownloadJob job = rows.get(row);
+        YtDlpProgress p = job.getProgress();
+        boolean running = job.getState() == JobState.DOWNLOADING;
+        return switch (column) {
+            case COL_ID -> (int) job.getId();
+            case COL_URL -> job.getUrl();
+            case COL_STATE -> job.getState().name();
+            case COL_PRIORITY -> job.getPriority().name();
+            case COL_PROGRESS -> percent(job, p);
+            case COL_SPEED -> running && p != null && p.speedBytesPerSec() >= 0 ? bytes(p.speedBytesPerSec()) + "/s" : "";
+            case COL_ETA -> running && p != null && p.etaSeconds() >= 0 ? clock(p.etaSeconds()) : "";
+            case COL_SIZE -> size(job, p);
+            case COL_FILE -> {
+                Path file = job.getSavedFile();
+                yield file == null ? "" : file.toString();
+            }
+            default -> "";
+        };
+    }
+
+    private static int percent(DownloadJob job, YtDlpProgress p) {
+        if (job.getState() == JobState.DONE || job.getState() == JobState.POST_PROCESSING) return 100;
+        return p == null ? 0 : (int) Math.max(0, Math.min(100, Math.round(p.percent())));
+    }
+
+    private static String size(DownloadJob job, YtDlpProgress p) {
+        long total = p != null && p.totalBytes() > 0 ? p.totalBytes() : job.getSizeHint();
+        if (total <= 0) return "";
+        return p != null && job.getState() == JobState.DOWNLOADING && p.downloadedBytes() >= 0
+                ? bytes(p.downloadedBytes()) + " / " + bytes(total)
+                : bytes(total);
+    }
+
+    static String bytes(long n) {
+        if (n < 1024) return n + " B";
+        String[] units = {"KiB", "MiB", "GiB", "TiB"};
+        double v = n;
+        int u = -1;
+        do {
+            v /= 1024;
+            u++;
+        } while (v >= 1024 && u < units.length - 1);
+        return String.format(Locale.ROOT, "%.1f %s", v, units[u]);
+    }
+
+    static String clock(long seconds) {
+        long h = seconds / 3600;
+        long m = seconds / 60 % 60;
+        long s = seconds % 60;
+        return h > 0 ? String.format(Locale.ROOT, "%d:%02d:%02d", h, m, s) : String.format(Locale.ROOT, "%d:%02d", m, s);
+    }
+}
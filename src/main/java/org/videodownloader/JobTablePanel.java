@@ -0,0 +1,111 @@
+package org.videodownloader;
+
+import javax.swing.*;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumnModel;
+import java.awt.*;
+import java.awt.event.ActionListener;
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Таблица загрузок с действиями над выделенными строками: отмена, повтор, смена приоритета.
+ * Обновления строк приходят от {@link JobTableModel} с ограниченной частотой.
+ */
+final class JobTablePanel extends JPanel {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final JobTableModel model;
+    private final JTable table;
+    private final JButton cancelBtn = new JButton("Cancel");
+    private final JButton retryBtn = new JButton("Retry");
+    private final JComboBox<JobPriority> priorityBox = new JComboBox<>(JobPriority.values());
+
+    /** retryListener получает статусы повторных запусков. */
+    JobTablePanel(VideoDownloadManager manager, JobTableModel model, App.DownloadListener retryListener) {
+        super(new BorderLayout(4, 4));
+        this.model = model;
+
+        table = new JTable(model);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        table.setFillsViewportHeight(true);
+        table.setDefaultRenderer(Integer.class, table.getDefaultRenderer(Object.class));
+        TableColumnModel columns = table.getColumnModel();
+        columns.getColumn(JobTableModel.COL_PROGRESS).setCellRenderer(new ProgressRenderer());
+        int[] widths = {40, 260, 110, 90, 110, 90, 60, 130, 260};
+        for (int i = 0; i < widths.length; i++) columns.getColumn(i).setPreferredWidth(widths[i]);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel actions = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        cancelBtn.setToolTipText("Отменить выделенные загрузки");
+        retryBtn.setToolTipText("Повторить выделенные неудавшиеся или отменённые загрузки");
+        priorityBox.setToolTipText("Приоритет выделенных загрузок в очереди");
+        actions.add(cancelBtn);
+        actions.add(retryBtn);
+        actions.add(new JLabel("Priority:"));
+        actions.add(priorityBox);
+        add(actions, BorderLayout.SOUTH);
+
+        cancelBtn.addActionListener(e -> selectedJobs().forEach(manager::cancel));
+        retryBtn.addActionListener(e -> selectedJobs().forEach(job -> manager.retry(job, retryListener)));
+        priorityBox.addActionListener(e -> {
+            JobPriority priority = (JobPriority) priorityBox.getSelectedItem();
+            if (priority != null) selectedJobs().forEach(job -> manager.reprioritize(job, priority));
+        });
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) updateActions(true);
+        });
+        // состояние выделенных задач меняется само — кнопки пересчитываются с обновлением строк
+        model.addTableModelListener(e -> updateActions(false));
+        updateActions(true);
+    }
+
+    private List<DownloadJob> selectedJobs() {
+        List<DownloadJob> jobs = new ArrayList<>();
+        for (int row : table.getSelectedRows()) {
+            jobs.add(model.jobAt(table.convertRowIndexToModel(row)));
+        }
+        return jobs;
+    }
+
+    /** selectionChanged — показать в списке приоритет выделенной задачи. */
+    private void updateActions(boolean selectionChanged) {
+        List<DownloadJob> jobs = selectedJobs();
+        boolean anyActive = jobs.stream().anyMatch(j -> !j.getState().isTerminal());
+        boolean anyRetryable = jobs.stream()
+                .anyMatch(j -> j.getState() == JobState.FAILED || j.getState() == JobState.CANCELLED);
+        cancelBtn.setEnabled(anyActive);
+        retryBtn.setEnabled(anyRetryable);
+        priorityBox.setEnabled(anyActive);
+        if (selectionChanged && jobs.size() == 1) {
+            // без события: иначе выбор строки сам «сменил» бы приоритет
+            ActionListener[] listeners = priorityBox.getActionListeners();
+            for (ActionListener l : listeners) priorityBox.removeActionListener(l);
+            priorityBox.setSelectedItem(jobs.getFirst().getPriority());
+            for (ActionListener l : listeners) priorityBox.addActionListener(l);
+        }
+    }
+
+    /** Прогресс строкой-индикатором. */
+    private static final class ProgressRenderer extends JProgressBar implements TableCellRenderer {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        ProgressRenderer() {
+            super(0, 100);
+            setStringPainted(true);
+            setBorderPainted(false);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            int percent = value instanceof Integer i ? i : 0;
+            setValue(percent);
+            setString(percent + "%");
+            return this;
+        }
+    }
+}
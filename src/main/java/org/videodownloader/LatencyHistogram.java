@@ -0,0 +1,121 @@
+package org.videodownloader;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержек в духе HdrHistogram: логарифмически-линейные корзины в микросекундах
+ * (на каждую степень двойки — {@link #HALF} корзин, относительная погрешность не больше 1/{@link #HALF}).
+ * Запись — несколько атомарных сложений в заранее выделенном массиве, без блокировок и без объектов;
+ * перцентили считаются только при чтении (JMX).
+ */
+final class LatencyHistogram implements Metrics.LatencyMXBean {
+    /** Значения меньше 2^SUB_BITS мкс храним точно. */
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    static final int HALF = SUB / 2;
+    private static final int BUCKETS = SUB + (Long.SIZE - 1 - SUB_BITS) * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void recordNanos(long nanos) {
+        recordMicros(Math.max(0, nanos / 1_000));
+    }
+
+    void recordMicros(long micros) {
+        counts.incrementAndGet(index(micros));
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    static int index(long v) {
+        if (v < SUB) return (int) v;
+        // сдвиг, после которого у значения остаётся SUB_BITS значащих бит: старшие в [HALF, SUB)
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return SUB + (shift - 1) * HALF + (int) ((v >>> shift) - HALF);
+    }
+
+    /** Наибольшее значение корзины. */
+    static long highest(int index) {
+        if (index < SUB) return index;
+        int shift = (index - SUB) / HALF + 1;
+        long top = (index - SUB) % HALF + HALF;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /** Значение, не меньше которого доля q записей (по верхней границе корзины), в микросекундах. */
+    long percentileMicros(double q) {
+        long total = count.get();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highest(i), maxMicros.get());
+        }
+        return maxMicros.get();
+    }
+
+    long sumMicros() {
+        return sumMicros.get();
+    }
+
+    /**
+     * Накопленные счётчики для границ bounds (мкс, по возрастанию) за один проход: out[i] — записи не больше
+     * bounds[i] (с точностью до корзины), последний элемент out — всего. out длиннее bounds на единицу.
+     */
+    void cumulative(long[] bounds, long[] out) {
+        int b = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            while (b < bounds.length && highest(i) > bounds[b]) out[b++] = seen;
+            seen += counts.get(i);
+        }
+        while (b < bounds.length) out[b++] = seen;
+        out[bounds.length] = seen;
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : sumMicros.get() / 1000.0 / n;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentileMicros(0.50) / 1000.0;
+    }
+
+    @Override
+    public double getP90Millis() {
+        return percentileMicros(0.90) / 1000.0;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentileMicros(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /** Сбросить накопленное (запись в это время может частично попасть в старые значения). */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        sumMicros.set(0);
+        maxMicros.set(0);
+    }
+}
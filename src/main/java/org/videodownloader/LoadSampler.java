@@ -0,0 +1,172 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Замеры нагрузки для панели графиков: раз в {@link #INTERVAL} — суммарная скорость и скорость по сайтам
+ * (по последней строке прогресса yt-dlp каждой задачи), число работающих задач, сессий Chrome и глубина очереди.
+ * <p>
+ * Замеры пишутся в кольцевые буферы из примитивных массивов фиксированного размера (окно / интервал):
+ * под значения замера объекты не создаются, старые значения перезаписываются. Сайт задачи берётся
+ * готовым из {@link DownloadJob#getHost()}, URL на каждый замер не разбирается.
+ * Сайтов отслеживается не больше {@link #MAX_HOSTS}; слот сайта, молчавшего всё окно, отдаётся новому,
+ * остальное идёт в «other».
+ */
+final class LoadSampler implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadSampler.class);
+
+    static final Duration INTERVAL = Duration.ofSeconds(1);
+    static final int MAX_HOSTS = 4;
+    static final String OTHER_HOSTS = "other";
+
+    private final int capacity;
+    private final long[] times;
+    private final double[] total;
+    private final double[][] hosts;
+    private final String[] hostNames = new String[MAX_HOSTS + 1];
+    private final long[] hostLastActive = new long[MAX_HOSTS + 1];
+    private final int[] active;
+    private final int[] browsers;
+    private final int[] queued;
+    private int head;
+    private int count;
+    private long tick;
+    private ScheduledExecutorService timer;
+
+    LoadSampler(Duration window) {
+        capacity = (int) Math.max(2, window.toMillis() / INTERVAL.toMillis());
+        times = new long[capacity];
+        total = new double[capacity];
+        hosts = new double[MAX_HOSTS + 1][capacity];
+        active = new int[capacity];
+        browsers = new int[capacity];
+        queued = new int[capacity];
+        hostNames[MAX_HOSTS] = OTHER_HOSTS;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /** Замерять раз в {@link #INTERVAL} в потоке-демоне до {@link #close()}. */
+    synchronized void start(Supplier<Collection<DownloadJob>> jobs) {
+        if (timer != null) return;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "load-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(() -> {
+            try {
+                sample(System.currentTimeMillis(), jobs.get(), VideoExtractor.activeSessions());
+            } catch (RuntimeException e) {
+                LOGGER.warn("Load sample failed: {}", e.toString());
+            }
+        }, 0, INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (timer != null) timer.shutdownNow();
+    }
+
+    /** Один замер по задачам в работе. */
+    synchronized void sample(long now, Iterable<DownloadJob> jobs, int browserSessions) {
+        int i = head;
+        head = (head + 1) % capacity;
+        if (count < capacity) count++;
+        tick++;
+
+        times[i] = now;
+        total[i] = 0;
+        for (double[] host : hosts) host[i] = 0;
+        int running = 0;
+        int waiting = 0;
+        for (DownloadJob job : jobs) {
+            switch (job.getState()) {
+                case QUEUED, PAUSED -> waiting++;
+                case RESOLVING, POST_PROCESSING -> running++;
+                case DOWNLOADING -> {
+                    running++;
+                    YtDlpProgress p = job.getProgress();
+                    if (p != null && p.speedBytesPerSec() > 0) {
+                        total[i] += p.speedBytesPerSec();
+                        hosts[hostSlot(job.getHost())][i] += p.speedBytesPerSec();
+                    }
+                }
+                default -> { }
+            }
+        }
+        active[i] = running;
+        browsers[i] = browserSessions;
+        queued[i] = waiting;
+    }
+
+    /** Слот сайта: свой, свободный, молчавший всё окно — или «other». */
+    private int hostSlot(String host) {
+        int free = -1;
+        for (int s = 0; s < MAX_HOSTS; s++) {
+            if (host.equals(hostNames[s])) {
+                hostLastActive[s] = tick;
+                return s;
+            }
+            if (free < 0 && (hostNames[s] == null || tick - hostLastActive[s] > capacity)) free = s;
+        }
+        if (free < 0) return MAX_HOSTS;
+        hostNames[free] = host;
+        hostLastActive[free] = tick;
+        // прошлые значения принадлежали другому сайту
+        Arrays.fill(hosts[free], 0);
+        return free;
+    }
+
+    /** Снимок для отрисовки: массивы заводятся один раз и перезаписываются. */
+    static final class View {
+        final long[] times;
+        final double[] total;
+        final double[][] hosts;
+        final String[] hostNames = new String[MAX_HOSTS + 1];
+        final int[] active;
+        final int[] browsers;
+        final int[] queued;
+        int count;
+
+        View(int capacity) {
+            times = new long[capacity];
+            total = new double[capacity];
+            hosts = new double[MAX_HOSTS + 1][capacity];
+            active = new int[capacity];
+            browsers = new int[capacity];
+            queued = new int[capacity];
+        }
+    }
+
+    /** Скопировать окно в view от старых замеров к новым. */
+    synchronized void copyTo(View view) {
+        int start = (head - count + capacity) % capacity;
+        int first = Math.min(count, capacity - start);
+        copy(times, view.times, start, first);
+        copy(total, view.total, start, first);
+        for (int h = 0; h <= MAX_HOSTS; h++) copy(hosts[h], view.hosts[h], start, first);
+        copy(active, view.active, start, first);
+        copy(browsers, view.browsers, start, first);
+        copy(queued, view.queued, start, first);
+        System.arraycopy(hostNames, 0, view.hostNames, 0, hostNames.length);
+        view.count = count;
+    }
+
+    /** Кольцо [start, start + count) — двумя кусками: до конца массива и с его начала. */
+    private void copy(Object from, Object to, int start, int first) {
+        System.arraycopy(from, start, to, 0, first);
+        System.arraycopy(from, 0, to, first, count - first);
+    }
+}
@@ -1,72 +1,239 @@
 package org.videodownloader;
 
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
 import java.awt.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 
 /**
- * Класс для управления логами приложения.
- * Использует SLF4J/Logback для логирования и отображает логи в графическом окне.
- * Поддерживает ленивую инициализацию окна логов и запись логов в файл через Logback.
+ * Окно логов приложения и appender Logback, который его питает (см. logback.xml).
+ * <p>
+ * Appender только кладёт событие в общий ограниченный буфер без блокировок — поток, который пишет в лог
+ * (загрузка, вывод yt-dlp, EDT), не ждёт ни окна, ни диска. Запись в файл идёт отдельно, через AsyncAppender.
+ * Окно создаётся при первом показе и, пока видимо, раз в {@link #REFRESH_MILLIS} дорисовывает новые события
+ * из буфера с фильтром по уровню и по задаче (ключ MDC {@link #MDC_JOB}).
  */
-public class LogManager {
+public class LogManager extends AppenderBase<ILoggingEvent> {
     private static final Logger LOGGER = LoggerFactory.getLogger(LogManager.class);
-    private JFrame logFrame;
-    private JTextArea logTextArea;
 
-    /**
-     * Конструктор класса LogManager.
-     * Инициализирует начальные логи без создания окна (ленивая инициализация).
-     */
-    public LogManager() {
-        LOGGER.info("LogManager initialized");
-    }
+    /** Ключ MDC с номером задачи (или номерами задач пакета через запятую). */
+    public static final String MDC_JOB = "job";
+    static final int DEFAULT_CAPACITY = 5000;
+    static final int REFRESH_MILLIS = 300;
 
-    /**
-     * Инициализирует графическое окно логов.
-     * Создаёт окно с JTextArea для отображения логов и добавляет прокрутку.
-     */
-    private void initializeLogContent() {
-        logFrame = new JFrame("Logs");
-        logFrame.setSize(400, 300);
-        logFrame.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
+    private static volatile Buffer buffer = new Buffer(DEFAULT_CAPACITY);
+    // только EDT
+    private static LogWindow window;
+
+    private int capacity = DEFAULT_CAPACITY;
 
-        logTextArea = new JTextArea();
-        logTextArea.setEditable(false);
-        logTextArea.setLineWrap(true);
-        logTextArea.setWrapStyleWord(true);
+    /** Размер буфера в событиях ({@code <capacity>} в logback.xml). */
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(100, capacity);
+    }
+
+    @Override
+    public void start() {
+        if (capacity != buffer.capacity()) buffer = new Buffer(capacity);
+        super.start();
+    }
 
-        JScrollPane scrollPane = new JScrollPane(logTextArea);
-        logFrame.add(scrollPane, BorderLayout.CENTER);
+    @Override
+    protected void append(ILoggingEvent event) {
+        // окно прочитает событие позже: имя потока, MDC и текст с аргументами фиксируем сейчас,
+        // как это делает AsyncAppender
+        event.prepareForDeferredProcessing();
+        buffer.add(event);
+    }
 
-        LOGGER.info("Log window initialized");
+    static Buffer buffer() {
+        return buffer;
     }
 
     /**
      * Отображает окно логов.
-     * Если окно ещё не создано, вызывает initializeLogContent().
+     * Если окно ещё не создано, создаёт его.
      */
     public void showLogWindow() {
-        if (logFrame == null) {
-            initializeLogContent();
-        }
-        logFrame.setVisible(true);
-        LOGGER.debug("Log window shown");
+        SwingUtilities.invokeLater(() -> {
+            if (window == null) {
+                window = new LogWindow();
+                LOGGER.info("Log window initialized");
+            }
+            window.show();
+        });
     }
 
     /**
-     * Добавляет сообщение в текстовую область логов и записывает его через SLF4J.
+     * Записывает сообщение в лог приложения; в окно оно попадает через appender.
      *
      * @param message сообщение для добавления
      */
     public void appendLog(String message) {
-        if (logTextArea != null) {
-            logTextArea.append(message + "\n");
-            logTextArea.setCaretPosition(logTextArea.getDocument().getLength());
-        }
         LOGGER.info(message);
     }
 
+    /** Событие буфера с его порядковым номером. */
+    record Entry(long seq, ILoggingEvent event) {}
+
+    /**
+     * Кольцо последних событий. Писатель занимает номер атомарным счётчиком и кладёт событие в ячейку;
+     * читатель по номеру ячейки отличает свежее событие от перезаписанного и от ещё не положенного.
+     */
+    static final class Buffer {
+        private final AtomicReferenceArray<Entry> slots;
+        private final AtomicLong next = new AtomicLong();
+
+        Buffer(int capacity) {
+            slots = new AtomicReferenceArray<>(capacity);
+        }
+
+        int capacity() {
+            return slots.length();
+        }
+
+        void add(ILoggingEvent event) {
+            long seq = next.getAndIncrement();
+            slots.set((int) (seq % slots.length()), new Entry(seq, event));
+        }
+
+        /** Номер следующего события. */
+        long next() {
+            return next.get();
+        }
+
+        /** Выдать события начиная с номера from (перезаписанные пропускаются); возвращает, откуда читать дальше. */
+        long read(long from, Consumer<Entry> sink) {
+            long end = next.get();
+            long seq = Math.max(from, end - slots.length());
+            for (; seq < end; seq++) {
+                Entry e = slots.get((int) (seq % slots.length()));
+                // номер занят, но событие ещё не положено — дочитаем в следующий раз
+                if (e == null || e.seq() < seq) break;
+                if (e.seq() == seq) sink.accept(e);
+            }
+            return seq;
+        }
+    }
+
+    /** Совпадает ли событие с фильтром окна; job — номер задачи или пусто. */
+    static boolean matches(ILoggingEvent event, Level minLevel, String job) {
+        if (!event.getLevel().isGreaterOrEqual(minLevel)) return false;
+        if (job == null || job.isBlank()) return true;
+        String jobs = event.getMDCPropertyMap().get(MDC_JOB);
+        return jobs != null && List.of(jobs.split(",")).contains(job.trim());
+    }
+
+    /** Окно логов; живёт в EDT. */
+    private static final class LogWindow {
+        private static final DateTimeFormatter TIME =
+                DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+        private final JFrame frame = new JFrame("Logs");
+        private final JTextArea text = new JTextArea();
+        private final JComboBox<String> levelBox = new JComboBox<>(new String[]{"DEBUG", "INFO", "WARN", "ERROR"});
+        private final JTextField jobField = new JTextField(6);
+        private final Timer timer = new Timer(REFRESH_MILLIS, e -> refresh());
+        private Buffer source;
+        private long cursor;
+
+        LogWindow() {
+            frame.setSize(800, 400);
+            frame.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
+
+            text.setEditable(false);
+            text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+            levelBox.setSelectedItem("INFO");
+            levelBox.addActionListener(e -> reset());
+            jobField.setToolTipText("Номер задачи; пусто — все");
+            jobField.addActionListener(e -> reset());
+
+            JPanel filters = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 2));
+            filters.add(new JLabel("Level:"));
+            filters.add(levelBox);
+            filters.add(new JLabel("Job:"));
+            filters.add(jobField);
+            frame.add(filters, BorderLayout.NORTH);
+            frame.add(new JScrollPane(text), BorderLayout.CENTER);
+
+            timer.setCoalesce(true);
+            // скрытое окно ничего не форматирует
+            frame.addComponentListener(new java.awt.event.ComponentAdapter() {
+                @Override public void componentShown(java.awt.event.ComponentEvent e) { timer.start(); }
+                @Override public void componentHidden(java.awt.event.ComponentEvent e) { timer.stop(); }
+            });
+        }
+
+        void show() {
+            frame.setVisible(true);
+            frame.toFront();
+            refresh();
+        }
+
+        /** Фильтр сменился — перерисовать то, что есть в буфере. */
+        private void reset() {
+            text.setText("");
+            cursor = 0;
+            refresh();
+        }
+
+        private void refresh() {
+            Buffer current = buffer;
+            if (current != source) {
+                // буфер пересоздан при переконфигурации Logback
+                source = current;
+                text.setText("");
+                cursor = 0;
+            }
+            if (cursor == current.next()) return;
+            Level minLevel = Level.toLevel((String) levelBox.getSelectedItem(), Level.INFO);
+            String job = jobField.getText();
+            StringBuilder sb = new StringBuilder();
+            cursor = current.read(cursor, entry -> {
+                ILoggingEvent ev = entry.event();
+                if (matches(ev, minLevel, job)) format(ev, sb);
+            });
+            if (sb.isEmpty()) return;
+
+            Document doc = text.getDocument();
+            try {
+                doc.insertString(doc.getLength(), sb.toString(), null);
+                Element root = doc.getDefaultRootElement();
+                int excess = root.getElementCount() - 1 - current.capacity();
+                if (excess > 0) doc.remove(0, root.getElement(excess - 1).getEndOffset());
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+            text.setCaretPosition(doc.getLength());
+        }
+
+        private static void format(ILoggingEvent ev, StringBuilder sb) {
+            sb.append(TIME.format(Instant.ofEpochMilli(ev.getTimeStamp()))).append(' ')
+                    .append(String.format("%-5s", ev.getLevel())).append(' ');
+            String job = ev.getMDCPropertyMap().get(MDC_JOB);
+            if (job != null) sb.append("[job ").append(job).append("] ");
+            String logger = ev.getLoggerName();
+            sb.append(logger.substring(logger.lastIndexOf('.') + 1)).append(" - ").append(ev.getFormattedMessage());
+            if (ev.getThrowableProxy() != null) {
+                sb.append(" (").append(ev.getThrowableProxy().getClassName()).append(": ")
+                        .append(ev.getThrowableProxy().getMessage()).append(')');
+            }
+            sb.append('\n');
+        }
+    }
 }
@@ -0,0 +1,178 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Метрики загрузок: счётчики, измерители (gauge) и гистограммы задержек по этапам
+ * ({@link Stage}) с метками сайта и исхода. Каждая метрика при создании регистрируется как MXBean
+ * {@code org.videodownloader:type=Latency|Counter|Gauge,name=…,host=…,outcome=…} — смотреть в JConsole/VisualVM
+ * или снимать любым JMX-агентом.
+ * <p>
+ * Сайтов в метках не больше {@link #MAX_HOSTS}, остальные идут как {@link #OTHER_HOST}: число MBean не растёт
+ * вместе с числом ссылок.
+ */
+public final class Metrics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+    static final String DOMAIN = "org.videodownloader";
+    static final int MAX_HOSTS = 100;
+    static final String OTHER_HOST = "other";
+
+    private Metrics() {}
+
+    /** Этапы, по которым видно, куда уходит время задачи. */
+    public enum Stage {
+        /** Постановка в очередь → начало работы в слоте. */
+        QUEUE_WAIT,
+        /** Заголовок страницы для имени файла. */
+        TITLE_FETCH,
+        /** Запуск yt-dlp → первая строка вывода (интерпретатор и экстрактор). */
+        YTDLP_STARTUP,
+        /** Запуск yt-dlp → первая строка прогресса. */
+        FIRST_BYTE,
+        /** Первая строка прогресса → слияние дорожек или выход. */
+        TRANSFER,
+        /** Слияние дорожек ffmpeg → выход yt-dlp. */
+        MERGE,
+        /** Запуск Chrome и сессии DevTools. */
+        SELENIUM_LAUNCH,
+        /** Загрузка страницы (и embed-страницы) в Chrome. */
+        PAGE_LOAD,
+        /** Загрузка страницы → пойманный медиа-URL. */
+        MEDIA_CAPTURE,
+        /** Постановка в очередь → итог задачи. */
+        JOB_TOTAL;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public interface LatencyMXBean {
+        long getCount();
+
+        double getMeanMillis();
+
+        double getP50Millis();
+
+        double getP90Millis();
+
+        double getP99Millis();
+
+        double getMaxMillis();
+
+        void reset();
+    }
+
+    public interface CounterMXBean {
+        long getCount();
+    }
+
+    public interface GaugeMXBean {
+        long getValue();
+    }
+
+    /** Счётчик событий или байт. */
+    static final class Counter implements CounterMXBean {
+        private final LongAdder value = new LongAdder();
+
+        void increment() {
+            value.increment();
+        }
+
+        void add(long n) {
+            value.add(n);
+        }
+
+        @Override
+        public long getCount() {
+            return value.sum();
+        }
+    }
+
+    record Gauge(LongSupplier supplier) implements GaugeMXBean {
+        @Override
+        public long getValue() {
+            return supplier.getAsLong();
+        }
+    }
+
+    /** Тип (Latency/Counter/Gauge), имя и метки метрики; у измерителей меток нет (null). */
+    record Key(String type, String name, String host, String outcome) {}
+
+    private static final Map<Key, Object> METRICS = new ConcurrentHashMap<>();
+    private static final Set<String> HOSTS = ConcurrentHashMap.newKeySet();
+
+    /** Гистограмма этапа для сайта URL и исхода. */
+    static LatencyHistogram latency(Stage stage, String url, String outcome) {
+        return (LatencyHistogram) METRICS.computeIfAbsent(new Key("Latency", stage.tag(), hostTag(url), outcome),
+                key -> register(key, new LatencyHistogram()));
+    }
+
+    /** Записать длительность этапа, начатого в startNanos (System.nanoTime()). */
+    static void recordSince(Stage stage, String url, String outcome, long startNanos) {
+        latency(stage, url, outcome).recordNanos(System.nanoTime() - startNanos);
+    }
+
+    static Counter counter(String name, String url, String outcome) {
+        return (Counter) METRICS.computeIfAbsent(new Key("Counter", name, hostTag(url), outcome),
+                key -> register(key, new Counter()));
+    }
+
+    /** Измеритель без меток; повторная регистрация с тем же именем игнорируется. */
+    static void gauge(String name, LongSupplier supplier) {
+        METRICS.computeIfAbsent(new Key("Gauge", name, null, null), key -> register(key, new Gauge(supplier)));
+    }
+
+    /** Все метрики реестра (живой вид, только чтение; для экспорта). */
+    static Map<Key, Object> all() {
+        return Collections.unmodifiableMap(METRICS);
+    }
+
+    /** Метка сайта с ограничением числа различных значений. */
+    static String hostTag(String url) {
+        if (url == null) return OTHER_HOST;
+        String host = HostThroughputStats.hostOf(url);
+        if (HOSTS.contains(host)) return host;
+        if (HOSTS.size() >= MAX_HOSTS) return OTHER_HOST;
+        HOSTS.add(host);
+        return host;
+    }
+
+    static ObjectName objectName(String type, String name, String host, String outcome) throws JMException {
+        StringBuilder sb = new StringBuilder(DOMAIN).append(":type=").append(type).append(",name=").append(value(name));
+        if (host != null) sb.append(",host=").append(value(host));
+        if (outcome != null) sb.append(",outcome=").append(value(outcome));
+        return new ObjectName(sb.toString());
+    }
+
+    private static String value(String v) {
+        for (char c : new char[]{',', '=', ':', '"', '*', '?', '\n'}) {
+            if (v.indexOf(c) >= 0) return ObjectName.quote(v);
+        }
+        return v;
+    }
+
+    private static <T> T register(Key key, T metric) {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(metric, objectName(key.type(), key.name(), key.host(), key.outcome()));
+        } catch (JMException e) {
+            // метрика всё равно считается, просто не видна снаружи
+            LOGGER.warn("Cannot register metric {}: {}", key, e.toString());
+        }
+        return metric;
+    }
+}
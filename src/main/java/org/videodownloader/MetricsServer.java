@@ -0,0 +1,252 @@
+package org.videodownloader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Экспорт метрик в текстовом формате Prometheus ({@code GET /metrics}) для машин без экрана, где всё
+ * снимается скрейпером. Отдаёт реестр {@link Metrics} (гистограммы этапов, счётчики задач и байт, измерители)
+ * и состояние «на сейчас»: задачи по состояниям, текущую скорость по сайтам, дочерние процессы по командам.
+ * <p>
+ * Включается портом ({@link AppConfig#metricsPort()}). Ответ собирается не чаще раза в {@link #MIN_RENDER_MILLIS}:
+ * частые скрейпы и несколько скрейперов сразу получают один и тот же готовый текст.
+ */
+final class MetricsServer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsServer.class);
+
+    static final String PREFIX = "videodownloader_";
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    static final long MIN_RENDER_MILLIS = 1_000;
+    /** Границы корзин гистограмм в секундах (в формате Prometheus корзины накопительные). */
+    static final double[] BOUNDS_SEC = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600};
+    private static final long[] BOUNDS_MICROS = new long[BOUNDS_SEC.length];
+    private static final String[] BOUND_LABELS = new String[BOUNDS_SEC.length];
+
+    static {
+        for (int i = 0; i < BOUNDS_SEC.length; i++) {
+            BOUNDS_MICROS[i] = Math.round(BOUNDS_SEC[i] * 1_000_000);
+            BOUND_LABELS[i] = number(BOUNDS_SEC[i]);
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Supplier<Collection<DownloadJob>> jobs;
+
+    private volatile byte[] last = new byte[0];
+    private volatile long renderedAt;
+
+    MetricsServer(String bind, int port, Supplier<Collection<DownloadJob>> jobs) throws IOException {
+        this.jobs = jobs;
+        server = HttpServer.create(new InetSocketAddress(bind, port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        LOGGER.info("Metrics endpoint listening on http://{}/metrics", server.getAddress());
+    }
+
+    /** Сервер по настройкам или null, если экспорт выключен или порт занят. */
+    static MetricsServer startIfEnabled(Supplier<Collection<DownloadJob>> jobs) {
+        int port = AppConfig.metricsPort();
+        if (port < 0) return null;
+        try {
+            return new MetricsServer(AppConfig.metricsBind(), port, jobs);
+        } catch (IOException e) {
+            LOGGER.error("Cannot start metrics endpoint on port {}", port, e);
+            return null;
+        }
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            String method = ex.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = body();
+            ex.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (method.equals("HEAD")) {
+                ex.sendResponseHeaders(200, -1);
+                return;
+            }
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Metrics request ended: {}", e.toString());
+        }
+    }
+
+    /** Готовый текст, пересобранный не чаще раза в MIN_RENDER_MILLIS. */
+    private byte[] body() {
+        long now = System.currentTimeMillis();
+        if (now - renderedAt < MIN_RENDER_MILLIS) return last;
+        synchronized (this) {
+            // пока ждали монитор, текст мог собрать другой запрос
+            if (now - renderedAt < MIN_RENDER_MILLIS) return last;
+            StringBuilder sb = new StringBuilder(Math.max(4096, last.length + 1024));
+            render(sb, jobs.get());
+            last = sb.toString().getBytes(StandardCharsets.UTF_8);
+            renderedAt = System.currentTimeMillis();
+            return last;
+        }
+    }
+
+    /** Весь ответ: реестр метрик и состояние на сейчас. */
+    static void render(StringBuilder sb, Collection<DownloadJob> active) {
+        renderRegistry(sb, Metrics.all());
+        renderJobs(sb, active);
+        renderProcesses(sb);
+    }
+
+    static void renderRegistry(StringBuilder sb, Map<Metrics.Key, Object> metrics) {
+        // семейство (тип + имя) должно идти одним блоком под одной строкой TYPE
+        List<Map.Entry<Metrics.Key, Object>> entries = new ArrayList<>(metrics.entrySet());
+        entries.sort(Comparator.comparing((Map.Entry<Metrics.Key, Object> e) -> e.getKey().type())
+                .thenComparing(e -> e.getKey().name()));
+        long[] cumulative = new long[BOUNDS_MICROS.length + 1];
+        String family = null;
+        for (Map.Entry<Metrics.Key, Object> e : entries) {
+            Metrics.Key key = e.getKey();
+            Object metric = e.getValue();
+            if (metric instanceof LatencyHistogram h) {
+                String name = PREFIX + key.name() + "_seconds";
+                if (!name.equals(family)) header(sb, family = name, "histogram", "Latency of stage " + key.name());
+                h.cumulative(BOUNDS_MICROS, cumulative);
+                String labels = labels(key);
+                for (int i = 0; i < BOUND_LABELS.length; i++) {
+                    sample(sb, name + "_bucket", labels, "le", BOUND_LABELS[i], cumulative[i]);
+                }
+                sample(sb, name + "_bucket", labels, "le", "+Inf", cumulative[BOUND_LABELS.length]);
+                sb.append(name).append("_sum").append(labels).append(' ')
+                        .append(number(h.sumMicros() / 1_000_000.0)).append('\n');
+                // count из тех же корзин, что и +Inf, иначе скрейп посреди записи даст несогласованные числа
+                sb.append(name).append("_count").append(labels).append(' ')
+                        .append(cumulative[BOUND_LABELS.length]).append('\n');
+            } else if (metric instanceof Metrics.Counter c) {
+                String name = PREFIX + key.name() + "_total";
+                if (!name.equals(family)) header(sb, family = name, "counter", "Total " + key.name());
+                sb.append(name).append(labels(key)).append(' ').append(c.getCount()).append('\n');
+            } else if (metric instanceof Metrics.Gauge g) {
+                String name = PREFIX + key.name();
+                if (!name.equals(family)) header(sb, family = name, "gauge", "Current " + key.name().replace('_', ' '));
+                sb.append(name).append(labels(key)).append(' ').append(g.getValue()).append('\n');
+            }
+        }
+    }
+
+    /** Задачи по состояниям (все нетерминальные, включая нули) и текущая скорость загрузок по сайтам. */
+    static void renderJobs(StringBuilder sb, Collection<DownloadJob> active) {
+        Map<JobState, Integer> byState = new EnumMap<>(JobState.class);
+        for (JobState s : JobState.values()) {
+            if (!s.isTerminal()) byState.put(s, 0);
+        }
+        Map<String, Long> speed = new TreeMap<>();
+        for (DownloadJob job : active) {
+            JobState state = job.getState();
+            byState.merge(state, 1, Integer::sum);
+            YtDlpProgress p = job.getProgress();
+            if (state == JobState.DOWNLOADING && p != null && p.speedBytesPerSec() > 0) {
+                speed.merge(Metrics.hostTag(job.getUrl()), p.speedBytesPerSec(), Long::sum);
+            }
+        }
+        String name = PREFIX + "jobs";
+        header(sb, name, "gauge", "Queued and running jobs by state");
+        for (Map.Entry<JobState, Integer> e : byState.entrySet()) {
+            sample(sb, name, "", "state", e.getKey().name().toLowerCase(Locale.ROOT), e.getValue());
+        }
+        name = PREFIX + "host_speed_bytes_per_second";
+        header(sb, name, "gauge", "Current download speed by host");
+        for (Map.Entry<String, Long> e : speed.entrySet()) {
+            sample(sb, name, "", "host", e.getKey(), e.getValue());
+        }
+    }
+
+    /** Живые дочерние процессы (yt-dlp, ffmpeg, Chrome и его рендереры) по имени команды. */
+    static void renderProcesses(StringBuilder sb) {
+        Map<String, Integer> byCommand = new TreeMap<>();
+        ProcessHandle.current().descendants().forEach(p -> {
+            String cmd = p.info().command().orElse("unknown");
+            cmd = cmd.substring(Math.max(cmd.lastIndexOf('/'), cmd.lastIndexOf('\\')) + 1);
+            byCommand.merge(cmd, 1, Integer::sum);
+        });
+        String name = PREFIX + "child_processes";
+        header(sb, name, "gauge", "Live child processes by command");
+        for (Map.Entry<String, Integer> e : byCommand.entrySet()) {
+            sample(sb, name, "", "command", e.getKey(), e.getValue());
+        }
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /** Метки ключа реестра в виде {host="…",outcome="…"} или пусто. */
+    private static String labels(Metrics.Key key) {
+        if (key.host() == null && key.outcome() == null) return "";
+        StringBuilder sb = new StringBuilder("{");
+        if (key.host() != null) label(sb, "host", key.host());
+        if (key.outcome() != null) label(sb.append(sb.length() > 1 ? "," : ""), "outcome", key.outcome());
+        return sb.append('}').toString();
+    }
+
+    /** Строка с дополнительной меткой к меткам labels ("" или {…}). */
+    private static void sample(StringBuilder sb, String name, String labels, String label, String value, long v) {
+        sb.append(name).append('{');
+        if (!labels.isEmpty()) sb.append(labels, 1, labels.length() - 1).append(',');
+        label(sb, label, value);
+        sb.append("} ").append(v).append('\n');
+    }
+
+    private static void label(StringBuilder sb, String name, String value) {
+        sb.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '"' -> sb.append("\\\"");
+                case '\n' -> sb.append("\\n");
+                default -> sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /** Число без экспоненты и лишних нулей: 0.005, 1, 2.5. */
+    static String number(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) return Long.toString((long) v);
+        return BigDecimal.valueOf(v).stripTrailingZeros().toPlainString();
+    }
+}
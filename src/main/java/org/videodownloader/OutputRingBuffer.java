@@ -0,0 +1,79 @@
+package org.videodownloader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Хвост вывода процесса фиксированного размера: последние maxLines строк, но не больше maxBytes.
+ * Нужен только для диагностики при ошибке, поэтому память на задачу ограничена
+ * независимо от длины загрузки (тысячи строк прогресса HLS сюда не копятся).
+ */
+public class OutputRingBuffer {
+    private final String[] lines;
+    private final int[] sizes;
+    private final long maxBytes;
+    private int head;   // индекс самой старой строки
+    private int count;
+    private long bytes;
+    private long dropped;
+
+    public OutputRingBuffer(int maxLines, long maxBytes) {
+        if (maxLines <= 0) throw new IllegalArgumentException("maxLines must be positive");
+        this.lines = new String[maxLines];
+        this.sizes = new int[maxLines];
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized void add(String line) {
+        int size = line.getBytes(StandardCharsets.UTF_8).length + 1;
+        if (count == lines.length) {
+            evictOldest();
+        }
+        int tail = (head + count) % lines.length;
+        lines[tail] = line;
+        sizes[tail] = size;
+        count++;
+        bytes += size;
+        // одна гигантская строка может превысить лимит сама по себе — её оставляем
+        while (bytes > maxBytes && count > 1) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        bytes -= sizes[head];
+        lines[head] = null;
+        head = (head + 1) % lines.length;
+        count--;
+        dropped++;
+    }
+
+    public synchronized List<String> lines() {
+        List<String> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            out.add(lines[(head + i) % lines.length]);
+        }
+        return out;
+    }
+
+    /** Хвост одной строкой; если что-то было вытеснено, об этом сказано в первой строке. */
+    public synchronized String snapshot() {
+        StringBuilder sb = new StringBuilder((int) Math.min(bytes + 64, Integer.MAX_VALUE));
+        if (dropped > 0) {
+            sb.append("... (").append(dropped).append(" earlier line(s) omitted)\n");
+        }
+        for (int i = 0; i < count; i++) {
+            sb.append(lines[(head + i) % lines.length]).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized long byteSize() {
+        return bytes;
+    }
+}
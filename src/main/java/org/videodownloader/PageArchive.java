@@ -0,0 +1,121 @@
+package org.videodownloader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Архив сетевых обменов одной страницы для записи и воспроизведения (см. {@link PageRecorder}, {@link PageReplayer}).
+ * <p>
+ * На диске это папка: {@code exchanges.tsv} со строками {@code метод\tURL\tстатус\tтип\tLocation\tфайл тела}
+ * и тела ответов в {@code bodies/}; переадресации записываются отдельными обменами со статусом 3xx.
+ * Тела медиа не сохраняются (в поле файла «-»): экстрактору важен сам факт ответа по медиа-URL,
+ * а не мегабайты видео. Повторные запросы одного URL отвечаются первым записанным обменом — так
+ * воспроизведение не зависит от порядка, в котором Chrome их шлёт.
+ */
+final class PageArchive {
+    static final String INDEX = "exchanges.tsv";
+    static final String BODIES = "bodies";
+    private static final String NO_BODY = "-";
+
+    /** Один обмен; location — цель переадресации или null; body — имя файла в bodies/ или null, если тела нет. */
+    record Exchange(String method, String url, int status, String contentType, String location, String body) {}
+
+    private final Path dir;
+    private final List<Exchange> exchanges = new ArrayList<>();
+    private final Map<String, Exchange> byKey = new HashMap<>();
+
+    private PageArchive(Path dir) {
+        this.dir = dir;
+    }
+
+    /** Пустой архив для записи в папку dir (содержимое появится после {@link #save()}). */
+    static PageArchive create(Path dir) throws IOException {
+        Files.createDirectories(dir.resolve(BODIES));
+        return new PageArchive(dir);
+    }
+
+    /** Прочитать записанный архив. */
+    static PageArchive open(Path dir) throws IOException {
+        PageArchive archive = new PageArchive(dir);
+        for (String line : Files.readAllLines(dir.resolve(INDEX), StandardCharsets.UTF_8)) {
+            if (line.isBlank()) continue;
+            String[] f = line.split("\t", -1);
+            if (f.length != 6) throw new IOException("Malformed archive line in " + dir + ": " + line);
+            try {
+                archive.put(new Exchange(f[0], f[1], Integer.parseInt(f[2]), f[3].isEmpty() ? null : f[3],
+                        f[4].isEmpty() ? null : f[4], NO_BODY.equals(f[5]) ? null : f[5]));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed status in " + dir + ": " + line, e);
+            }
+        }
+        return archive;
+    }
+
+    Path dir() {
+        return dir;
+    }
+
+    synchronized List<Exchange> exchanges() {
+        return List.copyOf(exchanges);
+    }
+
+    /** Добавить обмен; body == null — тело не сохраняется. */
+    synchronized Exchange add(String method, String url, int status, String contentType, String location,
+                              byte[] body) throws IOException {
+        String file = null;
+        if (body != null) {
+            file = String.format("%04d", exchanges.size());
+            Files.write(dir.resolve(BODIES).resolve(file), body);
+        }
+        Exchange e = new Exchange(method, url, status, contentType, location, file);
+        put(e);
+        return e;
+    }
+
+    /** Обмен для запроса или null, если такого не записывали. */
+    synchronized Exchange find(String method, String url) {
+        return byKey.get(key(method, url));
+    }
+
+    /** Тело ответа; пустое, если тело не сохранялось. */
+    byte[] body(Exchange e) throws IOException {
+        if (e.body() == null) return new byte[0];
+        return Files.readAllBytes(dir.resolve(BODIES).resolve(e.body()));
+    }
+
+    /** Записать индекс: сначала во временный файл, затем атомарная подмена. */
+    synchronized void save() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Exchange e : exchanges) {
+            sb.append(e.method()).append('\t').append(e.url()).append('\t').append(e.status()).append('\t')
+                    .append(e.contentType() == null ? "" : clean(e.contentType())).append('\t')
+                    .append(e.location() == null ? "" : clean(e.location())).append('\t')
+                    .append(e.body() == null ? NO_BODY : e.body()).append('\n');
+        }
+        Path tmp = dir.resolve(INDEX + ".tmp");
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+        Files.move(tmp, dir.resolve(INDEX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void put(Exchange e) {
+        exchanges.add(e);
+        byKey.putIfAbsent(key(e.method(), e.url()), e);
+    }
+
+    /** Ключ поиска: метод и URL без фрагмента (фрагмент на сервер не уходит). */
+    static String key(String method, String url) {
+        int hash = url.indexOf('#');
+        return method + ' ' + (hash < 0 ? url : url.substring(0, hash));
+    }
+
+    private static String clean(String s) {
+        return s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,202 @@
+package org.videodownloader;
+
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.v136.network.Network;
+import org.openqa.selenium.devtools.v136.network.model.LoadingFinished;
+import org.openqa.selenium.devtools.v136.network.model.RequestId;
+import org.openqa.selenium.devtools.v136.network.model.RequestWillBeSent;
+import org.openqa.selenium.devtools.v136.network.model.ResourceType;
+import org.openqa.selenium.devtools.v136.network.model.Response;
+import org.openqa.selenium.devtools.v136.network.model.ResponseReceived;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Запись сетевых обменов сессии Chrome в {@link PageArchive} — материал для воспроизведения
+ * ({@link PageReplayer}) и офлайн-замеров экстрактора. Включается папкой {@link AppConfig#recordDir()}:
+ * каждая сессия пишет свой архив {@code <сайт>-<время>}.
+ * <p>
+ * Тела забираются через DevTools после окончания загрузки ответа, в отдельном потоке: слушатель событий
+ * не должен ждать ответа на собственную команду. Медиа пишется без тела сразу по заголовкам ответа —
+ * плеер часто обрывает такие запросы, а экстрактору хватает самого ответа.
+ */
+final class PageRecorder implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageRecorder.class);
+
+    /** Тела больше этого не сохраняются (видео без расширения в URL, крупные бандлы). */
+    static final long MAX_BODY_BYTES = 8L << 20;
+    private static final long CLOSE_TIMEOUT_SEC = 10;
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private record Pending(String method, String url, Response response) {}
+
+    private final DevTools devTools;
+    private final PageArchive archive;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "page-recorder");
+        t.setDaemon(true);
+        return t;
+    });
+    /** Запрос → метод и URL (для ответа и переадресации). */
+    private final Map<RequestId, String[]> requests = new ConcurrentHashMap<>();
+    /** Ответы, тело которых ещё грузится. */
+    private final Map<RequestId, Pending> responses = new ConcurrentHashMap<>();
+    private final List<CompletableFuture<Void>> stores = new ArrayList<>();
+
+    private PageRecorder(DevTools devTools, PageArchive archive) {
+        this.devTools = devTools;
+        this.archive = archive;
+    }
+
+    /**
+     * Начать запись сессии, если задана папка записи; иначе null. Вызывать после {@code Network.enable}
+     * и до первой навигации.
+     */
+    static PageRecorder startIfEnabled(DevTools devTools, String pageUrl) {
+        Path root = AppConfig.recordDir();
+        if (root == null) return null;
+        Path dir = root.resolve(archiveName(pageUrl, LocalDateTime.now()));
+        try {
+            PageRecorder recorder = new PageRecorder(devTools, PageArchive.create(dir));
+            devTools.addListener(Network.requestWillBeSent(), recorder::onRequest);
+            devTools.addListener(Network.responseReceived(), recorder::onResponse);
+            devTools.addListener(Network.loadingFinished(), recorder::onFinished);
+            devTools.addListener(Network.loadingFailed(), f -> recorder.onEnded(f.getRequestId(), false));
+            LOGGER.info("Recording page exchanges to {}", dir);
+            return recorder;
+        } catch (IOException e) {
+            LOGGER.error("Cannot create page archive {}", dir, e);
+            return null;
+        }
+    }
+
+    /** Имя папки архива: сайт и время, без символов, недопустимых в именах файлов. */
+    static String archiveName(String pageUrl, LocalDateTime now) {
+        String host = HostThroughputStats.hostOf(pageUrl);
+        if (host == null || host.isBlank()) host = "page";
+        return host.toLowerCase(Locale.ROOT).replaceAll("[^\\w.-]", "_") + "-" + STAMP.format(now);
+    }
+
+    private void onRequest(RequestWillBeSent e) {
+        // переадресация приходит новым запросом с тем же id: ответ 3xx относится к прежнему URL
+        e.getRedirectResponse().ifPresent(redirect -> {
+            String[] previous = requests.get(e.getRequestId());
+            String method = previous == null ? e.getRequest().getMethod() : previous[0];
+            store(new Pending(method, redirect.getUrl(), redirect), e.getRequest().getUrl(), null);
+        });
+        requests.put(e.getRequestId(), new String[]{e.getRequest().getMethod(), e.getRequest().getUrl()});
+    }
+
+    private void onResponse(ResponseReceived e) {
+        String[] request = requests.get(e.getRequestId());
+        String method = request == null ? "GET" : request[0];
+        Response r = e.getResponse();
+        if (isMedia(e.getType(), r.getMimeType(), r.getUrl())) {
+            requests.remove(e.getRequestId());
+            store(new Pending(method, r.getUrl(), r), null, null);
+        } else {
+            responses.put(e.getRequestId(), new Pending(method, r.getUrl(), r));
+        }
+    }
+
+    private void onFinished(LoadingFinished e) {
+        Number size = e.getEncodedDataLength();
+        onEnded(e.getRequestId(), size == null || size.longValue() <= MAX_BODY_BYTES);
+    }
+
+    /** Загрузка ответа закончилась; withBody — забрать тело у Chrome. */
+    private void onEnded(RequestId id, boolean withBody) {
+        requests.remove(id);
+        Pending p = responses.remove(id);
+        if (p == null) return;
+        if (withBody) {
+            synchronized (stores) {
+                stores.add(CompletableFuture.runAsync(() -> store(p, null, fetchBody(id, p.url())), executor));
+            }
+        } else {
+            store(p, null, null);
+        }
+    }
+
+    private void store(Pending p, String location, byte[] body) {
+        try {
+            archive.add(p.method(), p.url(), p.response().getStatus(), p.response().getMimeType(), location, body);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot store exchange for {}: {}", p.url(), e.toString());
+        }
+    }
+
+    /** Тело ответа из Chrome или null, если оно уже недоступно. */
+    private byte[] fetchBody(RequestId id, String url) {
+        try {
+            Network.GetResponseBodyResponse body = devTools.send(Network.getResponseBody(id));
+            return Boolean.TRUE.equals(body.getBase64Encoded())
+                    ? Base64.getDecoder().decode(body.getBody())
+                    : body.getBody().getBytes(StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            LOGGER.debug("No body for {}: {}", url, e.toString());
+            return null;
+        }
+    }
+
+    /** Ответ — медиаданные (тело не сохраняется); плейлисты m3u8 сюда не относятся. */
+    static boolean isMedia(ResourceType type, String mime, String url) {
+        // плейлист бывает и audio/mpegurl, а его тело нужно для воспроизведения
+        if (mime != null && mime.contains("mpegurl")) return false;
+        if (type == ResourceType.MEDIA) return true;
+        if (mime != null && (mime.startsWith("video/") || mime.startsWith("audio/"))) return true;
+        String path = url;
+        int q = path.indexOf('?');
+        if (q >= 0) path = path.substring(0, q);
+        return path.endsWith(".mp4") || path.endsWith(".ts") || path.endsWith(".m4s") || path.endsWith(".webm");
+    }
+
+    /**
+     * Дождаться тел, дописать незавершённые ответы без тела и сохранить индекс. Вызывать до закрытия
+     * браузера: после quit() тела уже не забрать.
+     */
+    @Override
+    public void close() {
+        CompletableFuture<?>[] all;
+        synchronized (stores) {
+            all = stores.toArray(CompletableFuture[]::new);
+        }
+        try {
+            CompletableFuture.allOf(all).get(CLOSE_TIMEOUT_SEC, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException | ExecutionException e) {
+            LOGGER.warn("Page recorder did not collect all bodies: {}", e.toString());
+        }
+        executor.shutdownNow();
+        // ответы без loadingFinished (поток, оборванная загрузка) — хотя бы заголовки
+        for (Pending p : responses.values()) {
+            store(p, null, null);
+        }
+        responses.clear();
+        try {
+            archive.save();
+            LOGGER.info("Recorded {} exchanges to {}", archive.exchanges().size(), archive.dir());
+        } catch (IOException e) {
+            LOGGER.error("Cannot save page archive {}", archive.dir(), e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.videodownloader;
+
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.v136.fetch.Fetch;
+import org.openqa.selenium.devtools.v136.fetch.model.HeaderEntry;
+import org.openqa.selenium.devtools.v136.fetch.model.RequestPattern;
+import org.openqa.selenium.devtools.v136.fetch.model.RequestPaused;
+import org.openqa.selenium.devtools.v136.fetch.model.RequestStage;
+import org.openqa.selenium.devtools.v136.network.model.ErrorReason;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Воспроизведение записанного {@link PageArchive} в сессии Chrome: все запросы перехватываются
+ * DevTools ({@code Fetch}) и получают записанный ответ, незаписанные — отказ сети. В сеть ничего не уходит,
+ * поэтому прогон экстрактора по архиву повторяем и годится для сравнения задержек между изменениями.
+ * <p>
+ * Ответы подставляются внутри браузера, а не отдельным прокси: так HTTPS-страницы воспроизводятся
+ * без подмены сертификатов, а события {@code Network.responseReceived}, по которым экстрактор ловит
+ * медиа, приходят как при живой загрузке. Включается папкой архива {@link AppConfig#replayDir()}.
+ */
+final class PageReplayer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageReplayer.class);
+
+    private final DevTools devTools;
+    private final PageArchive archive;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "page-replayer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private PageReplayer(DevTools devTools, PageArchive archive) {
+        this.devTools = devTools;
+        this.archive = archive;
+    }
+
+    /**
+     * Начать воспроизведение, если задан архив; иначе null. Вызывать до первой навигации.
+     *
+     * @throws IOException архив задан, но не читается — прогон без него был бы живым, а не воспроизведением
+     */
+    static PageReplayer startIfEnabled(DevTools devTools) throws IOException {
+        if (AppConfig.replayDir() == null) return null;
+        PageArchive archive = PageArchive.open(AppConfig.replayDir());
+        PageReplayer replayer = new PageReplayer(devTools, archive);
+        devTools.addListener(Fetch.requestPaused(), p -> replayer.executor.execute(() -> replayer.answer(p)));
+        devTools.send(Fetch.enable(Optional.of(List.of(new RequestPattern(Optional.of("*"), Optional.empty(),
+                Optional.of(RequestStage.REQUEST)))), Optional.empty()));
+        LOGGER.info("Replaying {} recorded exchanges from {}", archive.exchanges().size(), archive.dir());
+        return replayer;
+    }
+
+    int hits() {
+        return hits.get();
+    }
+
+    int misses() {
+        return misses.get();
+    }
+
+    private void answer(RequestPaused p) {
+        String url = p.getRequest().getUrl();
+        PageArchive.Exchange e = archive.find(p.getRequest().getMethod(), url);
+        try {
+            if (e == null) {
+                misses.incrementAndGet();
+                LOGGER.debug("Not in archive: {} {}", p.getRequest().getMethod(), url);
+                devTools.send(Fetch.failRequest(p.getRequestId(), ErrorReason.INTERNETDISCONNECTED));
+                return;
+            }
+            hits.incrementAndGet();
+            byte[] body = archive.body(e);
+            devTools.send(Fetch.fulfillRequest(p.getRequestId(), e.status(), Optional.of(headers(e)),
+                    Optional.empty(), Optional.of(Base64.getEncoder().encodeToString(body)), Optional.empty()));
+        } catch (IOException | RuntimeException ex) {
+            // сессия уже закрыта или тело пропало из архива — запрос просто не получит ответа
+            LOGGER.debug("Cannot replay {}: {}", url, ex.toString());
+        }
+    }
+
+    static List<HeaderEntry> headers(PageArchive.Exchange e) {
+        List<HeaderEntry> headers = new ArrayList<>(3);
+        if (e.contentType() != null) headers.add(new HeaderEntry("Content-Type", e.contentType()));
+        if (e.location() != null) headers.add(new HeaderEntry("Location", e.location()));
+        // архив — один «сайт»: скрипты плеера ходят за плейлистами на другие домены
+        headers.add(new HeaderEntry("Access-Control-Allow-Origin", "*"));
+        return headers;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        LOGGER.info("Replay finished: {} requests answered from archive, {} not recorded", hits.get(), misses.get());
+    }
+}
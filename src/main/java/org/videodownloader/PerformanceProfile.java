@@ -0,0 +1,59 @@
+package org.videodownloader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Набор сетевых параметров yt-dlp. Для HLS/DASH главное — параллельные фрагменты (-N):
+ * при одном потоке фрагментированный поток качается строго по очереди.
+ */
+public enum PerformanceProfile {
+    /** Один поток, без HTTP-чанков — для хостов, которые режут параллельные соединения. */
+    CONSERVATIVE(1, "16K", null, 10, 10),
+    /** Профиль по умолчанию: умеренный параллелизм фрагментов. */
+    BALANCED(4, "64K", "10M", 10, 10),
+    /** Много фрагментов и крупные буферы — для быстрых CDN. */
+    AGGRESSIVE(16, "1M", "10M", 20, 20);
+
+    private final int concurrentFragments;
+    private final String bufferSize;
+    private final String httpChunkSize;
+    private final int retries;
+    private final int fragmentRetries;
+
+    PerformanceProfile(int concurrentFragments, String bufferSize, String httpChunkSize, int retries, int fragmentRetries) {
+        this.concurrentFragments = concurrentFragments;
+        this.bufferSize = bufferSize;
+        this.httpChunkSize = httpChunkSize;
+        this.retries = retries;
+        this.fragmentRetries = fragmentRetries;
+    }
+
+    public int getConcurrentFragments() {
+        return concurrentFragments;
+    }
+
+    /** Аргументы командной строки yt-dlp для этого профиля. */
+    public List<String> toArgs() {
+        List<String> args = new ArrayList<>();
+        args.add("--concurrent-fragments");
+        args.add(String.valueOf(concurrentFragments));
+        args.add("--buffer-size");
+        args.add(bufferSize);
+        if (httpChunkSize != null) {
+            // чанки обходят серверное ограничение скорости на одно длинное соединение
+            args.add("--http-chunk-size");
+            args.add(httpChunkSize);
+        }
+        args.add("--retries");
+        args.add(String.valueOf(retries));
+        args.add("--fragment-retries");
+        args.add(String.valueOf(fragmentRetries));
+        // экспоненциальная пауза между повторами вместо немедленного долбления сервера
+        args.add("--retry-sleep");
+        args.add("http:exp=1:20");
+        args.add("--retry-sleep");
+        args.add("fragment:exp=1:20");
+        return args;
+    }
+}
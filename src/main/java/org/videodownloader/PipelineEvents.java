@@ -0,0 +1,99 @@
+package org.videodownloader;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.slf4j.MDC;
+
+/**
+ * События JDK Flight Recorder по этапам загрузки: в одной записи (например, {@code -XX:StartFlightRecording})
+ * видно, на какой этап задачи ушло время, рядом со сборкой мусора, вводом-выводом и аллокациями.
+ * <p>
+ * Порядок использования: {@code begin()} до этапа, {@link StageEvent#finish} после. Поля заполняются только
+ * если запись идёт и событие проходит порог, так что без записи цена — пустой begin/end.
+ */
+final class PipelineEvents {
+    static final String CATEGORY = "Video Downloader";
+
+    private PipelineEvents() {}
+
+    /** Номер задачи из MDC (пакет — номера через запятую) для кода, которому задача не передаётся. */
+    static String currentJob() {
+        return MDC.get(LogManager.MDC_JOB);
+    }
+
+    /** Общие поля этапа: задача, сайт, исход. */
+    @Category({CATEGORY, "Pipeline"})
+    @StackTrace(false)
+    abstract static class StageEvent extends Event {
+        @Label("Job")
+        String job;
+
+        @Label("Host")
+        String host;
+
+        @Label("Outcome")
+        String outcome;
+
+        /** Закончить этап и, если событие записывается, заполнить поля и записать его. */
+        void finish(String job, String url, String outcome) {
+            end();
+            if (!shouldCommit()) return;
+            this.job = job;
+            this.host = url == null ? null : HostThroughputStats.hostOf(url);
+            this.outcome = outcome;
+            commit();
+        }
+    }
+
+    @Name("org.videodownloader.TitleFetch")
+    @Label("Title Fetch")
+    @Description("Page title request for the file name")
+    static final class TitleFetch extends StageEvent {}
+
+    @Name("org.videodownloader.YtDlpProcess")
+    @Label("yt-dlp Process")
+    @Description("One yt-dlp process from start to exit")
+    static final class YtDlpProcess extends StageEvent {
+        @Label("Profile")
+        String profile;
+
+        @Label("Exit Code")
+        int exitCode = -1;
+
+        @Label("Downloaded")
+        @DataAmount
+        long bytes = -1;
+    }
+
+    @Name("org.videodownloader.BrowserLaunch")
+    @Label("Browser Launch")
+    @Description("Chrome start and DevTools session setup")
+    static final class BrowserLaunch extends StageEvent {}
+
+    @Name("org.videodownloader.PageLoad")
+    @Label("Page Load")
+    @Description("Chrome navigation to a page or embed page")
+    static final class PageLoad extends StageEvent {
+        @Label("URL")
+        String url;
+    }
+
+    @Name("org.videodownloader.MediaCapture")
+    @Label("Media Capture")
+    @Description("Wait for a media URL in network traffic after the page loaded")
+    static final class MediaCapture extends StageEvent {}
+
+    @Name("org.videodownloader.FileFinalize")
+    @Label("File Finalize")
+    @Description("Deduplication and history record of a downloaded file")
+    static final class FileFinalize extends StageEvent {
+        @Label("Size")
+        @DataAmount
+        long bytes = -1;
+    }
+}
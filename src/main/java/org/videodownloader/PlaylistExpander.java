@@ -0,0 +1,157 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Раскрытие плейлиста или канала в ссылки на отдельные ролики через {@code yt-dlp --flat-playlist}:
+ * читается только листинг, без метаданных каждого ролика, поэтому даже сотни элементов раскрываются за секунды.
+ * Каждый элемент потом идёт в очередь отдельной задачей.
+ */
+class PlaylistExpander {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlaylistExpander.class);
+
+    /** Сколько ждём листинг, прежде чем считать ссылку обычной. */
+    private static final long TIMEOUT_SEC = 120;
+
+    /** Признаки ссылки на список: YouTube, Vimeo, SoundCloud, Twitch и похожие. */
+    private static final Pattern PLAYLIST_HINT = Pattern.compile(
+            "[?&]list=|/playlist\\b|/channel/|/c/|/user/|/@[^/]+/?(?:videos|streams|shorts)?/?$"
+                    + "|/videos/?$|/sets/|/album/|/showcase/|/collections?/");
+
+    public enum Mode { OFF, AUTO, ALWAYS }
+
+    /** Элемент листинга; title может быть null, id без поддержки экстрактора совпадает с url. */
+    record Entry(String url, String title, String id) {}
+
+    /** Итог листинга: complete == false — листинг прерван (отмена, таймаут, ошибка yt-dlp). */
+    record Listing(List<Entry> entries, boolean complete) {}
+
+    private PlaylistExpander() {}
+
+    /** Стоит ли тратить запуск yt-dlp на раскрытие этой ссылки. */
+    static boolean shouldExpand(String url, Mode mode) {
+        return switch (mode) {
+            case OFF -> false;
+            case ALWAYS -> true;
+            case AUTO -> PLAYLIST_HINT.matcher(url).find();
+        };
+    }
+
+    /**
+     * Элементы списка в порядке листинга, без повторов. Пустой список — ссылка не оказалась
+     * плейлистом (или листинг не удался), её нужно качать как обычную. Непустой при complete == false —
+     * листинг оборвался (таймаут, ошибка yt-dlp): элементы найдены не все.
+     */
+    static Listing expand(String url, CancellationToken token) {
+        Listing listing = list(url, List.of(), token, e -> false);
+        // единственный элемент — это сам ролик, а не список
+        if (listing.entries().size() <= 1) return new Listing(List.of(), listing.complete());
+        return listing;
+    }
+
+    /**
+     * Листинг до первого элемента, на котором {@code stopAt} вернул true (сам он в результат не входит);
+     * после этого yt-dlp останавливается. С {@code --lazy-playlist} yt-dlp выдаёт элементы по мере
+     * чтения страниц канала, так что остановка на уже известном ролике экономит и время, и запросы.
+     */
+    static Listing listUntil(String url, CancellationToken token, Predicate<Entry> stopAt) {
+        return list(url, List.of("--lazy-playlist"), token, stopAt);
+    }
+
+    private static Listing list(String url, List<String> extraArgs, CancellationToken token, Predicate<Entry> stopAt) {
+        List<String> command = new ArrayList<>(List.of(AppConfig.ytDlp(), "--flat-playlist", "--no-warnings"));
+        command.addAll(extraArgs);
+        command.addAll(List.of("--print", "%(url,webpage_url)s\t%(title)s\t%(id)s", url));
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process process = null;
+        try {
+            process = pb.start();
+            Process started = process;
+            // листинг огромного канала не должен висеть вечно
+            CompletableFuture.delayedExecutor(TIMEOUT_SEC, TimeUnit.SECONDS).execute(() -> {
+                if (started.isAlive()) {
+                    LOGGER.warn("Playlist listing timed out for {}", url);
+                    ProcessUtils.destroyTree(started);
+                }
+            });
+            Set<String> seen = new LinkedHashSet<>();
+            List<Entry> entries = new ArrayList<>();
+            boolean stopped = false;
+            CancellationToken.Registration onCancel = token.onCancel(() -> ProcessUtils.destroyTree(started));
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    Entry e = parseLine(line);
+                    if (e == null || !seen.add(e.url())) continue;
+                    if (stopAt.test(e)) {
+                        stopped = true;
+                        break;
+                    }
+                    entries.add(e);
+                }
+            } finally {
+                onCancel.close();
+            }
+            if (stopped) return new Listing(entries, true);
+            int exit = process.waitFor();
+            if (token.isCancelled()) return new Listing(List.of(), false);
+            if (exit != 0) {
+                LOGGER.info("Playlist listing failed (exit {}) for {}", exit, url);
+            }
+            return new Listing(entries, exit == 0);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot list playlist {}: {}", url, e.toString());
+            return new Listing(List.of(), false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Listing(List.of(), false);
+        } finally {
+            if (process != null && process.isAlive()) ProcessUtils.destroyTree(process);
+        }
+    }
+
+    /** {@code url\ttitle\tid}; строки без http(s)-ссылки (id вместо URL у некоторых экстракторов) пропускаются. */
+    static Entry parseLine(String line) {
+        String[] f = line.split("\t", -1);
+        String url = f[0].trim();
+        String title = f.length > 1 ? naToNull(f[1]) : null;
+        String id = f.length > 2 ? naToNull(f[2]) : null;
+        try {
+            String scheme = URI.create(url).getScheme();
+            if (scheme == null || !scheme.toLowerCase(Locale.ROOT).startsWith("http")) return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return new Entry(url, title, id != null ? id : url);
+    }
+
+    private static String naToNull(String field) {
+        String v = field.trim();
+        return v.isEmpty() || v.equals("NA") ? null : v;
+    }
+
+    static Mode parseMode(String value) {
+        try {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Mode.AUTO;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.videodownloader;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Локальный HTTP-сервер предпросмотра (только 127.0.0.1): {@code /preview/<id задачи>} отдаёт файл,
+ * который ещё качается, — .part от yt-dlp или запись {@link HlsRecorder}. Оба пишут файл по порядку,
+ * поэтому начало ролика можно смотреть, пока остальное докачивается.
+ * <ul>
+ *   <li>Range {@code bytes=a-b}, {@code a-}, {@code -n}; пока файл растёт, полный размер неизвестен
+ *       и в Content-Range стоит {@code *};</li>
+ *   <li>запрос ещё не записанного диапазона ждёт до {@link #WAIT_FOR_DATA}, потом 503 с Retry-After;</li>
+ *   <li>запрос без Range у растущего файла — поток «как tail -f» до конца загрузки.</li>
+ * </ul>
+ */
+final class PreviewServer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PreviewServer.class);
+
+    static final Duration WAIT_FOR_DATA = Duration.ofSeconds(10);
+    /** Завершённых задач в таблице не больше стольких: ссылки на самые старые перестают открываться. */
+    static final int MAX_FINISHED = 16;
+    private static final long POLL_MILLIS = 200;
+    private static final int CHUNK = 64 * 1024;
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "mp4", "video/mp4", "m4v", "video/mp4", "webm", "video/webm", "mkv", "video/x-matroska",
+            "ts", "video/mp2t", "m4a", "audio/mp4", "mp3", "audio/mpeg", "opus", "audio/ogg");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Long, DownloadJob> jobs = new ConcurrentHashMap<>();
+
+    /** port == 0 — любой свободный. */
+    PreviewServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/preview/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        LOGGER.info("Preview server listening on {}", server.getAddress());
+    }
+
+    /**
+     * Адрес предпросмотра задачи. Готовый файл, который уже опубликован, получает прежний адрес:
+     * повторный предпросмотр не плодит записей.
+     */
+    synchronized URI publish(DownloadJob job) {
+        DownloadJob published = job.getState().isTerminal() ? publishedFinished(job.getSavedFile()) : null;
+        if (published == null) {
+            published = job;
+            jobs.put(job.getId(), job);
+            evictFinished();
+        }
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/preview/" + published.getId());
+    }
+
+    /** Число опубликованных задач. */
+    int published() {
+        return jobs.size();
+    }
+
+    private DownloadJob publishedFinished(Path file) {
+        if (file == null) return null;
+        for (DownloadJob j : jobs.values()) {
+            if (j.getState().isTerminal() && file.equals(j.getSavedFile())) return j;
+        }
+        return null;
+    }
+
+    /** Убрать самые старые завершённые задачи сверх {@link #MAX_FINISHED}; идущие загрузки не трогаем. */
+    private void evictFinished() {
+        List<Long> finished = jobs.values().stream()
+                .filter(j -> j.getState().isTerminal())
+                .map(DownloadJob::getId)
+                .sorted()
+                .toList();
+        for (int i = 0; i < finished.size() - MAX_FINISHED; i++) {
+            jobs.remove(finished.get(i));
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** Что сейчас отдавать: .part, пока yt-dlp пишет его, иначе сам файл; null — файла ещё нет. */
+    static Path currentFile(DownloadJob job) {
+        Path saved = job.getSavedFile();
+        if (saved == null) return null;
+        Path part = saved.resolveSibling(saved.getFileName() + ".part");
+        if (Files.exists(part)) return part;
+        return Files.exists(saved) ? saved : null;
+    }
+
+    /** Файл ещё дописывается: размер может вырасти. */
+    private static boolean growing(DownloadJob job) {
+        JobState state = job.getState();
+        return !state.isTerminal() && state != JobState.POST_PROCESSING;
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            String method = ex.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            DownloadJob job = jobOf(ex.getRequestURI().getPath());
+            Path file = job == null ? null : awaitFile(job);
+            if (file == null) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            serve(ex, job, file, method.equals("HEAD"));
+        } catch (IOException e) {
+            // плеер закрыл соединение посреди ответа — обычное дело при перемотке
+            LOGGER.debug("Preview request ended: {}", e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private DownloadJob jobOf(String path) {
+        try {
+            return jobs.get(Long.parseLong(path.substring(path.lastIndexOf('/') + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Path awaitFile(DownloadJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + WAIT_FOR_DATA.toNanos();
+        Path file;
+        while ((file = currentFile(job)) == null && growing(job) && System.nanoTime() < deadline) {
+            Thread.sleep(POLL_MILLIS);
+        }
+        return file;
+    }
+
+    private void serve(HttpExchange ex, DownloadJob job, Path file, boolean head)
+            throws IOException, InterruptedException {
+        Headers h = ex.getResponseHeaders();
+        h.set("Accept-Ranges", "bytes");
+        h.set("Content-Type", contentType(job.getSavedFile()));
+        h.set("Cache-Control", "no-store");
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            String range = ex.getRequestHeaders().getFirst("Range");
+            Matcher m = range == null ? null : RANGE.matcher(range.trim());
+            if (m == null || !m.matches() || (m.group(1).isEmpty() && m.group(2).isEmpty())) {
+                // нет Range (или несколько диапазонов) — весь файл
+                if (!growing(job)) {
+                    ex.sendResponseHeaders(200, head || ch.size() == 0 ? -1 : ch.size());
+                    if (!head) copy(ch, 0, ch.size(), ex.getResponseBody());
+                } else {
+                    ex.sendResponseHeaders(200, head ? -1 : 0);
+                    if (!head) follow(ch, job, ex.getResponseBody());
+                }
+                return;
+            }
+
+            long start;
+            long end;
+            if (m.group(1).isEmpty()) {
+                // суффикс «последние n байт» осмыслен только для готового файла
+                if (growing(job)) {
+                    unsatisfiable(ex, "*");
+                    return;
+                }
+                long n = Long.parseLong(m.group(2));
+                start = Math.max(0, ch.size() - n);
+                end = ch.size() - 1;
+            } else {
+                start = Long.parseLong(m.group(1));
+                end = m.group(2).isEmpty() ? Long.MAX_VALUE : Long.parseLong(m.group(2));
+            }
+            if (end < start) {
+                unsatisfiable(ex, growing(job) ? "*" : Long.toString(ch.size()));
+                return;
+            }
+
+            long size = awaitSize(ch, job, start);
+            boolean grow = growing(job);
+            // загрузка могла закончиться после замера — тогда размер уже окончательный
+            if (!grow) size = ch.size();
+            if (start >= size) {
+                if (grow) {
+                    h.set("Retry-After", "1");
+                    ex.sendResponseHeaders(503, -1);
+                } else {
+                    unsatisfiable(ex, Long.toString(size));
+                }
+                return;
+            }
+            end = Math.min(end, size - 1);
+            h.set("Content-Range", "bytes " + start + "-" + end + "/" + (grow ? "*" : size));
+            long length = end - start + 1;
+            ex.sendResponseHeaders(206, head ? -1 : length);
+            if (!head) copy(ch, start, length, ex.getResponseBody());
+        }
+    }
+
+    /** Подождать, пока файл дорастёт до start (или загрузка закончится); итоговый размер. */
+    private static long awaitSize(FileChannel ch, DownloadJob job, long start) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + WAIT_FOR_DATA.toNanos();
+        long size = ch.size();
+        while (size <= start && growing(job) && System.nanoTime() < deadline) {
+            Thread.sleep(POLL_MILLIS);
+            size = ch.size();
+        }
+        return size;
+    }
+
+    private static void unsatisfiable(HttpExchange ex, String total) throws IOException {
+        ex.getResponseHeaders().set("Content-Range", "bytes */" + total);
+        ex.sendResponseHeaders(416, -1);
+    }
+
+    private static void copy(FileChannel ch, long from, long length, OutputStream out) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+        long pos = from;
+        long left = length;
+        while (left > 0) {
+            buf.clear().limit((int) Math.min(CHUNK, left));
+            int n = ch.read(buf, pos);
+            if (n < 0) break;
+            out.write(buf.array(), 0, n);
+            pos += n;
+            left -= n;
+        }
+    }
+
+    /** Отдавать файл по мере записи, пока загрузка не закончится. */
+    private static void follow(FileChannel ch, DownloadJob job, OutputStream out) throws IOException, InterruptedException {
+        ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+        long pos = 0;
+        while (true) {
+            // состояние — до чтения: иначе можно потерять хвост, дописанный между чтением и проверкой
+            boolean more = growing(job);
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n > 0) {
+                out.write(buf.array(), 0, n);
+                pos += n;
+                continue;
+            }
+            if (!more) return;
+            out.flush();
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    static String contentType(Path file) {
+        if (file == null) return "application/octet-stream";
+        String name = file.getFileName().toString();
+        String ext = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return CONTENT_TYPES.getOrDefault(ext, "application/octet-stream");
+    }
+}
@@ -0,0 +1,65 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Отдельный поток, который непрерывно вычитывает stdout дочернего процесса.
+ * Пока процесс жив, его канал всегда опустошается — yt-dlp никогда не блокируется на записи,
+ * даже если поток загрузки занят ожиданием. Каждая строка уходит в кольцевой буфер,
+ * (опционально) в транскрипт и в обработчик строк. MDC создателя (номер задачи) переходит в поток насоса.
+ */
+public class ProcessOutputPump {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessOutputPump.class);
+
+    private final Thread thread;
+
+    public ProcessOutputPump(String name, InputStream in, OutputRingBuffer tail,
+                             TranscriptWriter transcript, Consumer<String> onLine) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        this.thread = new Thread(() -> {
+            if (mdc != null) MDC.setContextMap(mdc);
+            pump(in, tail, transcript, onLine);
+        }, name);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /** Дождаться конца потока вывода. false — если за отведённое время не закончился. */
+    public boolean await(long millis) throws InterruptedException {
+        thread.join(millis);
+        return !thread.isAlive();
+    }
+
+    private static void pump(InputStream in, OutputRingBuffer tail, TranscriptWriter transcript, Consumer<String> onLine) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                tail.add(line);
+                if (transcript != null) transcript.append(line);
+                try {
+                    onLine.accept(line);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Output line handler failed: {}", e.toString());
+                }
+            }
+        } catch (IOException e) {
+            // поток закрыт при убийстве процесса — это нормальное завершение
+            LOGGER.debug("Process output closed: {}", e.toString());
+        } finally {
+            if (transcript != null) transcript.close();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public final class ProcessUtils {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessUtils.class);
+
+    /** Сколько ждём мягкого завершения, прежде чем добивать принудительно. */
+    private static final long GRACE_MILLIS = 2_000;
+
+    private ProcessUtils() {}
+
+    /** Завершает процесс вместе со всеми потомками (ffmpeg, который запустил yt-dlp, и т.п.). */
+    public static void destroyTree(Process process) {
+        if (process != null) destroyTree(process.toHandle());
+    }
+
+    /**
+     * Не блокирует вызывающий поток: сначала мягкий destroy() для всего дерева,
+     * через GRACE_MILLIS — destroyForcibly() для тех, кто ещё жив.
+     */
+    public static void destroyTree(ProcessHandle root) {
+        if (root == null || !root.isAlive()) return;
+
+        // снимок потомков берём ДО destroy корня — после его смерти они «осиротеют» и пропадут из descendants()
+        List<ProcessHandle> tree = root.descendants().toList();
+        tree.forEach(ProcessHandle::destroy);
+        root.destroy();
+        LOGGER.debug("Destroy requested for pid {} and {} descendant(s)", root.pid(), tree.size());
+
+        CompletableFuture.delayedExecutor(GRACE_MILLIS, TimeUnit.MILLISECONDS).execute(() -> {
+            for (ProcessHandle h : tree) {
+                if (h.isAlive()) h.destroyForcibly();
+            }
+            if (root.isAlive()) {
+                root.destroyForcibly();
+                LOGGER.warn("Process {} did not exit gracefully, killed forcibly", root.pid());
+            }
+        });
+    }
+}
@@ -0,0 +1,128 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Сторож зависших процессов yt-dlp.
+ * Для каждой загрузки хранит время последнего продвижения вперёд (рост скачанных байт,
+ * новый фрагмент, смена фазы). Если продвижения нет дольше окна — убивает всё дерево процессов,
+ * чтобы поток загрузки освободился и мог перезапустить задачу через докачку.
+ * <p>
+ * Слияние и постобработка ffmpeg ({@code [Merger]}, {@code [ExtractAudio]}, {@code [Fixup…]}, {@code [ffmpeg]})
+ * молчат, пока не закончат, — у большого файла это дольше обычного окна. После такой строки действует
+ * длинное окно постобработки, пока не начнётся новая фаза загрузки.
+ */
+public class StallWatchdog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StallWatchdog.class);
+
+    /** Строки постобработчиков yt-dlp, которые запускают ffmpeg и молчат до его конца. */
+    private static final Pattern POST_PROCESSING = Pattern.compile(
+            "^\\[(?:Merger|ExtractAudio|Fixup\\w*|ffmpeg|VideoConvertor|VideoRemuxer|EmbedSubtitle|EmbedThumbnail"
+                    + "|Metadata)]");
+
+    private final Duration window;
+    private final Duration postProcessingWindow;
+    private final Set<Tracker> trackers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "stall-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public StallWatchdog(Duration window, Duration postProcessingWindow) {
+        this.window = window;
+        this.postProcessingWindow = postProcessingWindow.compareTo(window) > 0 ? postProcessingWindow : window;
+        long periodMs = Math.max(250, Math.min(5_000, window.toMillis() / 4));
+        scheduler.scheduleWithFixedDelay(this::check, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Строка начала слияния или постобработки ffmpeg. */
+    static boolean isPostProcessing(String line) {
+        return !line.isEmpty() && line.charAt(0) == '[' && POST_PROCESSING.matcher(line).find();
+    }
+
+    /** Начать наблюдение за процессом. Трекер нужно закрыть, когда процесс завершится. */
+    public Tracker watch(String label, Process process) {
+        Tracker t = new Tracker(label, process);
+        trackers.add(t);
+        return t;
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        for (Tracker t : trackers) {
+            Duration limit = t.postProcessing ? postProcessingWindow : window;
+            if (t.stalled || now - t.lastProgressNanos < limit.toNanos()) continue;
+            t.stalled = true;
+            LOGGER.warn("No progress for {} s on {}{}, killing process tree (pid {})",
+                    limit.toSeconds(), t.label, t.postProcessing ? " during post-processing" : "", t.process.pid());
+            try {
+                ProcessUtils.destroyTree(t.process);
+            } catch (Exception e) {
+                LOGGER.error("Failed to kill stalled process {}", t.process.pid(), e);
+            }
+        }
+    }
+
+    /** Прогресс одной загрузки. Потокобезопасен: пишет читатель вывода, читает сторож. */
+    public final class Tracker implements AutoCloseable {
+        private final String label;
+        private final Process process;
+        private volatile long lastProgressNanos = System.nanoTime();
+        private volatile long maxBytes = -1;
+        private volatile int maxFragment = -1;
+        private volatile boolean stalled;
+        private volatile boolean postProcessing;
+
+        private Tracker(String label, Process process) {
+            this.label = label;
+            this.process = process;
+        }
+
+        /** Любая непрогрессная строка вывода (извлечение, предупреждения) — признак жизни. */
+        public void activity() {
+            lastProgressNanos = System.nanoTime();
+        }
+
+        /** Непрогрессная строка вывода: признак жизни; строка постобработки включает длинное окно. */
+        public void output(String line) {
+            if (isPostProcessing(line)) postProcessing = true;
+            activity();
+        }
+
+        /** Новый файл назначения (видео → аудио → слияние): счётчики байт начинаются заново. */
+        public void phase() {
+            maxBytes = -1;
+            maxFragment = -1;
+            postProcessing = false;
+            activity();
+        }
+
+        /** Учитываем только рост: повторяющиеся строки с тем же процентом прогрессом не считаются. */
+        public void progress(YtDlpProgress p) {
+            long bytes = p.downloadedBytes();
+            boolean forward = false;
+            if (bytes > maxBytes) { maxBytes = bytes; forward = true; }
+            if (p.fragment() > maxFragment) { maxFragment = p.fragment(); forward = true; }
+            if (forward) activity();
+        }
+
+        public boolean isStalled() {
+            return stalled;
+        }
+
+        @Override
+        public void close() {
+            trackers.remove(this);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.videodownloader;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Лог статусов окна. Строки из любых потоков кладутся в неблокирующую очередь, а таймер Swing
+ * раз в {@link #FRAME_MILLIS} дописывает их в документ одним куском: один invokeLater на кадр
+ * вместо одного на строку, одно перемещение каретки на кадр.
+ * <ul>
+ *   <li>из строк прогресса одной задачи в кадре остаётся последняя — промежуточные проценты никто не читает;</li>
+ *   <li>документ держит не больше maxLines строк, старые выпадают; очередь — тоже меньше maxLines
+ *       (если EDT не успевает, лишнее отбрасывается с пометкой).</li>
+ * </ul>
+ */
+final class StatusConsole {
+    /** Кадр: 20 обновлений в секунду глазу достаточно. */
+    static final int FRAME_MILLIS = 50;
+    /** Строки прогресса yt-dlp и {@link HlsRecorder}. */
+    private static final String[] PROGRESS_MARKERS = {"[download]", "HLS: ", "Live: recorded "};
+
+    private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final JTextArea area;
+    private final int maxLines;
+    private final Runnable onFrame;
+    private final Timer timer;
+
+    /** onFrame вызывается в EDT после каждого кадра, в котором были строки. */
+    StatusConsole(JTextArea area, int maxLines, Runnable onFrame) {
+        this.area = area;
+        this.maxLines = Math.max(2, maxLines);
+        this.onFrame = onFrame;
+        this.timer = new Timer(FRAME_MILLIS, e -> flush());
+        timer.setCoalesce(true);
+    }
+
+    void start() {
+        timer.start();
+    }
+
+    void stop() {
+        timer.stop();
+    }
+
+    /** Из любого потока; не блокирует. */
+    void append(String line) {
+        queue.add(line);
+        // очередь длиннее документа — старое всё равно выпало бы при записи; строка остаётся под пометку
+        if (queued.incrementAndGet() >= maxLines && queue.poll() != null) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+        }
+    }
+
+    /** Кадр: всё накопленное — в документ (вызывается в EDT). */
+    void flush() {
+        List<String> batch = new ArrayList<>();
+        String line;
+        while ((line = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(line);
+        }
+        if (batch.isEmpty()) return;
+
+        StringBuilder text = new StringBuilder();
+        int skipped = dropped.getAndSet(0);
+        if (skipped > 0) text.append("… ").append(skipped).append(" line(s) skipped").append('\n');
+        for (String s : coalesce(batch)) text.append(s).append('\n');
+
+        Document doc = area.getDocument();
+        try {
+            doc.insertString(doc.getLength(), text.toString(), null);
+            trim(doc);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e);
+        }
+        area.setCaretPosition(doc.getLength());
+        onFrame.run();
+    }
+
+    /** Убрать самые старые строки сверх maxLines (последняя «строка» после \n пустая). */
+    private void trim(Document doc) throws BadLocationException {
+        Element root = doc.getDefaultRootElement();
+        int excess = root.getElementCount() - 1 - maxLines;
+        if (excess > 0) {
+            doc.remove(0, root.getElement(excess - 1).getEndOffset());
+        }
+    }
+
+    /**
+     * Из строк прогресса одного вида с одним префиксом задачи ({@code [2/5] } или пустым) оставить последнюю;
+     * остальные строки и порядок не трогаются.
+     */
+    static List<String> coalesce(List<String> batch) {
+        Map<String, Integer> lastProgress = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            String key = progressKey(batch.get(i));
+            if (key != null) lastProgress.put(key, i);
+        }
+        if (lastProgress.isEmpty()) return batch;
+        List<String> out = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            String key = progressKey(batch.get(i));
+            if (key == null || lastProgress.get(key) == i) out.add(batch.get(i));
+        }
+        return out;
+    }
+
+    /** Префикс задачи и вид для строки прогресса, null — не прогресс. */
+    private static String progressKey(String line) {
+        for (String marker : PROGRESS_MARKERS) {
+            int at = line.indexOf(marker);
+            // «[download] Destination: …» — не прогресс, у него нет процентов
+            if (at >= 0 && (line.indexOf('%', at) >= 0 || marker.startsWith("Live"))) {
+                return line.substring(0, at + marker.length());
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,90 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Полный вывод yt-dlp задачи в файл transcripts/job-N.log (режим ALWAYS) с ротацией:
+ * при превышении лимита текущий файл становится job-N.log.1, а запись начинается заново.
+ * В режиме ON_FAILURE файл пишется только при ошибке — из хвоста {@link OutputRingBuffer}.
+ */
+public class TranscriptWriter implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TranscriptWriter.class);
+
+    public enum Mode { OFF, ON_FAILURE, ALWAYS }
+
+    private final Path file;
+    private final long maxBytes;
+    private BufferedWriter writer;
+    private long written;
+    private boolean broken;
+
+    public TranscriptWriter(long jobId, long maxBytes) {
+        this.file = AppConfig.dataDir().resolve("transcripts").resolve("job-" + jobId + ".log");
+        this.maxBytes = maxBytes;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /** Вызывается только потоком-читателем вывода. Ошибки диска не должны ронять загрузку. */
+    public void append(String line) {
+        if (broken) return;
+        try {
+            if (writer == null) open();
+            if (written >= maxBytes) rotate();
+            writer.write(line);
+            writer.newLine();
+            written += line.length() + 1;
+        } catch (IOException e) {
+            broken = true;
+            LOGGER.warn("Transcript disabled for {}: {}", file, e.toString());
+        }
+    }
+
+    /** Записать хвост вывода целиком (режим ON_FAILURE). */
+    public void dump(String text) {
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, text, StandardCharsets.UTF_8);
+            LOGGER.info("yt-dlp output tail saved to: {}", file);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot save transcript {}: {}", file, e.toString());
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(file.getParent());
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        written = Files.size(file);
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+        Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        written = 0;
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.debug("Transcript close failed: {}", e.toString());
+        }
+        writer = null;
+    }
+}
@@ -5,39 +5,133 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import javax.swing.*;
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.*;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.text.Normalizer;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class VideoDownloadManager {
     private static final Logger LOGGER = LoggerFactory.getLogger(VideoDownloadManager.class);
+
+    /**
+     * Наблюдатель за задачами (таблица загрузок): смена состояния, приоритета, прогресс.
+     * Вызывается из рабочих потоков на каждую строку прогресса — должен только отметить задачу и вернуться.
+     */
+    public interface JobObserver {
+        void jobChanged(DownloadJob job);
+    }
     private static final String DEFAULT_OUTPUT_PATH = "C:/Videos_Download";
 
     private Path outputDir = Paths.get(DEFAULT_OUTPUT_PATH);
-    private volatile Process currentProcess;
+    /** Загрузки в работе: замеры нагрузки, предпросмотр, поиск уже поставленных в очередь. */
+    private final Set<DownloadJob> activeJobs = ConcurrentHashMap.newKeySet();
 
     private final AtomicReference<Path> lastSavedFile = new AtomicReference<>(null);
 
+    private final List<JobObserver> observers = new CopyOnWriteArrayList<>();
+
+    /** Что уже скачано: повторная ссылка не качается заново. null — если журнал недоступен. */
+    private final DownloadHistory history = openHistory();
+
+    /** Журнал очереди: незавершённые задачи переживают выход и сбой. null — если журнал недоступен. */
+    private final JobJournal journal = openJournal();
+
+    /** Хеши содержимого библиотеки: один и тот же ролик с разных страниц хранится один раз. */
+    private final ContentLibrary library = new ContentLibrary(AppConfig.dataDir().resolve("library.idx"));
+
+    /** История скорости по хостам — по ней выбирается профиль yt-dlp. */
+    private final HostThroughputStats throughput =
+            new HostThroughputStats(AppConfig.dataDir().resolve("throughput.properties"));
+
+    /** Очередь загрузок: приоритеты, сроки, «короткие вперёд» и вытеснение ради интерактивных. */
+    private final JobScheduler scheduler = new JobScheduler(AppConfig.maxConcurrentJobs(), AppConfig.maxJobsPerHost(),
+            AppConfig.queueAging(), AppConfig.deadlineUrgency()).start();
+
+    /** Одновременные запросы размера к yt-dlp: каждый — отдельный процесс Python. */
+    private static final Semaphore PROBE_SLOTS = new Semaphore(4);
+    private static final long PROBE_TIMEOUT_SEC = 30;
+
+    /** Одновременные проверки источников синхронизации (условный запрос и, если нужно, листинг yt-dlp). */
+    private static final Semaphore SYNC_SLOTS = new Semaphore(8);
+
+    /** Таймер периодической синхронизации; поток-демон не держит выход из приложения. */
+    private static final ScheduledExecutorService SYNC_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "channel-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Общий сторож на все загрузки: зависший процесс не должен держать поток вечно. */
+    private static final StallWatchdog WATCHDOG = new StallWatchdog(AppConfig.stallTimeout(),
+            AppConfig.postProcessingTimeout());
+
     // yt-dlp stdout patterns
     private static final Pattern YTDLP_DESTINATION =
             Pattern.compile("^\\[download\\] Destination: (.+)$");
     private static final Pattern YTDLP_ALREADY =
             Pattern.compile("^\\[download\\] (.+) has already been downloaded$");
+    private static final Pattern HLS_URL = Pattern.compile("\\.m3u8?(?:$|[?#])", Pattern.CASE_INSENSITIVE);
     private static final Pattern YTDLP_MERGE =
             Pattern.compile("^\\[(?:Merger|ffmpeg)\\] Merging .*? into \"(.+)\"$");
+    /** Запрещённые в именах файлов символы, управляющие, пробелы и «_» — серия схлопывается в один «_». */
+    private static final Pattern UNSAFE_NAME_RUN = Pattern.compile("[\\\\/:*?\"<>|\\p{Cntrl}\\s_]+");
+
+    private static final String TITLE_USER_AGENT =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/118 Safari/537.36";
+
+    /** Клиент для заголовков страниц: в отличие от Jsoup.connect() его запрос можно прервать отменой. */
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(15))
+            .build();
+
+    /** Состояние синхронизации каналов: по файлу на источник в sync/. */
+    private final ChannelSync channelSync = new ChannelSync(AppConfig.dataDir().resolve("sync"), HTTP, TITLE_USER_AGENT);
+
+    /** Сервер предпросмотра качающихся файлов; поднимается по первому запросу. */
+    private PreviewServer preview;
+
+    /** Экспорт метрик Prometheus; null, пока не запущен или если выключен. */
+    private MetricsServer metricsServer;
+
+    /** Сколько ждём дочитывания вывода после завершения процесса. */
+    private static final long PUMP_DRAIN_MILLIS = 5_000;
 
     // формат времени для имени файла
     private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
@@ -47,6 +141,26 @@ public class VideoDownloadManager {
                 outputDir.toAbsolutePath().normalize());
     }
 
+    private static DownloadHistory openHistory() {
+        try {
+            return new DownloadHistory(AppConfig.dataDir().resolve("history.log"));
+        } catch (IOException e) {
+            LOGGER.error("Download history unavailable, duplicate detection disabled", e);
+            return null;
+        }
+    }
+
+    private static JobJournal openJournal() {
+        try {
+            JobJournal journal = new JobJournal(AppConfig.dataDir().resolve("jobs.wal"));
+            DownloadJob.advanceSequence(journal.maxId());
+            return journal;
+        } catch (IOException e) {
+            LOGGER.error("Job journal unavailable, unfinished downloads will not be resumed", e);
+            return null;
+        }
+    }
+
     /** Для UI — вернуть путь как строку. */
     public String getSelectedOutputPath() {
         return outputDir.toAbsolutePath().normalize().toString();
@@ -132,12 +246,42 @@ public class VideoDownloadManager {
         }
     }
 
-    /** Запустить загрузку. */
-    public void downloadVideo(String url, App.DownloadListener listener) {
-        if (!isValidURL(url)) {
-            listener.onStatusUpdate("Invalid URL: " + url);
-            LOGGER.error("Invalid URL provided: {}", url);
-            return;
+    /** Запустить загрузку. Возвращает задачу (для отмены) или null, если запуск невозможен. */
+    public DownloadJob downloadVideo(String url, App.DownloadListener listener) {
+        List<DownloadJob> jobs = downloadVideos(List.of(url), listener);
+        return jobs.isEmpty() ? null : jobs.getFirst();
+    }
+
+    /**
+     * Запустить загрузку нескольких URL. Ссылки одного сайта (при включённом
+     * videodownloader.batch) идут пачками через один процесс yt-dlp; всё, что в пачке
+     * не получилось, прогоняется обычным одиночным путём с фолбэком на экстрактор.
+     */
+    public List<DownloadJob> downloadVideos(List<String> urls, App.DownloadListener listener) {
+        return downloadVideos(urls, JobOptions.INTERACTIVE, listener);
+    }
+
+    /** То же с приоритетом, сроком и окном времени (см. {@link JobOptions}). */
+    public List<DownloadJob> downloadVideos(List<String> urls, JobOptions options, App.DownloadListener listener) {
+        List<String> valid = new ArrayList<>();
+        int invalid = 0;
+        for (String url : urls) {
+            Path existing;
+            if (!isValidURL(url)) {
+                listener.onStatusUpdate("Invalid URL: " + url);
+                LOGGER.error("Invalid URL provided: {}", url);
+                invalid++;
+            } else if ((existing = findDownloaded(url)) != null) {
+                lastSavedFile.set(existing);
+                listener.onStatusUpdate("Already downloaded: " + existing);
+            } else {
+                valid.add(url);
+            }
+        }
+        if (valid.isEmpty()) {
+            // всё уже скачано — это успех, а не ошибка
+            listener.onStatusUpdate(invalid == 0 ? "Download complete" : "Download failed");
+            return List.of();
         }
 
         // убедимся, что папка есть
@@ -146,141 +290,933 @@ public class VideoDownloadManager {
         } catch (IOException e) {
             listener.onStatusUpdate("Error creating directory: " + e.getMessage());
             LOGGER.error("Failed to create directory: {}", outputDir, e);
-            return;
+            return List.of();
         }
 
-        SwingWorker<Boolean, String> worker = new SwingWorker<>() {
-            @Override
-            protected Boolean doInBackground() {
-                publish("Trying yt-dlp...");
+        List<DownloadJob> jobs = new ArrayList<>();
+        for (String url : valid) {
+            DownloadJob job = new DownloadJob(url, outputDir);
+            job.setPriority(options.priority());
+            job.setDeadline(options.deadline());
+            job.setWindow(options.window());
+            transition(job, JobState.QUEUED);
+            jobs.add(job);
+        }
+        return startJobs(jobs, listener);
+    }
 
-                // сформируем «умное» базовое имя один раз
-                String smartBase = buildSmartBaseName(url);
-                boolean success = tryYtDlp(url, outputDir, smartBase);
+    /**
+     * Возобновить задачи, не завершённые в прошлый запуск (выход из приложения, сбой JVM).
+     * Задачи сохраняют номер, папку и базу имени, так что yt-dlp докачивает прежний .part.
+     */
+    public List<DownloadJob> resumeUnfinished(App.DownloadListener listener) {
+        if (journal == null) return List.of();
+        List<DownloadJob> jobs = new ArrayList<>();
+        for (JobJournal.Entry e : journal.unfinished()) {
+            DownloadJob job = new DownloadJob(e.id(), e.url(), e.outputDir() != null ? e.outputDir() : outputDir);
+            job.setSmartBase(e.smartBase());
+            job.setMediaUrl(e.mediaUrl());
+            job.setPriority(e.priority());
+            job.setDeadline(e.deadline());
+            job.setWindow(windowOrNull(e.window()));
+            // сбой мог случиться между записью в историю и отметкой DONE
+            Path existing = findDownloaded(e.url());
+            if (existing != null) {
+                LOGGER.info("Journal job {} already in history, marking done", job);
+                transition(job, JobState.DONE);
+                continue;
+            }
+            LOGGER.info("Resuming {} (was {})", job, e.state());
+            transition(job, JobState.QUEUED);
+            jobs.add(job);
+        }
+        if (jobs.isEmpty()) return List.of();
+        listener.onStatusUpdate("Resuming " + jobs.size() + " unfinished download(s)");
+        return startJobs(jobs, listener);
+    }
 
-                if (!success) {
-                    publish("yt-dlp failed, trying direct download...");
-                    String videoUrl = VideoExtractor.extractVideoUrl(url);
-                    if (videoUrl != null) {
-                        publish("Extracted video URL: " + videoUrl);
-                        // на прямой URL попробуем тем же базовым именем
-                        success = tryYtDlp(videoUrl, outputDir, smartBase);
-                        if (!success) {
-                            publish("Direct download not implemented");
-                            LOGGER.warn("Direct download not implemented for URL: {}", videoUrl);
-                        }
-                    } else {
-                        publish("No video found on page");
-                        LOGGER.warn("No video URL extracted for: {}", url);
+    /**
+     * Поставить задачи в очередь: плейлисты раскрываются в отдельные задачи, имена и оценки размера
+     * готовятся сразу (сетевое ожидание, виртуальный поток), а сама загрузка ждёт слота в {@link JobScheduler}.
+     */
+    private List<DownloadJob> startJobs(List<DownloadJob> jobs, App.DownloadListener listener) {
+        activeJobs.addAll(jobs);
+        Thread.ofVirtual().name("resolve-jobs").start(() -> {
+            List<DownloadJob> expanded = expandPlaylists(jobs, listener);
+            if (expanded.isEmpty()) {
+                listener.onStatusUpdate(
+                        jobs.stream().anyMatch(DownloadJob::isCancelled) ? "Download cancelled" : "Download complete");
+                return;
+            }
+            Submission submission = new Submission(expanded, listener);
+            if (!submission.single) submission.status("Preparing " + expanded.size() + " downloads...");
+            try {
+                resolveJobs(expanded);
+            } catch (InterruptedException e) {
+                expanded.forEach(job -> finish(job, false, submission));
+                return;
+            }
+            for (List<DownloadJob> group : groupForBatches(expanded)) {
+                scheduler.submit(group, () -> runGroup(group, submission));
+            }
+        });
+        return jobs;
+    }
+
+    /**
+     * Плейлист или канал превращается в задачи по элементам (каждая со своим журналом, приоритетом и окном
+     * родителя), сам он отмечается выполненным. Уже скачанные и уже стоящие в очереди элементы пропускаются.
+     * Если листинг оборвался, найденные элементы всё равно ставятся в очередь, а сам список отмечается
+     * неудавшимся: его повтор ({@link #retry}) доберёт остальные.
+     */
+    private List<DownloadJob> expandPlaylists(List<DownloadJob> jobs, App.DownloadListener listener) {
+        PlaylistExpander.Mode mode = AppConfig.playlistMode();
+        List<DownloadJob> result = new ArrayList<>();
+        for (DownloadJob job : jobs) {
+            if (job.getSmartBase() != null || !PlaylistExpander.shouldExpand(job.getUrl(), mode)) {
+                result.add(job);
+                continue;
+            }
+            transition(job, JobState.RESOLVING);
+            PlaylistExpander.Listing listing = PlaylistExpander.expand(job.getUrl(), job.getToken());
+            List<PlaylistExpander.Entry> entries = listing.entries();
+            if (job.isCancelled()) {
+                transition(job, JobState.CANCELLED);
+                activeJobs.remove(job);
+                continue;
+            }
+            if (entries.isEmpty()) {
+                result.add(job);
+                continue;
+            }
+            int skipped = 0;
+            for (PlaylistExpander.Entry entry : entries) {
+                if (findDownloaded(entry.url()) != null || isQueued(entry.url())) {
+                    skipped++;
+                    continue;
+                }
+                DownloadJob item = queueEntry(entry, job.getOutputDir(),
+                        new JobOptions(job.getPriority(), job.getDeadline(), job.getWindow()));
+                activeJobs.add(item);
+                result.add(item);
+            }
+            // элементы уже в журнале — теперь можно закрыть сам список
+            transition(job, listing.complete() ? JobState.DONE : JobState.FAILED);
+            activeJobs.remove(job);
+            String summary = "Playlist " + job.getUrl() + ": " + entries.size() + " item(s)"
+                    + (skipped > 0 ? ", " + skipped + " already downloaded or queued" : "");
+            if (listing.complete()) {
+                LOGGER.info(summary);
+            } else {
+                summary += " — listing was incomplete, retry the playlist to queue the rest";
+                LOGGER.warn(summary);
+            }
+            listener.onStatusUpdate(summary);
+        }
+        return result;
+    }
+
+    /** Ссылка уже стоит в очереди или качается (повтор оборвавшегося листинга не ставит её второй раз). */
+    private boolean isQueued(String url) {
+        for (DownloadJob job : activeJobs) {
+            if (!job.getState().isTerminal() && job.getUrl().equals(url)) return true;
+        }
+        return false;
+    }
+
+    /** Задача для элемента листинга, сразу в журнале. */
+    private DownloadJob queueEntry(PlaylistExpander.Entry entry, Path dir, JobOptions options) {
+        DownloadJob item = new DownloadJob(entry.url(), dir);
+        item.setPriority(options.priority());
+        item.setDeadline(options.deadline());
+        item.setWindow(options.window());
+        // название из листинга — страницу каждого ролика ради заголовка не открываем
+        item.setSmartBase(smartBaseFromTitle(entry.title(), entry.url()));
+        transition(item, JobState.QUEUED);
+        return item;
+    }
+
+    /**
+     * Один проход синхронизации источников из videodownloader.syncSources (см. {@link ChannelSync}):
+     * источники проверяются параллельно, новые ролики идут в очередь фоновыми задачами
+     * в окне источника. Возвращает поставленные задачи.
+     */
+    public List<DownloadJob> syncSources(App.DownloadListener listener) {
+        List<ChannelSync.Source> sources;
+        try {
+            sources = ChannelSync.readSources(AppConfig.syncSources());
+        } catch (IOException e) {
+            LOGGER.error("Cannot read sync sources {}", AppConfig.syncSources(), e);
+            listener.onStatusUpdate("Sync failed: " + e.getMessage());
+            return List.of();
+        }
+        if (sources.isEmpty()) return List.of();
+        long started = System.nanoTime();
+        CancellationToken token = new CancellationToken();
+
+        List<CompletableFuture<ChannelSync.Result>> checks = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (ChannelSync.Source source : sources) {
+                checks.add(CompletableFuture.supplyAsync(() -> {
+                    SYNC_SLOTS.acquireUninterruptibly();
+                    try {
+                        return channelSync.check(source, token);
+                    } finally {
+                        SYNC_SLOTS.release();
                     }
+                }, pool));
+            }
+        }
+
+        List<DownloadJob> jobs = new ArrayList<>();
+        // один ролик может быть и в канале, и в его плейлисте
+        Set<String> queuedUrls = new HashSet<>();
+        int unchanged = 0;
+        int failed = 0;
+        for (CompletableFuture<ChannelSync.Result> check : checks) {
+            ChannelSync.Result result = check.join();
+            if (result.unchanged()) unchanged++;
+            if (result.failed()) failed++;
+            JobOptions options = JobOptions.batch(windowOrNull(result.source().window()));
+            for (PlaylistExpander.Entry entry : result.fresh()) {
+                if (queuedUrls.add(entry.url()) && findDownloaded(entry.url()) == null) {
+                    jobs.add(queueEntry(entry, outputDir, options));
                 }
-                return success;
             }
+            try {
+                channelSync.commit(result);
+            } catch (IOException e) {
+                LOGGER.warn("Cannot save sync state for {}: {}", result.source().url(), e.toString());
+            }
+        }
+        String summary = "Sync: " + sources.size() + " source(s), " + unchanged + " unchanged"
+                + (failed > 0 ? ", " + failed + " failed" : "") + ", " + jobs.size() + " new item(s) in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms";
+        LOGGER.info(summary);
+        listener.onStatusUpdate(summary);
+        return jobs.isEmpty() ? List.of() : startJobs(jobs, listener);
+    }
 
-            @Override
-            protected void process(List<String> chunks) {
-                chunks.forEach(listener::onStatusUpdate);
+    /** Повторять {@link #syncSources} с заданным интервалом (первый проход — сразу) до {@link #shutdown()}. */
+    public void startPeriodicSync(Duration interval, App.DownloadListener listener) {
+        SYNC_TIMER.scheduleWithFixedDelay(() -> {
+            try {
+                syncSources(listener);
+            } catch (RuntimeException e) {
+                LOGGER.error("Channel sync failed", e);
             }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
 
-            @Override
-            protected void done() {
+    /**
+     * Зарегистрировать измерители очереди этого менеджера. Реестр {@link Metrics} общий на процесс и держит
+     * первую регистрацию, поэтому вызывается один раз — из приложения, а не из конструктора.
+     */
+    public void registerGauges() {
+        Metrics.gauge("active_jobs", activeJobs::size);
+        Metrics.gauge("queued_tasks", scheduler::pendingCount);
+        Metrics.gauge("running_tasks", scheduler::runningCount);
+        Metrics.gauge("browser_sessions", VideoExtractor::activeSessions);
+    }
+
+    /** Поднять экспорт метрик по настройкам ({@link AppConfig#metricsPort()}) до {@link #shutdown()}. */
+    public synchronized void startMetricsServer() {
+        if (metricsServer == null) metricsServer = MetricsServer.startIfEnabled(this::activeJobs);
+    }
+
+    /** Тело задачи планировщика: пакет одного сайта (или одна задача) и одиночный фолбэк для неудач. */
+    private void runGroup(List<DownloadJob> group, Submission submission) {
+        List<YtDlpBatchRunner.Item> items = new ArrayList<>();
+        for (DownloadJob job : group) {
+            // отменённые в очереди не попадают в пакет: их итог выставит finally
+            if (job.isCancelled()) continue;
+            // приостановленная уже ждала своё при первом запуске
+            if (job.getState() != JobState.PAUSED) {
+                Metrics.latency(Metrics.Stage.QUEUE_WAIT, job.getUrl(), "ok")
+                        .recordMicros(Math.max(0, System.currentTimeMillis() - job.getQueuedAt()) * 1000);
+            }
+            job.clearPause();
+            items.add(new YtDlpBatchRunner.Item(job, job.getSmartBase(), submission.index(job)));
+        }
+        Set<DownloadJob> requeued = new HashSet<>();
+        try {
+            if (items.size() > 1) {
+                MDC.put(LogManager.MDC_JOB, String.join(",", items.stream().map(i -> Long.toString(i.job.getId())).toList()));
+                submission.status("Batch of " + items.size() + " URLs from " + group.getFirst().getHost());
+                group.forEach(job -> transition(job, JobState.DOWNLOADING));
+                PerformanceProfile profile = throughput.choose(group.getFirst().getUrl());
+                new YtDlpBatchRunner(items, group.getFirst().getOutputDir(),
+                        ytDlpBaseCommand(profile, group.getFirst().getWindow()), WATCHDOG,
+                        submission.jobs.size(), this::notifyObservers).run(submission::status);
+            }
+            for (YtDlpBatchRunner.Item item : items) {
+                DownloadJob job = item.job;
+                if (job.isCancelled()) continue;
+                MDC.put(LogManager.MDC_JOB, Long.toString(job.getId()));
+                boolean success;
+                if (item.succeeded()) {
+                    job.setSavedFile(item.savedFile);
+                    lastSavedFile.set(item.savedFile);
+                    markDownloaded(job);
+                    success = true;
+                } else {
+                    success = !job.isPauseRequested() && runPipeline(job, submission.statusFor(job));
+                }
+                if (!success && job.isPauseRequested() && !job.isCancelled()) {
+                    requeued.add(job);
+                    requeuePaused(job, submission);
+                    continue;
+                }
+                Path saved = job.getSavedFile();
+                if (success && saved != null) {
+                    String full = saved.toAbsolutePath().normalize().toString();
+                    submission.statusFor(job).accept("Saved to: " + full);
+                    LOGGER.info("Saved file: {}", full);
+                }
+                // итог вызова уходит из finish() последней задачи — после её «Saved to»
+                finish(job, success, submission);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // отменённые до старта и прерванные исключением тоже получают итоговое состояние
+            for (DownloadJob job : group) {
+                if (!requeued.contains(job)) finish(job, false, submission);
+            }
+            // поток слота переиспользуется другими задачами
+            MDC.remove(LogManager.MDC_JOB);
+        }
+    }
+
+    /** Приостановленная задача (вытеснение, закрытие окна) возвращается в очередь; yt-dlp потом докачает .part. */
+    private void requeuePaused(DownloadJob job, Submission submission) {
+        transition(job, JobState.PAUSED);
+        submission.statusFor(job).accept("Download paused, will resume later");
+        scheduler.submit(List.of(job), () -> runGroup(List.of(job), submission));
+    }
+
+    /**
+     * Задачи одного вызова downloadVideos: статусы доставляются слушателю в потоке Swing,
+     * сводный итог — когда завершились все задачи вызова.
+     */
+    private final class Submission {
+        final List<DownloadJob> jobs;
+        final App.DownloadListener listener;
+        final boolean single;
+        private int finished;
+        private int ok;
+
+        Submission(List<DownloadJob> jobs, App.DownloadListener listener) {
+            this.jobs = jobs;
+            this.listener = listener;
+            this.single = jobs.size() == 1;
+        }
+
+        void status(String line) {
+            listener.onStatusUpdate(line);
+        }
+
+        int index(DownloadJob job) {
+            return jobs.indexOf(job) + 1;
+        }
+
+        Consumer<String> statusFor(DownloadJob job) {
+            if (single) return this::status;
+            String prefix = "[" + index(job) + "/" + jobs.size() + "] ";
+            return line -> status(prefix + line);
+        }
+
+        void jobFinished(DownloadJob job, boolean success) {
+            activeJobs.remove(job);
+            int done;
+            int succeeded;
+            synchronized (this) {
+                if (success) ok++;
+                done = ++finished;
+                succeeded = ok;
+            }
+            if (done < jobs.size()) return;
+            if (!single) status("Finished " + succeeded + " of " + jobs.size() + " downloads");
+            if (succeeded == jobs.size()) {
+                status("Download complete");
+            } else {
+                status(jobs.stream().anyMatch(DownloadJob::isCancelled) ? "Download cancelled" : "Download failed");
+            }
+        }
+    }
+
+    /** Полный путь одной задачи: yt-dlp по странице, затем извлечённый браузером медиа-URL. */
+    private boolean runPipeline(DownloadJob job, Consumer<String> status) {
+        CancellationToken token = job.getToken();
+        String url = job.getUrl();
+        // прямая ссылка на живой или зашифрованный плейлист — сначала свой загрузчик HLS
+        Boolean hls = tryHlsRecording(job, url, status);
+        if (hls != null) return hls;
+        status.accept("Trying yt-dlp...");
+        transition(job, JobState.DOWNLOADING);
+        boolean success = !token.isCancelled() && tryYtDlp(job, url, status);
+
+        if (!success && !token.isCancelled() && !job.isPauseRequested()) {
+            status.accept("yt-dlp failed, trying direct download...");
+            transition(job, JobState.RESOLVING);
+            String videoUrl = VideoExtractor.extractVideoUrl(url, token);
+            if (token.isCancelled()) {
+                return false;
+            }
+            if (videoUrl != null) {
+                status.accept("Extracted video URL: " + videoUrl);
+                job.setMediaUrl(videoUrl);
+                // тот же ролик мог прийти с другой страницы (зеркало, embed)
+                Path existing = findDownloaded(videoUrl);
+                if (existing != null) {
+                    status.accept("Already downloaded: " + existing);
+                    job.setSavedFile(existing);
+                    lastSavedFile.set(existing);
+                    markDownloaded(job);
+                    return true;
+                }
+                hls = tryHlsRecording(job, videoUrl, status);
+                if (hls != null) return hls;
+                // на прямой URL попробуем тем же базовым именем
+                transition(job, JobState.DOWNLOADING);
+                success = tryYtDlp(job, videoUrl, status);
+                if (!success) {
+                    status.accept("Direct download not implemented");
+                    LOGGER.warn("Direct download not implemented for URL: {}", videoUrl);
+                }
+            } else {
+                status.accept("No video found on page");
+                LOGGER.warn("No video URL extracted for: {}", url);
+            }
+        }
+        if (success) {
+            markDownloaded(job);
+        }
+        return success;
+    }
+
+    /**
+     * Живой HLS и записи с AES-128 качает {@link HlsRecorder}: сегменты параллельно, расшифровка в памяти,
+     * для трансляции — опрос плейлиста и пределы времени и размера. null — ссылка не для него
+     * (или запись не удалась и её стоит отдать yt-dlp).
+     * Трансляция не попадает в историю загрузок: та же ссылка завтра — уже другой эфир.
+     */
+    private Boolean tryHlsRecording(DownloadJob job, String mediaUrl, Consumer<String> status) {
+        if (!HLS_URL.matcher(mediaUrl).find()) return null;
+        URI uri;
+        try {
+            uri = URI.create(mediaUrl);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        HlsRecorder recorder = new HlsRecorder(HTTP, TITLE_USER_AGENT,
+                AppConfig.liveMaxDuration(), AppConfig.liveMaxBytes());
+        HlsRecorder.Playlist playlist = recorder.probe(uri, job.getToken());
+        if (playlist == null) return null;
+
+        boolean live = !playlist.endList();
+        String ext = playlist.initSegment() != null ? ".mp4" : ".ts";
+        Path target = job.getOutputDir().resolve(job.getSmartBase() + ext);
+        status.accept((live ? "Live stream detected, recording to " : "Encrypted HLS, downloading natively to ")
+                + target.getFileName());
+        transition(job, JobState.DOWNLOADING);
+        // файл пишется по порядку сегментов — его уже можно смотреть через предпросмотр
+        job.setSavedFile(target);
+        try {
+            HlsRecorder.Result r = recorder.record(playlist, target, job.getToken(), job.getPauseToken(), status);
+            status.accept(String.format(Locale.ROOT, "%s (%s): %d s, %.1f MiB, %d segment(s) missed",
+                    live ? "Live recording stopped" : "HLS download stopped", r.stopReason(), Math.round(r.seconds()),
+                    r.bytes() / (1024.0 * 1024), r.gaps()));
+            if (live && r.bytes() > 0) {
+                // отмена и пауза для трансляции — это «стоп»: записанное остаётся результатом, слот освобождается
+                job.setSavedFile(target);
+                lastSavedFile.set(target);
+                return true;
+            }
+            // докачанная целиком запись остаётся результатом, даже если пауза пришла в самом конце
+            if (!live && "complete".equals(r.stopReason()) && r.gaps() == 0 && !job.getToken().isCancelled()) {
+                job.setSavedFile(target);
+                lastSavedFile.set(target);
+                markDownloaded(job, r.fingerprint());
+                return true;
+            }
+            if (!live && "paused".equals(r.stopReason())) {
+                // начало файла и точка продолжения остаются: после паузы запись докачает остальное
+                job.setSavedFile(null);
+                return false;
+            }
+            // пустая трансляция или запись с дырами (битый файл) — не держим
+            job.setSavedFile(null);
+            HlsRecorder.discard(target);
+        } catch (IOException e) {
+            status.accept("HLS download failed: " + e.getMessage());
+            LOGGER.error("HLS download failed for {}", mediaUrl, e);
+            if (!live) {
+                job.setSavedFile(null);
                 try {
-                    if (get()) {
-                        Path saved = lastSavedFile.get();
-                        if (saved != null) {
-                            String full = saved.toAbsolutePath().normalize().toString();
-                            listener.onStatusUpdate("Saved to: " + full);
-                            LOGGER.info("Saved file: {}", full);
-                        }
-                        listener.onStatusUpdate("Download complete");
-                    } else {
-                        listener.onStatusUpdate("Download failed");
-                    }
-                } catch (Exception e) {
-                    listener.onStatusUpdate("Error: " + e.getMessage());
-                    LOGGER.error("Download error", e);
+                    HlsRecorder.discard(target);
+                } catch (IOException ignored) {
+                    // не удалили — не страшно, следующий запуск возьмёт новое имя
                 }
             }
-        };
-        worker.execute();
+        }
+        if (live || job.getToken().isCancelled() || job.isPauseRequested()) return false;
+        status.accept("Native HLS download failed, falling back to yt-dlp");
+        return null;
     }
 
-    /** Попытка запустить yt-dlp. */
-    private boolean tryYtDlp(String videoUrl, Path dir, String smartBase) {
-        lastSavedFile.set(null);
-        ProcessBuilder processBuilder = getProcessBuilder(videoUrl, dir, smartBase);
+    /** Окно из настроек по имени из журнала; пропавшее или испорченное описание — качаем без окна. */
+    private static DownloadWindow windowOrNull(String name) {
+        if (name == null) return null;
         try {
-            currentProcess = processBuilder.start();
-            StringBuilder output = new StringBuilder();
+            DownloadWindow window = AppConfig.window(name);
+            if (window == null) LOGGER.warn("Download window '{}' is no longer configured, ignoring it", name);
+            return window;
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Bad download window '{}': {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Перевести задачу в новое состояние и записать переход в журнал. */
+    private void transition(DownloadJob job, JobState state) {
+        job.setState(state);
+        if (journal != null) {
+            journal.record(job, state);
+        }
+        notifyObservers(job);
+    }
 
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(currentProcess.getInputStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                    LOGGER.debug("yt-dlp output: {}", line);
+    public void addJobObserver(JobObserver observer) {
+        observers.add(observer);
+    }
 
-                    Matcher m1 = YTDLP_DESTINATION.matcher(line);
-                    if (m1.find()) { lastSavedFile.set(Paths.get(m1.group(1)).toAbsolutePath().normalize()); continue; }
+    private void notifyObservers(DownloadJob job) {
+        for (JobObserver observer : observers) {
+            observer.jobChanged(job);
+        }
+    }
 
-                    Matcher m2 = YTDLP_ALREADY.matcher(line);
-                    if (m2.find()) { lastSavedFile.set(Paths.get(m2.group(1)).toAbsolutePath().normalize()); continue; }
+    /** Итоговое состояние задачи; уже завершённую не трогает. */
+    private void finish(DownloadJob job, boolean success, Submission submission) {
+        if (job.getState().isTerminal()) return;
+        transition(job, success ? JobState.DONE : job.isCancelled() ? JobState.CANCELLED : JobState.FAILED);
+        String outcome = job.getState().name().toLowerCase(Locale.ROOT);
+        Metrics.counter("jobs", job.getUrl(), outcome).increment();
+        Metrics.latency(Metrics.Stage.JOB_TOTAL, job.getUrl(), outcome)
+                .recordMicros(Math.max(0, System.currentTimeMillis() - job.getQueuedAt()) * 1000);
+        submission.jobFinished(job, success);
+    }
+
+    /** Уже скачанный файл для URL (страницы или медиа), если он ещё на диске. */
+    private Path findDownloaded(String url) {
+        if (history == null || !AppConfig.skipDuplicates()) return null;
+        return history.find(url)
+                .map(DownloadHistory.Entry::file)
+                .filter(Files::isRegularFile)
+                .orElse(null);
+    }
+
+    private void markDownloaded(DownloadJob job) {
+        markDownloaded(job, null);
+    }
 
-                    Matcher m3 = YTDLP_MERGE.matcher(line);
-                    if (m3.find()) { lastSavedFile.set(Paths.get(m3.group(1)).toAbsolutePath().normalize()); }
+    /**
+     * Дедупликация и запись в историю. fingerprint — отпечаток, посчитанный при записи файла
+     * (собственная загрузка HLS); для файлов yt-dlp его нет, и библиотека читает края файла сама.
+     */
+    private void markDownloaded(DownloadJob job, ContentLibrary.Fingerprint fingerprint) {
+        Path saved = job.getSavedFile();
+        if (saved == null) return;
+        transition(job, JobState.POST_PROCESSING);
+        PipelineEvents.FileFinalize event = new PipelineEvents.FileFinalize();
+        event.begin();
+        Path stored = library.deduplicate(saved, fingerprint, AppConfig.dedupeMode());
+        if (!stored.equals(saved)) {
+            job.setSavedFile(stored);
+            lastSavedFile.compareAndSet(saved, stored);
+        }
+        if (history != null) {
+            history.record(job.getUrl(), job.getMediaUrl(), stored);
+        }
+        if (event.isEnabled()) {
+            try {
+                event.bytes = Files.size(stored);
+            } catch (IOException ignored) {
+                // размер не важен для события
+            }
+        }
+        event.finish(Long.toString(job.getId()), job.getUrl(), stored.equals(saved) ? "stored" : "deduplicated");
+    }
+
+    /**
+     * Базы имён для задач, у которых её ещё нет (восстановленные из журнала уже с ней), и оценки размера
+     * для очереди. Заголовки страниц тянем параллельно (виртуальные потоки): это сетевое ожидание, не CPU.
+     * Размер спрашиваем у yt-dlp, только когда есть из чего выбирать: несколько ссылок или не интерактивная.
+     */
+    private void resolveJobs(List<DownloadJob> jobs) throws InterruptedException {
+        boolean probe = AppConfig.sizeProbe()
+                && (jobs.size() > 1 || jobs.getFirst().getPriority() != JobPriority.INTERACTIVE);
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (DownloadJob job : jobs) {
+                // база уже есть у восстановленных задач и элементов плейлиста — им и оценка размера не нужна
+                if (job.getSmartBase() != null) continue;
+                transition(job, JobState.RESOLVING);
+                pool.submit(() -> job.setSmartBase(buildSmartBaseName(job)));
+                if (probe && job.getSizeHint() < 0) {
+                    pool.submit(() -> job.setSizeHint(probeSize(job)));
                 }
             }
+        }
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
 
-            int exitCode = currentProcess.waitFor();
+    /** Размер ролика по метаданным yt-dlp без скачивания; -1, если неизвестен. */
+    private long probeSize(DownloadJob job) {
+        if (job.isCancelled()) return -1;
+        ProcessBuilder pb = new ProcessBuilder(List.of(AppConfig.ytDlp(), "--simulate", "--no-warnings", "--no-playlist",
+                "--print", "%(filesize,filesize_approx)s", job.getUrl()));
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Process process = null;
+        try {
+            PROBE_SLOTS.acquire();
+            process = pb.start();
+            Process started = process;
+            CancellationToken.Registration onCancel = job.getToken().onCancel(() -> ProcessUtils.destroyTree(started));
+            try {
+                if (!process.waitFor(PROBE_TIMEOUT_SEC, TimeUnit.SECONDS)) return -1;
+            } finally {
+                onCancel.close();
+            }
+            String out = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            String last = out.substring(out.lastIndexOf('\n') + 1).trim();
+            return last.matches("\\d+") ? Long.parseLong(last) : -1;
+        } catch (IOException e) {
+            LOGGER.debug("Size probe failed for {}: {}", job, e.toString());
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } finally {
+            if (process != null) {
+                PROBE_SLOTS.release();
+                if (process.isAlive()) ProcessUtils.destroyTree(process);
+            }
+        }
+    }
+
+    /**
+     * Пачки по хосту (один экстрактор), папке и окну времени, не больше videodownloader.batchSize; без батчинга — по одной.
+     * Пачек сайта не меньше, чем слотов у него в планировщике, — иначе параллельность простаивает.
+     * Задачи, восстановленные из журнала, идут поодиночке — так докачивается их прежний .part.
+     */
+    private static List<List<DownloadJob>> groupForBatches(List<DownloadJob> jobs) {
+        int size = AppConfig.batchEnabled() ? AppConfig.batchSize() : 1;
+        int slots = Math.min(AppConfig.maxConcurrentJobs(), AppConfig.maxJobsPerHost());
+        Map<String, List<DownloadJob>> byHost = new LinkedHashMap<>();
+        for (DownloadJob job : jobs) {
+            String key = job.getHost() + "\t" + job.getOutputDir() + "\t" + job.getWindow();
+            if (job.isRestored()) key = "restored\t" + job.getId();
+            byHost.computeIfAbsent(key, h -> new ArrayList<>()).add(job);
+        }
+        List<List<DownloadJob>> groups = new ArrayList<>();
+        for (List<DownloadJob> hostJobs : byHost.values()) {
+            // сначала занять все слоты сайта параллельными пачками, и только избыток — удлинять пачки
+            int chunk = Math.max(1, Math.min(size, Math.ceilDiv(hostJobs.size(), slots)));
+            for (int i = 0; i < hostJobs.size(); i += chunk) {
+                groups.add(hostJobs.subList(i, Math.min(i + chunk, hostJobs.size())));
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Попытка запустить yt-dlp. Если процесс завис (нет прогресса дольше окна сторожа),
+     * он убивается вместе с потомками и запускается снова — yt-dlp докачивает .part-файлы.
+     */
+    private boolean tryYtDlp(DownloadJob job, String videoUrl, Consumer<String> status) {
+        lastSavedFile.set(null);
+        job.setSavedFile(null);
+        CancellationToken token = job.getToken();
+        PerformanceProfile profile = throughput.choose(videoUrl);
+        LOGGER.info("yt-dlp profile {} for URL: {}", profile, videoUrl);
+        int maxRestarts = AppConfig.stallRestarts();
+        for (int attempt = 0; ; attempt++) {
+            YtDlpTimes times = new YtDlpTimes();
+            YtDlpRun run = runYtDlpOnce(job, videoUrl, profile, times, status);
+            if (token.isCancelled() || job.isPauseRequested()) {
+                return false;
+            }
+            if (run == YtDlpRun.SUCCESS) {
+                recordThroughput(job, videoUrl, profile, times);
+                return true;
+            }
+            if (run == YtDlpRun.FAILED) {
+                return false;
+            }
+            if (run == YtDlpRun.TRANSFER_FAILED) {
+                throughput.recordFailure(videoUrl, profile);
+                return false;
+            }
+            if (attempt >= maxRestarts) {
+                LOGGER.warn("yt-dlp stalled {} time(s) for URL: {}, giving up", attempt + 1, videoUrl);
+                throughput.recordFailure(videoUrl, profile);
+                return false;
+            }
+            LOGGER.warn("yt-dlp stalled for URL: {}, resuming ({}/{})", videoUrl, attempt + 1, maxRestarts);
+            status.accept("No progress, restarting yt-dlp with resume...");
+        }
+    }
+
+    /** FAILED — ошибка извлечения или прочая; TRANSFER_FAILED — сбой передачи, он идёт в статистику профиля. */
+    private enum YtDlpRun { SUCCESS, FAILED, TRANSFER_FAILED, STALLED }
+
+    /** Отметки этапов одного запуска yt-dlp (пишет поток вывода, читает поток загрузки). */
+    private static final class YtDlpTimes {
+        final long started = System.nanoTime();
+        volatile long firstLine;
+        volatile long firstProgress;
+        /** Сколько уже было скачано к первой строке прогресса (докачка .part); -1 — прогресса не было. */
+        volatile long resumedBytes = -1;
+        volatile long merge;
+
+        /** Этапы в метрики по итогу запуска. */
+        void record(String url, String outcome) {
+            long end = System.nanoTime();
+            if (firstLine > 0) record(Metrics.Stage.YTDLP_STARTUP, url, outcome, firstLine - started);
+            if (firstProgress > 0) {
+                record(Metrics.Stage.FIRST_BYTE, url, outcome, firstProgress - started);
+                record(Metrics.Stage.TRANSFER, url, outcome, (merge > 0 ? merge : end) - firstProgress);
+            }
+            if (merge > 0) record(Metrics.Stage.MERGE, url, outcome, end - merge);
+        }
+
+        private static void record(Metrics.Stage stage, String url, String outcome, long nanos) {
+            Metrics.latency(stage, url, outcome).recordNanos(nanos);
+        }
+    }
+
+    /**
+     * Замер успешного запуска: только байты, перенесённые этим запуском (итоговый файл без докачанного
+     * с прошлых попыток .part), за время этого запуска — без перезапусков после зависания.
+     * «Уже скачано» (прогресса не было) не замеряется.
+     */
+    private void recordThroughput(DownloadJob job, String videoUrl, PerformanceProfile profile, YtDlpTimes times) {
+        Path saved = job.getSavedFile();
+        long millis = (System.nanoTime() - times.started) / 1_000_000;
+        try {
+            if (saved != null && Files.isRegularFile(saved) && times.resumedBytes >= 0) {
+                long moved = Math.max(0, Files.size(saved) - times.resumedBytes);
+                Metrics.counter("bytes", videoUrl, "ok").add(moved);
+                if (millis > 1_000) throughput.recordSuccess(videoUrl, profile, moved, millis);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Cannot measure {}: {}", saved, e.toString());
+        }
+    }
+
+    /**
+     * Один запуск yt-dlp. Вывод вычитывает {@link ProcessOutputPump} в своём потоке,
+     * в памяти остаётся только ограниченный хвост для диагностики.
+     */
+    private YtDlpRun runYtDlpOnce(DownloadJob job, String videoUrl, PerformanceProfile profile, YtDlpTimes times,
+                                  Consumer<String> status) {
+        CancellationToken token = job.getToken();
+        if (token.isCancelled() || job.isPauseRequested()) return YtDlpRun.FAILED;
+        ProcessBuilder processBuilder = getProcessBuilder(videoUrl, job, profile);
+        OutputRingBuffer tail = new OutputRingBuffer(AppConfig.outputTailLines(), AppConfig.outputTailBytes());
+        TranscriptWriter.Mode transcriptMode = AppConfig.transcriptMode();
+        Process process = null;
+        StallWatchdog.Tracker tracker = null;
+        CancellationToken.Registration onCancel = null;
+        CancellationToken.Registration onPause = null;
+        YtDlpRun result = YtDlpRun.FAILED;
+        PipelineEvents.YtDlpProcess event = new PipelineEvents.YtDlpProcess();
+        event.begin();
+        try {
+            process = processBuilder.start();
+            // отмена убивает всё дерево: yt-dlp и запущенный им ffmpeg; приостановка — так же, .part остаётся
+            Process started = process;
+            onCancel = token.onCancel(() -> ProcessUtils.destroyTree(started));
+            onPause = job.getPauseToken().onCancel(() -> ProcessUtils.destroyTree(started));
+            tracker = WATCHDOG.watch(videoUrl, process);
+
+            StallWatchdog.Tracker t = tracker;
+            ProcessOutputPump pump = new ProcessOutputPump(
+                    "yt-dlp-out-" + job.getId(),
+                    process.getInputStream(),
+                    tail,
+                    transcriptMode == TranscriptWriter.Mode.ALWAYS
+                            ? new TranscriptWriter(job.getId(), AppConfig.transcriptMaxBytes()) : null,
+                    line -> handleYtDlpLine(line, job, t, times, status));
+            pump.start();
+
+            int exitCode = process.waitFor();
+            event.exitCode = exitCode;
+            // вывод мог ещё не дочитаться; «осиротевший» потомок может держать канал — не ждём вечно
+            if (!pump.await(PUMP_DRAIN_MILLIS)) {
+                LOGGER.debug("yt-dlp output still open after exit, closing it");
+                process.getInputStream().close();
+            }
+
+            if (token.isCancelled()) {
+                LOGGER.info("yt-dlp cancelled for URL: {}", videoUrl);
+                return YtDlpRun.FAILED;
+            }
+            if (job.isPauseRequested()) {
+                LOGGER.info("yt-dlp paused for URL: {}", videoUrl);
+                return YtDlpRun.FAILED;
+            }
+            if (tracker.isStalled()) {
+                return result = YtDlpRun.STALLED;
+            }
             if (exitCode == 0) {
                 LOGGER.info("yt-dlp download successful for URL: {}", videoUrl);
-                return true;
+                return result = YtDlpRun.SUCCESS;
             } else {
-                LOGGER.warn("yt-dlp failed with exit code {}: {}", exitCode, output);
-                return false;
+                String output = tail.snapshot();
+                LOGGER.warn("yt-dlp failed with exit code {}:\n{}", exitCode, output);
+                if (transcriptMode == TranscriptWriter.Mode.ON_FAILURE) {
+                    new TranscriptWriter(job.getId(), AppConfig.transcriptMaxBytes()).dump(output);
+                }
+                return HostThroughputStats.isTransferFailure(output) ? YtDlpRun.TRANSFER_FAILED : YtDlpRun.FAILED;
             }
         } catch (IOException e) {
+            if (tracker != null && tracker.isStalled()) {
+                return result = YtDlpRun.STALLED;
+            }
+            if (token.isCancelled() || job.isPauseRequested()) {
+                return YtDlpRun.FAILED;
+            }
             LOGGER.error("Error running yt-dlp: {}", e.getMessage(), e);
-            return false;
+            return YtDlpRun.FAILED;
         } catch (InterruptedException e) {
             LOGGER.warn("yt-dlp interrupted: {}", e.getMessage(), e);
             Thread.currentThread().interrupt();
-            return false;
+            return YtDlpRun.FAILED;
         } finally {
-            if (currentProcess != null && currentProcess.isAlive()) {
-                currentProcess.destroy();
+            if (tracker != null) {
+                tracker.close();
             }
-            currentProcess = null;
+            if (onCancel != null) {
+                onCancel.close();
+            }
+            if (onPause != null) {
+                onPause.close();
+            }
+            if (process != null && process.isAlive()) {
+                ProcessUtils.destroyTree(process);
+            }
+            String outcome = token.isCancelled() ? "cancelled" : job.isPauseRequested() ? "paused"
+                    : result.name().toLowerCase(Locale.ROOT);
+            times.record(videoUrl, outcome);
+            YtDlpProgress last = job.getProgress();
+            event.profile = profile.name();
+            event.bytes = last == null ? -1 : last.downloadedBytes();
+            event.finish(Long.toString(job.getId()), videoUrl, outcome);
+        }
+    }
+
+    /** Разбор строки вывода yt-dlp (вызывается потоком-читателем). */
+    private void handleYtDlpLine(String line, DownloadJob job, StallWatchdog.Tracker tracker, YtDlpTimes times,
+                                 Consumer<String> status) {
+        LOGGER.debug("yt-dlp output: {}", line);
+        status.accept(line);
+        if (times.firstLine == 0) times.firstLine = System.nanoTime();
+
+        YtDlpProgress progress = YtDlpProgress.parse(line);
+        if (progress != null) {
+            if (times.firstProgress == 0) {
+                times.firstProgress = System.nanoTime();
+                times.resumedBytes = Math.max(0, progress.downloadedBytes());
+            }
+            tracker.progress(progress);
+            if (progress.totalBytes() > 0) job.setSizeHint(progress.totalBytes());
+            job.setProgress(progress);
+            notifyObservers(job);
+            return;
         }
+
+        if (times.merge == 0 && YTDLP_MERGE.matcher(line).find()) times.merge = System.nanoTime();
+        Path saved = savedPathFrom(line);
+        if (saved != null) { job.setSavedFile(saved); lastSavedFile.set(saved); tracker.phase(); notifyObservers(job); }
+
+        // после [Merger] и прочей постобработки сторож ждёт ffmpeg по длинному окну
+        tracker.output(line);
+    }
+
+    /** Путь из строк Destination / already downloaded / Merging, иначе null. */
+    static Path savedPathFrom(String line) {
+        // все три шаблона начинаются с «[» — остальные строки не гоняем через регулярки
+        if (line.isEmpty() || line.charAt(0) != '[') return null;
+        Matcher m1 = YTDLP_DESTINATION.matcher(line);
+        if (m1.find()) return Paths.get(m1.group(1)).toAbsolutePath().normalize();
+
+        Matcher m2 = YTDLP_ALREADY.matcher(line);
+        if (m2.find()) return Paths.get(m2.group(1)).toAbsolutePath().normalize();
+
+        Matcher m3 = YTDLP_MERGE.matcher(line);
+        if (m3.find()) return Paths.get(m3.group(1)).toAbsolutePath().normalize();
+
+        return null;
     }
 
     /** Конструируем команду yt-dlp с нашим «умным» именем. */
-    private ProcessBuilder getProcessBuilder(String videoUrl, Path dir, String smartBase) {
+    private ProcessBuilder getProcessBuilder(String videoUrl, DownloadJob job, PerformanceProfile profile) {
         // Мы задаём уже готовую «базу», расширение подставит yt-dlp.
         // В Windows избегаем обратных слешей в шаблоне — используем resolve и toString().
-        String outTpl = dir.resolve(smartBase + ".%(ext)s").toString();
+        String outTpl = job.getOutputDir().resolve(job.getSmartBase() + ".%(ext)s").toString();
 
-        ProcessBuilder pb = new ProcessBuilder(
-                "yt-dlp",
-                "--user-agent",
-                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit(KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36",
-                videoUrl,
-                "-o", outTpl
-        );
+        List<String> command = ytDlpBaseCommand(profile, job.getWindow());
+        command.add(videoUrl);
+        command.add("-o");
+        command.add(outTpl);
+
+        ProcessBuilder pb = new ProcessBuilder(command);
         pb.redirectErrorStream(true);
         LOGGER.debug("ProcessBuilder command: {}", pb.command());
         return pb;
     }
 
-    /** Собрать «умную» базу имени файла. */
-    private String buildSmartBaseName(String pageUrl) {
+    /** Общая часть команды yt-dlp: клиент, режим вывода, сетевой профиль и предел скорости окна. */
+    private static List<String> ytDlpBaseCommand(PerformanceProfile profile, DownloadWindow window) {
+        List<String> command = new ArrayList<>(List.of(
+                AppConfig.ytDlp(),
+                "--user-agent",
+                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit(KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36",
+                "--newline",   // прогресс построчно — его читает сторож зависаний
+                "--continue"   // перезапуск после зависания докачивает .part
+        ));
+        command.addAll(profile.toArgs());
+        if (window != null && window.perJobRate() > 0) {
+            command.add("--limit-rate");
+            command.add(String.valueOf(window.perJobRate()));
+        }
+        return command;
+    }
+
+    /** Собрать «умную» базу имени файла для задачи. */
+    private String buildSmartBaseName(DownloadJob job) {
+        String pageUrl = job.getUrl();
+        CancellationToken token = job.getToken();
         String title = null;
+        long started = System.nanoTime();
+        PipelineEvents.TitleFetch event = new PipelineEvents.TitleFetch();
+        event.begin();
         try {
-            title = fetchPreferredTitle(pageUrl);
+            title = fetchPreferredTitle(pageUrl, token);
         } catch (Exception e) {
             LOGGER.debug("Title fetch failed: {}", e.toString());
         }
+        String outcome = title != null ? "ok" : token.isCancelled() ? "cancelled" : "failed";
+        Metrics.recordSince(Metrics.Stage.TITLE_FETCH, pageUrl, outcome, started);
+        event.finish(Long.toString(job.getId()), pageUrl, outcome);
 
+        return smartBaseFromTitle(title, pageUrl);
+    }
+
+    /** «Умная» база из уже известного заголовка (null — по URL). */
+    private String smartBaseFromTitle(String title, String pageUrl) {
         if (title == null || title.isBlank()) {
             title = fallbackFromUrl(pageUrl);
         }
@@ -305,12 +1241,32 @@ public class VideoDownloadManager {
     }
 
     /** Получаем «лучший» заголовок страницы: og:title → twitter:title → <title>. */
-    private String fetchPreferredTitle(String url) throws IOException {
-        Document doc = Jsoup.connect(url)
-                .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/118 Safari/537.36")
-                .timeout(15000)
-                .get();
+    private String fetchPreferredTitle(String url, CancellationToken token) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("User-Agent", TITLE_USER_AGENT)
+                .timeout(Duration.ofSeconds(15))
+                .GET()
+                .build();
+        CompletableFuture<HttpResponse<byte[]>> pending = HTTP.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        // отмена обрывает HTTP-обмен и освобождает сокет сразу, а не по таймауту
+        HttpResponse<byte[]> response;
+        CancellationToken.Registration onCancel = token.onCancel(() -> pending.cancel(true));
+        try {
+            response = pending.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Title fetch failed: " + e.getCause(), e.getCause());
+        } finally {
+            onCancel.close();
+        }
+        if (response.statusCode() >= 400) {
+            throw new IOException("HTTP " + response.statusCode() + " for " + url);
+        }
+        // кодировку определяет Jsoup (по заголовку/meta), как и раньше в Jsoup.connect()
+        return preferredTitle(Jsoup.parse(new ByteArrayInputStream(response.body()), null, response.uri().toString()));
+    }
 
+    /** og:title → twitter:title → <title> разобранной страницы; null, если все пусты. */
+    static String preferredTitle(Document doc) {
         // 1) og:title
         Element og = doc.selectFirst("meta[property=og:title], meta[name=og:title]");
         if (og != null) {
@@ -334,7 +1290,7 @@ public class VideoDownloadManager {
     }
 
     /** Фолбэк имя из URL (последний сегмент пути, без query/frag). */
-    private String fallbackFromUrl(String url) {
+    static String fallbackFromUrl(String url) {
         try {
             URI u = new URI(url);
             String path = u.getPath();
@@ -353,34 +1309,108 @@ public class VideoDownloadManager {
         }
     }
 
-    /** Санитизация строки под безопасное имя файла. */
-    private String sanitizeForFilename(String s) {
+    /**
+     * Санитизация строки под безопасное имя файла: запрещённые в Windows и управляющие символы и пробелы
+     * становятся «_», повторы схлопываются, по краям «_» не остаётся. Один проход готовым шаблоном.
+     */
+    static String sanitizeForFilename(String s) {
         if (s == null) return "";
-        String normalized = Normalizer.normalize(s, Normalizer.Form.NFKC);
+        String cleaned = UNSAFE_NAME_RUN.matcher(Normalizer.normalize(s, Normalizer.Form.NFKC)).replaceAll("_");
+        int from = cleaned.startsWith("_") ? 1 : 0;
+        int to = cleaned.endsWith("_") ? cleaned.length() - 1 : cleaned.length();
+        return from >= to ? "" : cleaned.substring(from, to);
+    }
 
-        // заменим запрещённые/опасные символы
-        String cleaned = normalized
-                .replaceAll("[\\\\/:*?\"<>|]", " ")   // win-forbidden
-                .replaceAll("[\\p{Cntrl}]", " ")      // control chars
-                .replaceAll("\\s+", " ")              // collapse spaces
-                .trim();
+    /** Задачи в очереди и в работе (только чтение; для замеров нагрузки). */
+    Collection<DownloadJob> activeJobs() {
+        return Collections.unmodifiableSet(activeJobs);
+    }
 
-        // заменим пробелы на подчёркивания для стабильности
-        cleaned = cleaned.replace(' ', '_');
+    /**
+     * Адрес предпросмотра для текущей загрузки (самой ранней из тех, у которых файл уже начал писаться),
+     * а если загрузок нет — для последнего сохранённого файла. Сервер поднимается при первом вызове.
+     */
+    public Optional<URI> previewCurrent() {
+        DownloadJob job = activeJobs.stream()
+                .filter(j -> j.getState() == JobState.DOWNLOADING && PreviewServer.currentFile(j) != null)
+                .min(Comparator.comparingLong(DownloadJob::getId))
+                .orElse(null);
+        if (job == null) {
+            Path last = lastSavedFile.get();
+            if (last == null || !Files.exists(last)) return Optional.empty();
+            // готовый файл отдаём через «завершённую» задачу-обёртку
+            job = new DownloadJob(last.toUri().toString(), last.getParent());
+            job.setSavedFile(last);
+            job.setState(JobState.DONE);
+        }
+        try {
+            return Optional.of(previewServer().publish(job));
+        } catch (IOException e) {
+            LOGGER.error("Cannot start preview server", e);
+            return Optional.empty();
+        }
+    }
+
+    private synchronized PreviewServer previewServer() throws IOException {
+        if (preview == null) preview = new PreviewServer(AppConfig.previewPort());
+        return preview;
+    }
 
-        // ещё немного почистим «мусорные» последовательности
-        cleaned = cleaned.replaceAll("_+", "_");
-        cleaned = cleaned.replaceAll("^_+|_+$", "");
+    /** Отмена одной задачи; ждущая в очереди сразу получает итог, не дожидаясь слота. */
+    public void cancel(DownloadJob job) {
+        if (job.getState().isTerminal()) return;
+        job.cancel();
+        LOGGER.info("Download cancelled: {}", job);
+        scheduler.reconsider();
+    }
 
-        return cleaned;
+    /** Повторить неудавшуюся или отменённую задачу новой задачей с теми же URL, папкой и параметрами очереди. */
+    public List<DownloadJob> retry(DownloadJob job, App.DownloadListener listener) {
+        if (job.getState() != JobState.FAILED && job.getState() != JobState.CANCELLED) return List.of();
+        DownloadJob copy = new DownloadJob(job.getUrl(), job.getOutputDir());
+        copy.setPriority(job.getPriority());
+        copy.setDeadline(job.getDeadline());
+        copy.setWindow(job.getWindow());
+        copy.setSmartBase(job.getSmartBase());
+        copy.setMediaUrl(job.getMediaUrl());
+        LOGGER.info("Retrying {} as {}", job, copy);
+        transition(copy, JobState.QUEUED);
+        return startJobs(List.of(copy), listener);
     }
 
-    /** Отмена загрузки. */
-    public void cancelDownload() {
-        Process p = currentProcess;
-        if (p != null) {
-            p.destroy();
-            LOGGER.info("Download cancelled");
+    /** Сменить класс приоритета задачи в очереди или в работе; поднятая до INTERACTIVE может вытеснить другую. */
+    public void reprioritize(DownloadJob job, JobPriority priority) {
+        if (job.getState().isTerminal() || job.getPriority() == priority) return;
+        job.setPriority(priority);
+        if (journal != null) {
+            journal.record(job, job.getState());
+        }
+        notifyObservers(job);
+        LOGGER.info("{} reprioritized to {}", job, priority);
+        scheduler.reconsider();
+    }
+
+    /**
+     * Выход из приложения: сначала закрываем журнал, потом останавливаем процессы.
+     * Остановленные так задачи остаются в журнале незавершёнными и возобновятся при следующем запуске.
+     */
+    public void shutdown() {
+        SYNC_TIMER.shutdownNow();
+        synchronized (this) {
+            if (preview != null) preview.close();
+            if (metricsServer != null) metricsServer.close();
+        }
+        scheduler.shutdown();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOGGER.warn("Cannot close job journal: {}", e.toString());
+            }
+        }
+        for (DownloadJob job : activeJobs) {
+            job.cancel();
+            LOGGER.info("Download interrupted by shutdown: {}", job);
         }
     }
 
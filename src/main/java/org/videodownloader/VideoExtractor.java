@@ -14,11 +14,21 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class VideoExtractor {
     private static final Logger LOGGER = LoggerFactory.getLogger(VideoExtractor.class);
 
+    /** Открытые сейчас сессии Chrome (для панели нагрузки). */
+    private static final AtomicInteger SESSIONS = new AtomicInteger();
+
+    static int activeSessions() {
+        return SESSIONS.get();
+    }
+
     private static ChromeDriver createDriver() {
         ChromeOptions options = new ChromeOptions();
         // современный headless на новых Chrome
@@ -35,16 +45,48 @@ public class VideoExtractor {
     }
 
     public static String extractVideoUrl(String pageUrl) {
+        return extractVideoUrl(pageUrl, new CancellationToken());
+    }
+
+    /**
+     * Отмена токена закрывает браузер из другого потока: driver.get()/ожидание сети
+     * прерываются исключением, и Chrome со всеми рендерерами освобождается сразу.
+     */
+    public static String extractVideoUrl(String pageUrl, CancellationToken token) {
         ChromeDriver driver = null;
         DevTools devTools = null;
+        PageRecorder recorder = null;
+        PageReplayer replayer = null;
+        CancellationToken.Registration onCancel = null;
+        // отметки этапов для метрик (System.nanoTime(); 0 — этап не пройден)
+        long started = System.nanoTime();
+        long launched = 0;
+        long loaded = 0;
+        AtomicLong capturedAt = new AtomicLong();
+        String outcome = "error";
+        String job = PipelineEvents.currentJob();
+        PipelineEvents.BrowserLaunch launchEvent = new PipelineEvents.BrowserLaunch();
+        PipelineEvents.MediaCapture captureEvent = null;
 
         try {
+            token.throwIfCancelled();
+            launchEvent.begin();
             driver = createDriver();
+            SESSIONS.incrementAndGet();
+            ChromeDriver session = driver;
+            // quit() может занять секунды — не держим поток, который нажал Cancel (часто это EDT)
+            onCancel = token.onCancel(() -> CompletableFuture.runAsync(() -> quitQuietly(session)));
+            token.throwIfCancelled();
             devTools = driver.getDevTools();
             devTools.createSession();
 
             // Включаем перехват сети ДО загрузки страниц
             devTools.send(Network.enable(Optional.empty(), Optional.empty(), Optional.empty()));
+            // Архив страницы: воспроизвести вместо сети или записать — тоже до первой навигации
+            replayer = PageReplayer.startIfEnabled(devTools);
+            if (replayer == null) recorder = PageRecorder.startIfEnabled(devTools, pageUrl);
+            launched = System.nanoTime();
+            launchEvent.finish(job, pageUrl, "ok");
 
             final AtomicReference<String> videoUrlRef = new AtomicReference<>(null);
 
@@ -53,12 +95,12 @@ public class VideoExtractor {
                 String url = resp.getResponse().getUrl();
                 if ((url.contains(".mp4") || url.contains(".m3u8")) && !url.contains("remote_control.php")) {
                     LOGGER.info("Captured media URL: {}", url);
-                    videoUrlRef.compareAndSet(null, url);
+                    if (videoUrlRef.compareAndSet(null, url)) capturedAt.set(System.nanoTime());
                 }
             });
 
             LOGGER.info("Selenium session started for URL: {}", pageUrl);
-            driver.get(pageUrl);
+            navigate(driver, pageUrl, job, pageUrl);
 
             // Быстрый жадный поиск embed до DevTools-эвентов
             String pageSource = driver.getPageSource();
@@ -78,8 +120,11 @@ public class VideoExtractor {
             } else {
                 embedUrl = makeAbsoluteUrl(pageUrl, embedUrl);
                 LOGGER.info("Found embed URL: {}", embedUrl);
-                driver.get(embedUrl);
+                navigate(driver, embedUrl, job, pageUrl);
             }
+            loaded = System.nanoTime();
+            captureEvent = new PipelineEvents.MediaCapture();
+            captureEvent.begin();
 
             // Страховка: толкнуть видео (если плеер ленится без юзер-жеста)
             try {
@@ -93,34 +138,80 @@ public class VideoExtractor {
 
             // Ожидаем сетевой медиа-URL до 30 сек
             long until = System.currentTimeMillis() + 30_000;
-            while (videoUrlRef.get() == null && System.currentTimeMillis() < until) {
+            while (videoUrlRef.get() == null && System.currentTimeMillis() < until && !token.isCancelled()) {
                 try { Thread.sleep(300); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); break; }
             }
 
             String media = videoUrlRef.get();
             if (media != null) {
                 LOGGER.info("Successfully extracted media URL: {}", media);
+                outcome = "ok";
                 return media;
             } else {
+                outcome = token.isCancelled() ? "cancelled" : "timeout";
                 LOGGER.warn("No media URL captured within timeout for: {}", embedUrl != null ? embedUrl : pageUrl);
                 return null;
             }
 
         } catch (Exception e) {
+            if (token.isCancelled()) {
+                LOGGER.info("Video URL extraction cancelled for: {}", pageUrl);
+                outcome = "cancelled";
+                return null;
+            }
             LOGGER.error("Error during video URL extraction: {}", e.getMessage(), e);
             return null;
         } finally {
-            if (devTools != null) {
+            if (onCancel != null) {
+                onCancel.close();
+            }
+            // тела ответов забираются у живого браузера — до quit()
+            if (recorder != null) recorder.close();
+            if (replayer != null) replayer.close();
+            if (devTools != null && !token.isCancelled()) {
                 try { devTools.send(Network.disable()); } catch (Exception ignore) {}
             }
             if (driver != null) {
-                try { driver.quit(); } catch (Exception ignore) {}
+                quitQuietly(driver);
+                SESSIONS.decrementAndGet();
             }
             LOGGER.debug("Selenium session closed");
+            recordStages(pageUrl, outcome, started, launched, loaded, capturedAt.get());
+            if (launched == 0) launchEvent.finish(job, pageUrl, outcome);
+            if (captureEvent != null) captureEvent.finish(job, pageUrl, outcome);
+        }
+    }
+
+    /** driver.get() с событием JFR; исключение навигации уходит наверх, событие пишется с исходом error. */
+    private static void navigate(ChromeDriver driver, String url, String job, String pageUrl) {
+        PipelineEvents.PageLoad event = new PipelineEvents.PageLoad();
+        event.url = url;
+        event.begin();
+        String outcome = "error";
+        try {
+            driver.get(url);
+            outcome = "ok";
+        } finally {
+            event.finish(job, pageUrl, outcome);
         }
     }
 
-    private static String makeAbsoluteUrl(String baseUrl, String relativeUrl) {
+    /** Этапы сессии в метрики; непройденный этап не пишется. */
+    private static void recordStages(String pageUrl, String outcome, long started, long launched, long loaded,
+                                     long captured) {
+        if (launched > 0) Metrics.latency(Metrics.Stage.SELENIUM_LAUNCH, pageUrl, outcome).recordNanos(launched - started);
+        if (loaded > 0) Metrics.latency(Metrics.Stage.PAGE_LOAD, pageUrl, outcome).recordNanos(loaded - launched);
+        // медиа может прийти ещё во время загрузки страницы — тогда ожидания после неё не было
+        if (loaded > 0 && "ok".equals(outcome)) {
+            Metrics.latency(Metrics.Stage.MEDIA_CAPTURE, pageUrl, outcome).recordNanos(Math.max(0, captured - loaded));
+        }
+    }
+
+    private static void quitQuietly(ChromeDriver driver) {
+        try { driver.quit(); } catch (Exception ignore) {}
+    }
+
+    static String makeAbsoluteUrl(String baseUrl, String relativeUrl) {
         try {
             URI base = new URI(baseUrl);
             URI abs = base.resolve(relativeUrl);
@@ -0,0 +1,222 @@
+package org.videodownloader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Несколько URL одного сайта за один запуск yt-dlp (--batch-file): интерпретатор Python
+ * и реестр экстракторов поднимаются один раз, а не на каждый ролик.
+ * <p>
+ * yt-dlp не умеет задавать -o для отдельного URL, поэтому элементы сначала сохраняются
+ * под временным именем batchN_extractor_id, а по окончании переименовываются в «умную» базу задачи.
+ * <p>
+ * Итог по каждому входному URL yt-dlp сообщает сам ({@code --print} с меткой {@link #MARK}): перед загрузкой
+ * и после переноса готового файла — с {@code original_url}, то есть ровно строкой batch-файла. Строки
+ * «Extracting URL» для этого не годятся: длинные URL там укорочены, а встроенный плеер печатает уже свой адрес.
+ * Элемент без строки готовности (ошибка, зависание, не дошла очередь) считается не скачанным.
+ */
+class YtDlpBatchRunner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(YtDlpBatchRunner.class);
+    private static final AtomicLong SEQ = new AtomicLong();
+
+    /** Начало служебных строк --print; поля дальше разделены табуляцией. */
+    static final String MARK = "[videodownloader]\t";
+    private static final String STARTED = "start";
+    private static final String DONE = "done";
+
+    /** Элемент пакета: задача и её итог. */
+    static final class Item {
+        final DownloadJob job;
+        final String smartBase;
+        final int index;
+        volatile Path savedFile;
+
+        Item(DownloadJob job, String smartBase, int index) {
+            this.job = job;
+            this.smartBase = smartBase;
+            this.index = index;
+        }
+
+        boolean succeeded() {
+            return savedFile != null && Files.isRegularFile(savedFile);
+        }
+    }
+
+    private final long batchId = SEQ.incrementAndGet();
+    private final List<Item> items;
+    private final Path dir;
+    private final List<String> baseCommand;
+    private final StallWatchdog watchdog;
+    private final int total;
+    private final Consumer<DownloadJob> onProgress;
+    private volatile Item current;
+
+    YtDlpBatchRunner(List<Item> items, Path dir, List<String> baseCommand, StallWatchdog watchdog, int total,
+                     Consumer<DownloadJob> onProgress) {
+        this.items = items;
+        this.dir = dir;
+        this.baseCommand = baseCommand;
+        this.watchdog = watchdog;
+        this.total = total;
+        this.onProgress = onProgress;
+    }
+
+    /**
+     * Запускает пакет и ждёт его окончания. Успешные элементы переименовываются;
+     * остальные (ошибка, зависание, не дошла очередь) вызывающий код прогоняет поодиночке.
+     */
+    void run(Consumer<String> status) throws InterruptedException {
+        Path batchFile = AppConfig.dataDir().resolve("batches").resolve("batch-" + batchId + ".txt");
+        Process process = null;
+        StallWatchdog.Tracker tracker = null;
+        List<CancellationToken.Registration> registrations = new ArrayList<>();
+        try {
+            Files.createDirectories(batchFile.getParent());
+            List<String> urls = items.stream().map(i -> i.job.getUrl()).toList();
+            Files.write(batchFile, urls, StandardCharsets.UTF_8);
+
+            List<String> command = new ArrayList<>(baseCommand);
+            command.add("--ignore-errors");   // ошибка одного ролика не останавливает остальные
+            command.add("--print");
+            command.add("before_dl:" + MARK + STARTED + "\t%(original_url)s");
+            command.add("--print");
+            command.add("after_move:" + MARK + DONE + "\t%(original_url)s\t%(filepath)s");
+            // --print сам включает --quiet, а строки прогресса нужны сторожу и окну
+            command.add("--no-quiet");
+            command.add("--no-simulate");
+            command.add("--batch-file");
+            command.add(batchFile.toString());
+            command.add("-o");
+            command.add(dir.resolve("batch" + batchId + "_%(extractor_key)s_%(id)s.%(ext)s").toString());
+
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectErrorStream(true);
+            LOGGER.debug("Batch ProcessBuilder command: {}", pb.command());
+
+            process = pb.start();
+            Process started = process;
+            for (Item item : items) {
+                // пока отмена точечная только через весь процесс; не отменённые элементы потом уйдут поодиночке
+                registrations.add(item.job.getToken().onCancel(() -> ProcessUtils.destroyTree(started)));
+                // вытеснение планировщиком: элементы, не успевшие скачаться, вернутся в очередь
+                registrations.add(item.job.getPauseToken().onCancel(() -> ProcessUtils.destroyTree(started)));
+            }
+            tracker = watchdog.watch("batch#" + batchId + " (" + items.size() + " URLs)", process);
+
+            OutputRingBuffer tail = new OutputRingBuffer(AppConfig.outputTailLines(), AppConfig.outputTailBytes());
+            StallWatchdog.Tracker t = tracker;
+            ProcessOutputPump pump = new ProcessOutputPump("yt-dlp-batch-" + batchId, process.getInputStream(),
+                    tail, null, line -> handleLine(line, t, status));
+            pump.start();
+
+            int exitCode = process.waitFor();
+            if (!pump.await(5_000)) {
+                process.getInputStream().close();
+            }
+            if (exitCode != 0) {
+                LOGGER.warn("yt-dlp batch #{} exited with code {}:\n{}", batchId, exitCode, tail.snapshot());
+            }
+            // элемент, на котором зависли, строки готовности не получил — его докачает одиночный запуск
+            finishItems();
+        } catch (IOException e) {
+            LOGGER.error("Error running yt-dlp batch #{}: {}", batchId, e.getMessage(), e);
+        } finally {
+            registrations.forEach(CancellationToken.Registration::close);
+            if (tracker != null) tracker.close();
+            if (process != null && process.isAlive()) ProcessUtils.destroyTree(process);
+            try {
+                Files.deleteIfExists(batchFile);
+            } catch (IOException ignored) {
+                // временный файл не критичен
+            }
+        }
+    }
+
+    private void handleLine(String line, StallWatchdog.Tracker tracker, Consumer<String> status) {
+        LOGGER.debug("yt-dlp batch output: {}", line);
+
+        if (line.startsWith(MARK)) {
+            report(line.substring(MARK.length()));
+            tracker.phase();
+            return;
+        }
+
+        Item item = current;
+        forward(line, status);
+
+        YtDlpProgress progress = YtDlpProgress.parse(line);
+        if (progress != null) {
+            tracker.progress(progress);
+            if (item != null) {
+                if (progress.totalBytes() > 0) item.job.setSizeHint(progress.totalBytes());
+                item.job.setProgress(progress);
+                onProgress.accept(item.job);
+            }
+            return;
+        }
+
+        // новый файл назначения (видео → аудио → слияние): счётчики сторожа заново
+        if (VideoDownloadManager.savedPathFrom(line) != null) tracker.phase();
+        tracker.output(line);
+    }
+
+    private void forward(String line, Consumer<String> status) {
+        Item item = current;
+        status.accept(item != null ? "[" + item.index + "/" + total + "] " + line : line);
+    }
+
+    /** Служебная строка yt-dlp: «start\tURL» перед загрузкой элемента, «done\tURL\tфайл» после переноса файла. */
+    private void report(String fields) {
+        String[] f = fields.split("\t", 3);
+        Item item = f.length >= 2 ? itemFor(f[1]) : null;
+        if (item == null) {
+            LOGGER.warn("yt-dlp batch #{} reported an unknown item: {}", batchId, fields);
+            return;
+        }
+        if (f[0].equals(STARTED)) {
+            current = item;
+        } else if (f[0].equals(DONE) && f.length == 3) {
+            item.savedFile = Paths.get(f[2]).toAbsolutePath().normalize();
+        }
+    }
+
+    /** Элемент по строке batch-файла; повторы одного URL разбираются по порядку. */
+    private Item itemFor(String url) {
+        String key = url.trim();
+        Item match = null;
+        for (Item i : items) {
+            if (!i.job.getUrl().trim().equals(key)) continue;
+            if (i.savedFile == null) return i;
+            if (match == null) match = i;
+        }
+        return match;
+    }
+
+    /** Переименовать готовые файлы из временных имён пакета в «умные» имена задач. */
+    private void finishItems() {
+        for (Item item : items) {
+            if (!item.succeeded()) continue;
+            Path from = item.savedFile;
+            String name = from.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            String ext = dot > 0 ? name.substring(dot) : "";
+            Path to = from.resolveSibling(item.smartBase + ext);
+            try {
+                Files.move(from, to);
+                item.savedFile = to.toAbsolutePath().normalize();
+            } catch (IOException e) {
+                LOGGER.warn("Cannot rename {} to {}: {}", from, to, e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.videodownloader;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Разобранная строка прогресса yt-dlp (режим --newline), например:
+ * {@code [download]  45.3% of ~ 12.34MiB at 1.23MiB/s ETA 00:05 (frag 12/300)}.
+ * Неизвестные значения равны -1.
+ */
+public record YtDlpProgress(double percent, long totalBytes, long speedBytesPerSec, long etaSeconds, int fragment) {
+
+    private static final Pattern PROGRESS = Pattern.compile(
+            "^\\[download\\]\\s+(\\d+(?:\\.\\d+)?)%\\s+of\\s+~?\\s*(\\d+(?:\\.\\d+)?)([KMGT]?i?B)"
+                    + "(?:.*?\\bat\\s+(\\d+(?:\\.\\d+)?)([KMGT]?i?B)/s)?"
+                    + "(?:.*?\\bETA\\s+(\\d+(?::\\d+)*))?"
+                    + "(?:.*?\\(frag (\\d+)/\\d+\\))?");
+
+    /** Скачано байт (оценка по проценту от общего размера). */
+    public long downloadedBytes() {
+        return totalBytes < 0 ? -1 : (long) (totalBytes * percent / 100.0);
+    }
+
+    /** Возвращает null, если строка не является строкой прогресса. */
+    public static YtDlpProgress parse(String line) {
+        if (line == null || !line.startsWith("[download]")) return null;
+        Matcher m = PROGRESS.matcher(line);
+        if (!m.find()) return null;
+
+        double percent = Double.parseDouble(m.group(1));
+        long total = toBytes(m.group(2), m.group(3));
+        long speed = m.group(4) != null ? toBytes(m.group(4), m.group(5)) : -1;
+        long eta = m.group(6) != null ? parseClock(m.group(6)) : -1;
+        int frag = m.group(7) != null ? Integer.parseInt(m.group(7)) : -1;
+        return new YtDlpProgress(percent, total, speed, eta, frag);
+    }
+
+    static long toBytes(String number, String unit) {
+        double v = Double.parseDouble(number);
+        double mul = switch (unit) {
+            case "KiB" -> 1024d;
+            case "MiB" -> 1024d * 1024;
+            case "GiB" -> 1024d * 1024 * 1024;
+            case "TiB" -> 1024d * 1024 * 1024 * 1024;
+            case "KB" -> 1e3;
+            case "MB" -> 1e6;
+            case "GB" -> 1e9;
+            case "TB" -> 1e12;
+            default -> 1d;
+        };
+        return (long) (v * mul);
+    }
+
+    /** "01:02:03" → 3723 секунды. */
+    private static long parseClock(String s) {
+        long total = 0;
+        for (String part : s.split(":")) {
+            total = total * 60 + Long.parseLong(part);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,148 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChannelSyncTest {
+    /** Условный запрос сюда не проходит (соединение отклонено) — решает листинг. */
+    private static final ChannelSync.Source SOURCE = new ChannelSync.Source("http://127.0.0.1:9/channel", null);
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void testReadSources() throws Exception {
+        Path file = tmp.resolve("sources.txt");
+        Files.writeString(file, """
+                # ночное зеркало
+                https://www.youtube.com/@somechannel/videos night
+
+                https://vimeo.com/showcase/42
+                """);
+        List<ChannelSync.Source> sources = ChannelSync.readSources(file);
+        assertEquals(List.of(
+                new ChannelSync.Source("https://www.youtube.com/@somechannel/videos", "night"),
+                new ChannelSync.Source("https://vimeo.com/showcase/42", null)), sources);
+        assertTrue(ChannelSync.readSources(tmp.resolve("missing.txt")).isEmpty());
+    }
+
+    @Test
+    public void testStateSurvivesCommit() throws Exception {
+        ChannelSync sync = new ChannelSync(tmp.resolve("sync"), HttpClient.newHttpClient(), "test");
+        ChannelSync.Source source = new ChannelSync.Source("https://example.com/channel/abc", null);
+        ChannelSync.State state = sync.load(source.url());
+        assertNull(state.cursor);
+
+        state.etag = "\"v1\"";
+        state.cursor = "id3";
+        state.seen.addAll(List.of("id1", "id2", "id3"));
+        sync.commit(new ChannelSync.Result(source, List.of(), false, false, state));
+
+        ChannelSync.State loaded = sync.load(source.url());
+        assertEquals("\"v1\"", loaded.etag);
+        assertNull(loaded.lastModified);
+        assertEquals("id3", loaded.cursor);
+        assertEquals(List.of("id1", "id2", "id3"), List.copyOf(loaded.seen));
+    }
+
+    @Test
+    public void testListingStopsAtCursor() throws Exception {
+        FakeChannel channel = new FakeChannel("v6", "v5", "v4", "v3", "v2", "v1");
+        ChannelSync sync = channel.sync(tmp.resolve("sync"));
+        ChannelSync.State state = sync.load(SOURCE.url());
+        state.cursor = "v3";
+        state.seen.addAll(List.of("v1", "v2", "v3"));
+        sync.commit(new ChannelSync.Result(SOURCE, List.of(), false, false, state));
+
+        ChannelSync.Result r = sync.check(SOURCE, new CancellationToken());
+        assertEquals(List.of("v6", "v5", "v4"), ids(r.fresh()));
+        assertEquals(4, channel.read);
+        assertEquals("v6", r.next().cursor);
+    }
+
+    @Test
+    public void testListingStopsAfterKnownRun() throws Exception {
+        // курсор потерян (ролик удалён), но подряд идут уже виденные — дальше не читаем
+        FakeChannel channel = new FakeChannel("new", "s1", "s2", "s3", "s4", "s5", "older", "s6");
+        ChannelSync sync = channel.sync(tmp.resolve("sync"));
+        ChannelSync.State state = sync.load(SOURCE.url());
+        state.cursor = "deleted";
+        state.seen.addAll(List.of("s1", "s2", "s3", "s4", "s5", "s6"));
+        sync.commit(new ChannelSync.Result(SOURCE, List.of(), false, false, state));
+
+        ChannelSync.Result r = sync.check(SOURCE, new CancellationToken());
+        assertEquals(List.of("new"), ids(r.fresh()));
+        assertEquals(1 + ChannelSync.KNOWN_RUN, channel.read);
+    }
+
+    @Test
+    public void testIncompleteListingKeepsCursorAndBackfills() throws Exception {
+        FakeChannel channel = new FakeChannel(IntStream.rangeClosed(1, 12).mapToObj(i -> "v" + (13 - i))
+                .toArray(String[]::new));
+        ChannelSync sync = channel.sync(tmp.resolve("sync"));
+
+        // первый полный обход канала оборвался на шестом ролике
+        channel.available = 6;
+        ChannelSync.Result first = sync.check(SOURCE, new CancellationToken());
+        assertEquals(List.of("v12", "v11", "v10", "v9", "v8", "v7"), ids(first.fresh()));
+        assertNull(first.next().cursor);
+        sync.commit(first);
+        assertTrue(sync.load(SOURCE.url()).backfill);
+
+        // следующий проход идёт мимо шести виденных подряд и добирает старые ролики
+        channel.available = Integer.MAX_VALUE;
+        ChannelSync.Result second = sync.check(SOURCE, new CancellationToken());
+        assertEquals(List.of("v6", "v5", "v4", "v3", "v2", "v1"), ids(second.fresh()));
+        assertEquals("v12", second.next().cursor);
+        sync.commit(second);
+        assertFalse(sync.load(SOURCE.url()).backfill);
+
+        // дальше — снова до курсора
+        channel.entries.addFirst("v13");
+        ChannelSync.Result third = sync.check(SOURCE, new CancellationToken());
+        assertEquals(List.of("v13"), ids(third.fresh()));
+        assertEquals(2, channel.read);
+    }
+
+    private static List<String> ids(List<PlaylistExpander.Entry> entries) {
+        return entries.stream().map(PlaylistExpander.Entry::id).toList();
+    }
+
+    /** Листинг канала без yt-dlp: ролики от новых к старым, обрыв после available элементов. */
+    private static final class FakeChannel {
+        final List<String> entries;
+        int available = Integer.MAX_VALUE;
+        int read;
+
+        FakeChannel(String... ids) {
+            entries = new ArrayList<>(List.of(ids));
+        }
+
+        ChannelSync sync(Path dir) {
+            return new ChannelSync(dir, HttpClient.newHttpClient(), "test", (url, token, stopAt) -> {
+                read = 0;
+                List<PlaylistExpander.Entry> out = new ArrayList<>();
+                for (String id : entries) {
+                    if (read == available) return new PlaylistExpander.Listing(out, false);
+                    read++;
+                    PlaylistExpander.Entry e = new PlaylistExpander.Entry("https://example.com/v/" + id, null, id);
+                    if (stopAt.test(e)) return new PlaylistExpander.Listing(out, true);
+                    out.add(e);
+                }
+                return new PlaylistExpander.Listing(out, true);
+            });
+        }
+    }
+}
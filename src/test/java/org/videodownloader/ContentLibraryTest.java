@@ -0,0 +1,83 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContentLibraryTest {
+
+    @TempDir
+    Path tmp;
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void testStreamingFingerprintMatchesFileOnDisk() throws Exception {
+        byte[] data = randomBytes(300_000, 1);
+        Path file = tmp.resolve("a.bin");
+        HashingOutputStream out = new HashingOutputStream(Files.newOutputStream(file));
+        try (OutputStream o = out) {
+            // кусками разного размера, чтобы проверить кольцо хвоста
+            int pos = 0;
+            int[] sizes = {1, 70_000, 17, 100_000, 5};
+            for (int i = 0; pos < data.length; i++) {
+                int n = Math.min(sizes[i % sizes.length], data.length - pos);
+                o.write(data, pos, n);
+                pos += n;
+            }
+        }
+        assertEquals(ContentLibrary.partialKey(file), out.fingerprint().partial());
+        assertEquals(ContentLibrary.fullHash(file), out.fingerprint().full());
+        assertEquals(data.length, out.fingerprint().size());
+    }
+
+    @Test
+    public void testDuplicateIsReplacedByHardLink() throws Exception {
+        ContentLibrary library = new ContentLibrary(tmp.resolve("library.idx"));
+        byte[] data = randomBytes(200_000, 2);
+        Path first = Files.write(tmp.resolve("first.mp4"), data);
+        Path second = Files.write(tmp.resolve("second.mp4"), data);
+
+        assertEquals(first, library.deduplicate(first, ContentLibrary.Mode.LINK));
+        assertEquals(second, library.deduplicate(second, ContentLibrary.Mode.LINK));
+        assertTrue(Files.isSameFile(first, second));
+    }
+
+    @Test
+    public void testSameEdgesDifferentMiddleIsKept() throws Exception {
+        ContentLibrary library = new ContentLibrary(tmp.resolve("library.idx"));
+        byte[] data = randomBytes(400_000, 3);
+        Path first = Files.write(tmp.resolve("first.mp4"), data);
+        data[200_000] ^= 1;   // середина отличается, края и размер совпадают
+        Path second = Files.write(tmp.resolve("second.mp4"), data);
+
+        library.deduplicate(first, ContentLibrary.Mode.DELETE);
+        assertEquals(second, library.deduplicate(second, ContentLibrary.Mode.DELETE));
+        assertTrue(Files.exists(second));
+        assertFalse(Files.isSameFile(first, second));
+    }
+
+    @Test
+    public void testDeleteModeReturnsOriginalAcrossReload() throws Exception {
+        byte[] data = randomBytes(1_000, 4);
+        Path first = Files.write(tmp.resolve("first.mp4"), data);
+        new ContentLibrary(tmp.resolve("library.idx")).deduplicate(first, ContentLibrary.Mode.DELETE);
+
+        Path second = Files.write(tmp.resolve("second.mp4"), data);
+        ContentLibrary reloaded = new ContentLibrary(tmp.resolve("library.idx"));
+        assertEquals(first, reloaded.deduplicate(second, ContentLibrary.Mode.DELETE));
+        assertFalse(Files.exists(second));
+    }
+}
@@ -0,0 +1,82 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DownloadHistoryTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void testFindByPageAndMediaUrl() throws Exception {
+        try (DownloadHistory h = new DownloadHistory(tmp.resolve("history.log"))) {
+            h.record("https://www.example.com/watch?v=1", "https://cdn.example.com/1.m3u8", tmp.resolve("a.mp4"));
+
+            assertTrue(h.find("https://www.example.com/watch?v=1").isPresent());
+            assertTrue(h.find("https://cdn.example.com/1.m3u8").isPresent());
+            assertFalse(h.find("https://www.example.com/watch?v=2").isPresent());
+        }
+    }
+
+    @Test
+    public void testNormalizationIgnoresTrackingAndCosmetics() throws Exception {
+        try (DownloadHistory h = new DownloadHistory(tmp.resolve("history.log"))) {
+            h.record("https://www.example.com/video/42/?b=2&a=1", null, tmp.resolve("a.mp4"));
+
+            assertTrue(h.find("http://EXAMPLE.com/video/42?a=1&b=2&utm_source=x#t=10").isPresent());
+            assertFalse(h.find("https://example.com/video/42?a=1&b=3").isPresent());
+        }
+    }
+
+    @Test
+    public void testReloadAndLatestEntryWins() throws Exception {
+        Path log = tmp.resolve("history.log");
+        try (DownloadHistory h = new DownloadHistory(log)) {
+            h.record("https://example.com/v", null, tmp.resolve("old.mp4"));
+            h.record("https://example.com/v", null, tmp.resolve("new.mp4"));
+        }
+        // имитация обрыва записи: хвост без перевода строки
+        Files.writeString(log, Files.readString(log) + "123\thttps://exa");
+
+        try (DownloadHistory h = new DownloadHistory(log)) {
+            assertEquals(tmp.resolve("new.mp4").toAbsolutePath().normalize(),
+                    h.find("https://example.com/v").orElseThrow().file());
+            h.record("https://example.com/w", null, tmp.resolve("w.mp4"));
+            assertTrue(h.find("https://example.com/w").isPresent());
+        }
+    }
+
+    @Test
+    public void testMalformedRecordIsAMiss() throws Exception {
+        Path log = tmp.resolve("history.log");
+        Files.writeString(log, "yesterday\thttps://example.com/bad\t-\tbad.mp4\n"
+                + "1\thttps://example.com/nul\t-\tbad\u0000.mp4\n");
+
+        try (DownloadHistory h = new DownloadHistory(log)) {
+            assertFalse(h.find("https://example.com/bad").isPresent());
+            assertFalse(h.find("https://example.com/nul").isPresent());
+            h.record("https://example.com/bad", null, tmp.resolve("good.mp4"));
+            assertTrue(h.find("https://example.com/bad").isPresent());
+        }
+    }
+
+    @Test
+    public void testManyEntries() throws Exception {
+        try (DownloadHistory h = new DownloadHistory(tmp.resolve("history.log"))) {
+            for (int i = 0; i < 100_000; i++) {
+                h.record("https://example.com/v/" + i, null, tmp.resolve(i + ".mp4"));
+            }
+            assertTrue(h.find("https://example.com/v/99999").isPresent());
+            assertFalse(h.find("https://example.com/v/100000").isPresent());
+            assertEquals(100_000, h.size());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DownloadWindowTest {
+
+    // 2025-01-06 — понедельник
+    private static ZonedDateTime at(int day, int hour, int minute) {
+        return LocalDateTime.of(2025, 1, 6 + day, hour, minute).atZone(ZoneId.systemDefault());
+    }
+
+    @Test
+    public void testOvernightRuleAndWeekend() {
+        DownloadWindow w = DownloadWindow.parse("night", "Mon-Fri 22:00-07:00, Sat-Sun; rate=8M; jobs=2");
+
+        assertTrue(w.isOpen(at(0, 23, 0)));    // пн вечер
+        assertTrue(w.isOpen(at(1, 6, 59)));    // вт утро — хвост понедельника
+        assertFalse(w.isOpen(at(1, 7, 0)));
+        assertFalse(w.isOpen(at(2, 12, 0)));   // ср день
+        assertTrue(w.isOpen(at(5, 12, 0)));    // сб весь день
+        assertFalse(w.isOpen(at(7, 3, 0)));    // пн 03:00: воскресенье — ровно сутки, а у пн интервал с 22:00
+        assertEquals(8L * 1024 * 1024, w.rateBytesPerSec());
+        assertEquals(4L * 1024 * 1024, w.perJobRate());
+        assertEquals(2, w.maxJobs());
+    }
+
+    @Test
+    public void testRateWithoutJobsIsSharedByAllSlots() {
+        String previous = System.getProperty("videodownloader.maxConcurrentJobs");
+        System.setProperty("videodownloader.maxConcurrentJobs", "4");
+        try {
+            // без jobs в окне качаются все слоты очереди — вместе не быстрее rate
+            assertEquals(2L * 1024 * 1024, DownloadWindow.parse("night", "22:00-07:00; rate=8M").perJobRate());
+            // jobs больше общего предела очереди столько загрузок не даст
+            assertEquals(2L * 1024 * 1024, DownloadWindow.parse("night", "22:00-07:00; rate=8M; jobs=8").perJobRate());
+            assertEquals(-1, DownloadWindow.parse("night", "22:00-07:00; jobs=2").perJobRate());
+        } finally {
+            if (previous == null) System.clearProperty("videodownloader.maxConcurrentJobs");
+            else System.setProperty("videodownloader.maxConcurrentJobs", previous);
+        }
+    }
+
+    @Test
+    public void testBadSpec() {
+        assertThrows(IllegalArgumentException.class, () -> DownloadWindow.parse("x", "Funday 10:00-11:00"));
+        assertThrows(IllegalArgumentException.class, () -> DownloadWindow.parse("x", "Mon 25:00-26:00"));
+        assertThrows(IllegalArgumentException.class, () -> DownloadWindow.parse("x", "Mon; speed=1M"));
+    }
+
+    @Test
+    public void testSchedulerHonoursWindow() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        AtomicLong clock = new AtomicLong(at(2, 12, 0).toInstant().toEpochMilli());   // ср, день
+        try {
+            JobScheduler scheduler = new JobScheduler(2, 2, Duration.ofMinutes(10), Duration.ofMinutes(15),
+                    executor, clock::get, null);
+            DownloadJob job = new DownloadJob("https://example.com/archive", Path.of("."));
+            job.setWindow(DownloadWindow.parse("night", "22:00-07:00"));
+            scheduler.submit(List.of(job), () -> {
+                while (!job.isPauseRequested()) Thread.onSpinWait();
+            });
+            assertEquals(1, scheduler.pendingCount());
+
+            clock.set(at(2, 22, 30).toInstant().toEpochMilli());
+            scheduler.tick();
+            assertEquals(1, scheduler.runningCount());
+
+            clock.set(at(3, 7, 5).toInstant().toEpochMilli());
+            scheduler.tick();
+            assertTrue(job.isPauseRequested());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.videodownloader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Локальный «видеосайт» для нагрузочного теста (только 127.0.0.1):
+ * <ul>
+ *   <li>{@code /watch/<id>} — страница с og:title и ссылкой на медиа; {@code /watch/hls-<id>} — то же для HLS;
+ *       {@code /watch/embed-<id>} — страница без медиа, только с iframe на {@code /watch/<id>};</li>
+ *   <li>{@code /media/<id>.mp4} — синтетический файл с поддержкой Range (для докачки);</li>
+ *   <li>{@code /hls/<id>/index.m3u8} и {@code /hls/<id>/<n>.ts} — завершённый (VOD) плейлист и сегменты.</li>
+ * </ul>
+ * Задержка перед ответом, предел скорости на соединение и внесённые сбои (503 или обрыв посреди тела)
+ * задаются {@link Options}. Сбои выбираются генератором с фиксированным зерном, содержимое файла зависит
+ * только от id — прогоны повторяемы, а разные ролики не совпадают побайтно (дедупликация их не склеит).
+ */
+final class FakeMediaServer implements AutoCloseable {
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+    private static final Pattern MEDIA = Pattern.compile("^/media/([\\w-]+)\\.mp4$");
+    private static final Pattern SEGMENT = Pattern.compile("^/hls/([\\w-]+)/(\\d+)\\.ts$");
+    private static final Pattern PLAYLIST = Pattern.compile("^/hls/([\\w-]+)/index\\.m3u8$");
+    private static final int CHUNK = 16 * 1024;
+
+    /**
+     * @param mediaBytes     размер каждого ролика
+     * @param hlsSegments    на сколько сегментов делится HLS-ролик
+     * @param latency        задержка перед каждым ответом (время до первого байта)
+     * @param bytesPerSecond предел скорости одного соединения; 0 — без предела
+     * @param failureRate    доля медиа-запросов со сбоем (0…1)
+     * @param seed           зерно выбора сбоев
+     */
+    record Options(long mediaBytes, int hlsSegments, Duration latency, long bytesPerSecond, double failureRate,
+                   long seed) {
+        static Options defaults() {
+            return new Options(4L << 20, 8, Duration.ofMillis(20), 0, 0, 42);
+        }
+    }
+
+    private final Options options;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final SplittableRandom random;
+
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong bytesServed = new AtomicLong();
+    final AtomicLong failuresInjected = new AtomicLong();
+
+    FakeMediaServer(Options options) throws IOException {
+        this.options = options;
+        this.random = new SplittableRandom(options.seed());
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Адрес страницы ролика; hls — ролик раздаётся HLS-плейлистом. */
+    String pageUrl(int id, boolean hls) {
+        return baseUrl() + "/watch/" + (hls ? "hls-" : "") + id;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** Байт ролика id по смещению: начало похоже на MP4 (ftyp), дальше — шум, зависящий от id. */
+    static byte byteAt(String id, long offset) {
+        if (offset < 8) return (byte) "\0\0\0\u0018ftyp".charAt((int) offset);
+        long x = id.hashCode() * 0x9E3779B97F4A7C15L + (offset >>> 3);
+        x ^= x >>> 33;
+        x *= 0xFF51AFD7ED558CCDL;
+        x ^= x >>> 33;
+        return (byte) (x >>> ((offset & 7) * 8));
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            requests.incrementAndGet();
+            sleep(options.latency().toMillis());
+            String path = ex.getRequestURI().getPath();
+            boolean head = ex.getRequestMethod().equals("HEAD");
+            Matcher m;
+            if (path.startsWith("/watch/")) {
+                page(ex, path.substring("/watch/".length()), head);
+            } else if ((m = MEDIA.matcher(path)).matches()) {
+                media(ex, m.group(1), 0, options.mediaBytes(), head);
+            } else if ((m = PLAYLIST.matcher(path)).matches()) {
+                playlist(ex, m.group(1), head);
+            } else if ((m = SEGMENT.matcher(path)).matches()) {
+                int n = Integer.parseInt(m.group(2));
+                long size = segmentSize();
+                if (n >= options.hlsSegments()) {
+                    ex.sendResponseHeaders(404, -1);
+                    return;
+                }
+                media(ex, m.group(1), n * size, Math.min(size, options.mediaBytes() - n * size), head);
+            } else {
+                ex.sendResponseHeaders(404, -1);
+            }
+        } catch (IOException e) {
+            // клиент оборвал соединение (отмена, докачка с другого места) — обычное дело
+        }
+    }
+
+    private long segmentSize() {
+        return (options.mediaBytes() + options.hlsSegments() - 1) / options.hlsSegments();
+    }
+
+    private void page(HttpExchange ex, String id, boolean head) throws IOException {
+        if (id.startsWith("embed-")) {
+            send(ex, "text/html; charset=utf-8", "<!DOCTYPE html><html><head><title>Embed — Fake Tube</title></head>"
+                    + "<body><iframe src=\"/watch/" + id.substring("embed-".length()) + "\"></iframe></body></html>", head);
+            return;
+        }
+        boolean hls = id.startsWith("hls-");
+        String media = hls ? "/hls/" + id + "/index.m3u8" : "/media/" + id + ".mp4";
+        String html = "<!DOCTYPE html><html><head><title>Load test " + id + " — Fake Tube</title>"
+                + "<meta property=\"og:title\" content=\"Load test video " + id + "\"></head>"
+                + "<body><video src=\"" + media + "\" data-size=\"" + options.mediaBytes() + "\"></video></body></html>";
+        send(ex, "text/html; charset=utf-8", html, head);
+    }
+
+    private void playlist(HttpExchange ex, String id, boolean head) throws IOException {
+        StringBuilder sb = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:4\n#EXT-X-MEDIA-SEQUENCE:0\n");
+        for (int n = 0; n < options.hlsSegments(); n++) {
+            sb.append("#EXTINF:4.0,\n").append(n).append(".ts\n");
+        }
+        sb.append("#EXT-X-ENDLIST\n");
+        send(ex, "application/vnd.apple.mpegurl", sb.toString(), head);
+    }
+
+    private static void send(HttpExchange ex, String type, String body, boolean head) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", type);
+        ex.sendResponseHeaders(200, head ? -1 : bytes.length);
+        if (!head) ex.getResponseBody().write(bytes);
+    }
+
+    /** Участок [start, start+length) ролика id с учётом Range, скорости и сбоев. */
+    private void media(HttpExchange ex, String id, long start, long length, boolean head) throws IOException {
+        long from = 0;
+        long to = length - 1;
+        String range = ex.getRequestHeaders().getFirst("Range");
+        boolean partial = false;
+        if (range != null) {
+            Matcher m = RANGE.matcher(range.trim());
+            if (!m.matches() || (m.group(1).isEmpty() && m.group(2).isEmpty())) {
+                ex.sendResponseHeaders(416, -1);
+                return;
+            }
+            if (m.group(1).isEmpty()) {
+                from = Math.max(0, length - Long.parseLong(m.group(2)));
+            } else {
+                from = Long.parseLong(m.group(1));
+                if (!m.group(2).isEmpty()) to = Math.min(to, Long.parseLong(m.group(2)));
+            }
+            if (from > to) {
+                ex.getResponseHeaders().set("Content-Range", "bytes */" + length);
+                ex.sendResponseHeaders(416, -1);
+                return;
+            }
+            partial = true;
+        }
+        ex.getResponseHeaders().set("Content-Type", "video/mp4");
+        ex.getResponseHeaders().set("Accept-Ranges", "bytes");
+        if (partial) ex.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + length);
+
+        int failure = head ? 0 : failure();
+        if (failure == 1) {
+            ex.getResponseHeaders().set("Retry-After", "1");
+            ex.sendResponseHeaders(503, -1);
+            return;
+        }
+        long count = to - from + 1;
+        ex.sendResponseHeaders(partial ? 206 : 200, head ? -1 : count);
+        if (head) return;
+        // обрыв — примерно на середине тела
+        long cutAt = failure == 2 ? count / 2 : Long.MAX_VALUE;
+
+        OutputStream out = ex.getResponseBody();
+        byte[] buf = new byte[CHUNK];
+        long sent = 0;
+        long began = System.nanoTime();
+        while (sent < count) {
+            int n = (int) Math.min(buf.length, count - sent);
+            for (int i = 0; i < n; i++) buf[i] = byteAt(id, start + from + sent + i);
+            if (sent + n > cutAt) throw new IOException("injected connection reset");
+            out.write(buf, 0, n);
+            sent += n;
+            bytesServed.addAndGet(n);
+            throttle(began, sent);
+        }
+    }
+
+    /** 0 — без сбоя, 1 — 503, 2 — обрыв посреди тела. */
+    private int failure() {
+        double r;
+        synchronized (random) {
+            r = random.nextDouble();
+        }
+        if (r >= options.failureRate()) return 0;
+        failuresInjected.incrementAndGet();
+        return r < options.failureRate() / 2 ? 1 : 2;
+    }
+
+    /** Пауза, чтобы соединение не обгоняло bytesPerSecond. */
+    private void throttle(long beganNanos, long sent) {
+        if (options.bytesPerSecond() <= 0) return;
+        long dueNanos = sent * 1_000_000_000L / options.bytesPerSecond();
+        sleep((dueNanos - (System.nanoTime() - beganNanos)) / 1_000_000);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
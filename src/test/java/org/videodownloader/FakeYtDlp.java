@@ -0,0 +1,341 @@
+package org.videodownloader;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Заглушка yt-dlp для нагрузочного теста: понимает те аргументы, с которыми её запускает приложение, качает
+ * с {@link FakeMediaServer} и пишет вывод в формате настоящего yt-dlp (--newline): Extracting URL (длинные URL
+ * укорочены, встроенный плеер — отдельной строкой со своим адресом), Destination, строки прогресса с фрагментами,
+ * ошибки с повторами, «has already been downloaded».
+ * <ul>
+ *   <li>{@code --simulate --print …} — размер ролика;</li>
+ *   <li>{@code --flat-playlist --print …} — одна строка «url, заголовок, id»;</li>
+ *   <li>иначе — загрузка URL из аргументов и {@code --batch-file} в шаблон {@code -o} через .part с докачкой,
+ *       {@code --retries}/{@code --fragment-retries}, {@code --limit-rate}; {@code --print before_dl:…}
+ *       и {@code --print after_move:…} с полями original_url, filepath, id.</li>
+ * </ul>
+ * Запускается через обёртку, которую пишет {@link LoadTestHarness#writeYtDlpWrapper}.
+ */
+public final class FakeYtDlp {
+    /** Опции со значением; остальные, начинающиеся с «-», — флаги. */
+    private static final Set<String> WITH_VALUE = Set.of("-o", "--output", "--batch-file", "-a", "--print",
+            "--limit-rate", "-r", "--concurrent-fragments", "-N", "--buffer-size", "--http-chunk-size", "--retries",
+            "--fragment-retries", "--retry-sleep", "--user-agent");
+    private static final Pattern MEDIA_SRC = Pattern.compile("<video src=\"([^\"]+)\"(?: data-size=\"(\\d+)\")?");
+    private static final Pattern IFRAME_SRC = Pattern.compile("<iframe src=\"([^\"]+)\"");
+    private static final long PROGRESS_EVERY_NANOS = 200_000_000L;
+    private static final int RETRY_SLEEP_MILLIS = 200;
+
+    private final PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final List<String> urls = new ArrayList<>();
+    private final List<String> beforeDownload = new ArrayList<>();
+    private final List<String> afterMove = new ArrayList<>();
+    private String template = "%(title)s.%(ext)s";
+    private boolean simulate;
+    private boolean flat;
+    private boolean resume;
+    private int retries = 10;
+    private int fragmentRetries = 10;
+    private long limitRate;
+
+    public static void main(String[] args) {
+        FakeYtDlp ytDlp = new FakeYtDlp();
+        int exit;
+        try {
+            ytDlp.parse(args);
+            exit = ytDlp.run();
+        } catch (Exception e) {
+            ytDlp.out.println("ERROR: " + e);
+            exit = 2;
+        }
+        System.exit(exit);
+    }
+
+    private void parse(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if (!a.startsWith("-") || a.equals("-")) {
+                urls.add(a);
+                continue;
+            }
+            String value = WITH_VALUE.contains(a) && i + 1 < args.length ? args[++i] : null;
+            switch (a) {
+                case "-o", "--output" -> template = value;
+                case "--batch-file", "-a" -> {
+                    for (String line : Files.readAllLines(Path.of(value), StandardCharsets.UTF_8)) {
+                        if (!line.isBlank() && !line.startsWith("#")) urls.add(line.trim());
+                    }
+                }
+                case "--print" -> {
+                    if (value.startsWith("before_dl:")) beforeDownload.add(value.substring("before_dl:".length()));
+                    if (value.startsWith("after_move:")) afterMove.add(value.substring("after_move:".length()));
+                }
+                case "--simulate", "-s" -> simulate = true;
+                case "--flat-playlist" -> flat = true;
+                case "--continue", "-c" -> resume = true;
+                case "--retries", "-R" -> retries = Integer.parseInt(value);
+                case "--fragment-retries" -> fragmentRetries = Integer.parseInt(value);
+                case "--limit-rate", "-r" -> limitRate = parseRate(value);
+                default -> { /* остальное заглушке не важно */ }
+            }
+        }
+    }
+
+    /** «50K», «4.2M», «1000» → байт в секунду. */
+    static long parseRate(String s) {
+        char unit = Character.toUpperCase(s.charAt(s.length() - 1));
+        double mul = switch (unit) {
+            case 'K' -> 1024d;
+            case 'M' -> 1024d * 1024;
+            case 'G' -> 1024d * 1024 * 1024;
+            default -> 1d;
+        };
+        String number = Character.isDigit(unit) ? s : s.substring(0, s.length() - 1);
+        return (long) (Double.parseDouble(number) * mul);
+    }
+
+    private int run() {
+        int failed = 0;
+        for (String url : urls) {
+            try {
+                if (flat) {
+                    out.println(url + "\t" + idOf(url) + "\t" + idOf(url));
+                } else if (simulate) {
+                    Media media = resolve(url);
+                    out.println(media.size() > 0 && !media.hls() ? Long.toString(media.size()) : "NA");
+                } else {
+                    download(url);
+                }
+            } catch (IOException e) {
+                out.println("ERROR: [generic] " + idOf(url) + ": " + e.getMessage());
+                failed++;
+            } catch (InterruptedException e) {
+                return 1;
+            }
+        }
+        return failed == 0 ? 0 : 1;
+    }
+
+    private record Media(String id, URI uri, long size, boolean hls) {}
+
+    private static String idOf(String url) {
+        String path = URI.create(url).getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /** Страница → адрес медиа и размер (как извлечение generic-экстрактором). */
+    private Media resolve(String url) throws IOException, InterruptedException {
+        String id = idOf(url);
+        if (!simulate) out.println("[generic] " + id + ": Downloading webpage");
+        HttpResponse<String> page = http.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (page.statusCode() >= 400) throw new IOException("Unable to download webpage: HTTP Error " + page.statusCode());
+        Matcher m = MEDIA_SRC.matcher(page.body());
+        if (!m.find()) {
+            // встроенный плеер: yt-dlp передаёт извлечение его странице и печатает уже её адрес
+            Matcher embed = IFRAME_SRC.matcher(page.body());
+            if (!embed.find()) throw new IOException("Unsupported URL: " + url);
+            String target = URI.create(url).resolve(embed.group(1)).toString();
+            out.println("[generic] Extracting URL: " + shortened(target));
+            return resolve(target);
+        }
+        URI media = URI.create(url).resolve(m.group(1));
+        long size = m.group(2) != null ? Long.parseLong(m.group(2)) : -1;
+        return new Media(id, media, size, media.getPath().endsWith(".m3u8"));
+    }
+
+    /** Как в yt-dlp без --verbose: длинный URL в «Extracting URL» укорачивается (truncate_string(url, 100, 20)). */
+    static String shortened(String url) {
+        return url.length() <= 120 ? url : url.substring(0, 97) + "..." + url.substring(url.length() - 20);
+    }
+
+    private void print(List<String> templates, String url, Media media, Path file) {
+        for (String t : templates) {
+            out.println(t.replace("%(original_url)s", url).replace("%(id)s", media.id())
+                    .replace("%(filepath)s", file == null ? "NA" : file.toString()));
+        }
+    }
+
+    private void download(String url) throws IOException, InterruptedException {
+        out.println("[generic] Extracting URL: " + shortened(url));
+        Media media = resolve(url);
+        if (media.hls()) out.println("[generic] " + media.id() + ": Downloading m3u8 information");
+        out.println("[info] " + media.id() + ": Downloading 1 format(s): " + (media.hls() ? "hls-720p" : "mp4"));
+
+        Path target = Path.of(template.replace("%(title)s", media.id()).replace("%(id)s", media.id())
+                .replace("%(extractor_key)s", "Generic").replace("%(ext)s", "mp4")).toAbsolutePath();
+        print(beforeDownload, url, media, null);
+        if (Files.isRegularFile(target)) {
+            out.println("[download] " + target + " has already been downloaded");
+            print(afterMove, url, media, target);
+            return;
+        }
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        long started = System.nanoTime();
+        if (media.hls()) {
+            downloadHls(media, target, part);
+        } else {
+            out.println("[download] Destination: " + target);
+            downloadFile(media, part);
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        long size = Files.size(target);
+        double seconds = Math.max(0.001, (System.nanoTime() - started) / 1e9);
+        out.println(String.format(Locale.ROOT, "[download] 100%% of %10s in %s at %s/s",
+                bytes(size), clock((long) seconds), bytes((long) (size / seconds))));
+        print(afterMove, url, media, target);
+    }
+
+    /** Один файл с докачкой .part и повторами при 503 и обрывах. */
+    private void downloadFile(Media media, Path part) throws IOException, InterruptedException {
+        if (!resume) Files.deleteIfExists(part);
+        Progress progress = new Progress(media.size(), -1);
+        for (int attempt = 0; ; attempt++) {
+            long have = Files.exists(part) ? Files.size(part) : 0;
+            if (media.size() > 0 && have >= media.size()) return;
+            try {
+                progress.done = have;
+                fetch(media.uri(), have, part, progress);
+                return;
+            } catch (IOException e) {
+                if (attempt >= retries) throw new IOException("unable to download video data: " + e.getMessage(), e);
+                out.println("[download] Got error: " + e.getMessage() + ". Retrying (" + (attempt + 1) + "/" + retries + ")...");
+                Thread.sleep(RETRY_SLEEP_MILLIS);
+            }
+        }
+    }
+
+    /** VOD-плейлист: сегменты по порядку в один файл; строки прогресса с номером фрагмента. */
+    private void downloadHls(Media media, Path target, Path part) throws IOException, InterruptedException {
+        out.println("[hlsnative] Downloading m3u8 manifest");
+        HttpResponse<String> playlist = http.send(HttpRequest.newBuilder(media.uri()).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (playlist.statusCode() >= 400) throw new IOException("HTTP Error " + playlist.statusCode());
+        List<URI> segments = new ArrayList<>();
+        for (String line : playlist.body().split("\n")) {
+            if (!line.isBlank() && !line.startsWith("#")) segments.add(media.uri().resolve(line.trim()));
+        }
+        out.println("[hlsnative] Total fragments: " + segments.size());
+        out.println("[download] Destination: " + target);
+        Files.deleteIfExists(part);
+        Progress progress = new Progress(media.size(), segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            progress.fragment = i + 1;
+            long before = Files.exists(part) ? Files.size(part) : 0;
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    progress.done = before;
+                    fetch(segments.get(i), -1, part, progress);
+                    break;
+                } catch (IOException e) {
+                    // недописанный сегмент отрезаем, чтобы повтор лёг на его место
+                    try (var ch = Files.newByteChannel(part, StandardOpenOption.WRITE)) {
+                        ch.truncate(before);
+                    }
+                    if (attempt >= fragmentRetries) throw new IOException("fragment " + (i + 1) + " not found, unable to continue");
+                    out.println("[download] Got error: " + e.getMessage() + ". Retrying fragment " + (i + 1)
+                            + " (" + (attempt + 1) + "/" + fragmentRetries + ")...");
+                    Thread.sleep(RETRY_SLEEP_MILLIS);
+                }
+            }
+        }
+    }
+
+    /** GET (с Range, если from ≥ 0 и не с начала) с дописыванием в файл. */
+    private void fetch(URI uri, long from, Path file, Progress progress) throws IOException, InterruptedException {
+        HttpRequest.Builder req = HttpRequest.newBuilder(uri);
+        if (from > 0) req.header("Range", "bytes=" + from + "-");
+        HttpResponse<InputStream> resp = http.send(req.build(), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream in = resp.body()) {
+            int code = resp.statusCode();
+            if (code >= 400) throw new IOException("HTTP Error " + code + (code == 503 ? ": Service Unavailable" : ""));
+            // сервер без Range прислал всё заново — пишем с начала
+            boolean append = from > 0 && code == 206;
+            if (from > 0 && !append) progress.done = 0;
+            try (OutputStream sink = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    from < 0 || append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+                byte[] buf = new byte[64 * 1024];
+                long began = System.nanoTime();
+                long read = 0;
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    sink.write(buf, 0, n);
+                    read += n;
+                    progress.add(n);
+                    if (limitRate > 0) {
+                        long due = read * 1_000_000_000L / limitRate - (System.nanoTime() - began);
+                        if (due > 0) Thread.sleep(due / 1_000_000, (int) (due % 1_000_000));
+                    }
+                }
+            }
+        }
+    }
+
+    /** Строки прогресса не чаще раза в PROGRESS_EVERY_NANOS; скорость — по всей загрузке. */
+    private final class Progress {
+        final long total;
+        final int fragments;
+        final long started = System.nanoTime();
+        long done;
+        long added;
+        int fragment;
+        long lastPrinted;
+
+        Progress(long total, int fragments) {
+            this.total = total;
+            this.fragments = fragments;
+        }
+
+        void add(long n) {
+            done += n;
+            added += n;
+            long now = System.nanoTime();
+            if (now - lastPrinted < PROGRESS_EVERY_NANOS && (total <= 0 || done < total)) return;
+            lastPrinted = now;
+            double seconds = Math.max(0.001, (now - started) / 1e9);
+            long speed = (long) (added / seconds);
+            long size = total > 0 ? total : done;
+            double percent = size > 0 ? Math.min(100, done * 100.0 / size) : 0;
+            long eta = speed > 0 ? Math.max(0, (size - done) / speed) : 0;
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "[download] %5.1f%% of %s%10s at %10s/s ETA %s",
+                    percent, fragments > 0 ? "~" : " ", bytes(size), bytes(speed), clock(eta)));
+            if (fragments > 0) line.append(" (frag ").append(fragment).append('/').append(fragments).append(')');
+            out.println(line);
+        }
+    }
+
+    static String bytes(long n) {
+        if (n < 1024) return n + "B";
+        if (n < 1024 * 1024) return String.format(Locale.ROOT, "%.2fKiB", n / 1024.0);
+        if (n < 1024L * 1024 * 1024) return String.format(Locale.ROOT, "%.2fMiB", n / (1024.0 * 1024));
+        return String.format(Locale.ROOT, "%.2fGiB", n / (1024.0 * 1024 * 1024));
+    }
+
+    static String clock(long seconds) {
+        return seconds >= 3600
+                ? String.format(Locale.ROOT, "%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60)
+                : String.format(Locale.ROOT, "%02d:%02d", seconds / 60, seconds % 60);
+    }
+}
@@ -0,0 +1,90 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HostThroughputStatsTest {
+    static final String URL = "https://www.example.com/watch?v=1";
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void testChooseExploresThenPicksFastest() {
+        HostThroughputStats stats = new HostThroughputStats(tmp.resolve("throughput.properties"));
+        // неизвестный хост — параллельные фрагменты
+        assertEquals(PerformanceProfile.BALANCED, stats.choose(URL));
+
+        stats.recordSuccess(URL, PerformanceProfile.BALANCED, 10_000_000, 10_000);
+        // один раз пробуем агрессивный
+        assertEquals(PerformanceProfile.AGGRESSIVE, stats.choose(URL));
+
+        stats.recordSuccess(URL, PerformanceProfile.AGGRESSIVE, 30_000_000, 10_000);
+        assertEquals(PerformanceProfile.AGGRESSIVE, stats.choose("https://example.com/other"));
+
+        stats.recordSuccess(URL, PerformanceProfile.CONSERVATIVE, 50_000_000, 10_000);
+        assertEquals(PerformanceProfile.CONSERVATIVE, stats.choose(URL));
+        // у другого хоста своя история
+        assertEquals(PerformanceProfile.BALANCED, stats.choose("https://other.example.org/v/1"));
+    }
+
+    @Test
+    public void testFailingParallelProfilesFallBackToConservative() {
+        Path file = tmp.resolve("throughput.properties");
+        HostThroughputStats stats = new HostThroughputStats(file);
+        stats.recordSuccess(URL, PerformanceProfile.BALANCED, 10_000_000, 10_000);
+        stats.recordFailure(URL, PerformanceProfile.BALANCED);
+        stats.recordFailure(URL, PerformanceProfile.BALANCED);
+        stats.recordFailure(URL, PerformanceProfile.AGGRESSIVE);
+
+        assertEquals(PerformanceProfile.CONSERVATIVE, stats.choose(URL));
+        // история переживает перезапуск
+        assertEquals(PerformanceProfile.CONSERVATIVE, new HostThroughputStats(file).choose(URL));
+    }
+
+    @Test
+    public void testRejectedProfileIsProbedAgainAndRecovers() {
+        AtomicLong clock = new AtomicLong(1_000_000);
+        HostThroughputStats stats = new HostThroughputStats(tmp.resolve("throughput.properties"), clock::get);
+        stats.recordSuccess(URL, PerformanceProfile.BALANCED, 10_000_000, 10_000);
+        stats.recordFailure(URL, PerformanceProfile.AGGRESSIVE);
+        // одна плохая ночь
+        stats.recordFailure(URL, PerformanceProfile.BALANCED);
+        stats.recordFailure(URL, PerformanceProfile.BALANCED);
+        assertEquals(PerformanceProfile.CONSERVATIVE, stats.choose(URL));
+
+        clock.addAndGet(HostThroughputStats.REPROBE_AFTER.toMillis());
+        // каждый отвергнутый профиль получает по одной пробе, дальше — снова осторожный
+        assertEquals(PerformanceProfile.BALANCED, stats.choose(URL));
+        assertEquals(PerformanceProfile.AGGRESSIVE, stats.choose(URL));
+        assertEquals(PerformanceProfile.CONSERVATIVE, stats.choose(URL));
+
+        // проба удалась — старые сбои перевешены
+        stats.recordSuccess(URL, PerformanceProfile.BALANCED, 10_000_000, 10_000);
+        assertEquals(PerformanceProfile.BALANCED, stats.choose(URL));
+    }
+
+    @Test
+    public void testOnlyTransferFailuresCount() {
+        assertTrue(HostThroughputStats.isTransferFailure(
+                "ERROR: unable to download video data: HTTP Error 503: Service Unavailable"));
+        assertTrue(HostThroughputStats.isTransferFailure("ERROR: The read operation timed out"));
+        assertTrue(HostThroughputStats.isTransferFailure(
+                "[download] Got error: Connection reset by peer\nERROR: Giving up after 10 fragment retries"));
+        assertTrue(HostThroughputStats.isTransferFailure("ERROR: fragment 12 not found, unable to continue"));
+
+        assertFalse(HostThroughputStats.isTransferFailure("ERROR: Unsupported URL: https://example.com/page"));
+        assertFalse(HostThroughputStats.isTransferFailure("ERROR: [generic] 1: Unable to extract video url"));
+        assertFalse(HostThroughputStats.isTransferFailure(
+                "ERROR: [youtube] abc: Video unavailable. This video is private"));
+        assertFalse(HostThroughputStats.isTransferFailure("ERROR: unable to download webpage: HTTP Error 404: Not Found"));
+        assertFalse(HostThroughputStats.isTransferFailure(null));
+    }
+}
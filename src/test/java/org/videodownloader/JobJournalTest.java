@@ -0,0 +1,64 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JobJournalTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void testUnfinishedJobsSurviveReopen() throws Exception {
+        Path wal = tmp.resolve("jobs.wal");
+        DownloadJob done = new DownloadJob("https://example.com/a", tmp);
+        DownloadJob running = new DownloadJob("https://example.com/b", tmp);
+        try (JobJournal j = new JobJournal(wal)) {
+            j.record(done, JobState.QUEUED);
+            j.record(running, JobState.QUEUED);
+            running.setSmartBase("Clip_20250101_000000_abcd1234");
+            j.record(running, JobState.DOWNLOADING);
+            j.record(done, JobState.DONE);
+        }
+
+        try (JobJournal j = new JobJournal(wal)) {
+            List<JobJournal.Entry> unfinished = j.unfinished();
+            assertEquals(1, unfinished.size());
+            JobJournal.Entry e = unfinished.getFirst();
+            assertEquals(running.getId(), e.id());
+            assertEquals(JobState.DOWNLOADING, e.state());
+            assertEquals("Clip_20250101_000000_abcd1234", e.smartBase());
+            assertEquals(tmp.toAbsolutePath().normalize(), e.outputDir());
+            assertTrue(j.maxId() >= done.getId());
+        }
+    }
+
+    @Test
+    public void testTornTailIsSkippedAndCompactionDropsFinished() throws Exception {
+        Path wal = tmp.resolve("jobs.wal");
+        try (JobJournal j = new JobJournal(wal)) {
+            for (int i = 0; i < 10; i++) {
+                DownloadJob job = new DownloadJob("https://example.com/" + i, tmp);
+                j.record(job, JobState.QUEUED);
+                j.record(job, i == 0 ? JobState.RESOLVING : JobState.FAILED);
+            }
+        }
+        // обрыв записи: половина строки без перевода строки
+        String torn = JobJournal.format(new JobJournal.Entry(1, 999, JobState.QUEUED, "https://example.com/x",
+                tmp, null, null, JobPriority.NORMAL, null, null));
+        Files.writeString(wal, Files.readString(wal) + torn.substring(0, torn.length() / 2));
+
+        try (JobJournal j = new JobJournal(wal)) {
+            assertEquals(1, j.unfinished().size());
+            assertEquals(JobState.RESOLVING, j.unfinished().getFirst().state());
+        }
+        assertEquals(1, Files.readAllLines(wal).size());
+    }
+}
@@ -0,0 +1,133 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JobSchedulerTest {
+
+    private static final long MINUTE = 60_000;
+
+    private static JobScheduler.Task task(JobPriority priority, long sizeHint) {
+        DownloadJob job = new DownloadJob("https://example.com/" + priority + sizeHint, Path.of("."));
+        job.setPriority(priority);
+        job.setSizeHint(sizeHint);
+        return new JobScheduler.Task(List.of(job), () -> {});
+    }
+
+    private static List<JobScheduler.Task> sorted(long now, JobScheduler.Task... tasks) {
+        List<JobScheduler.Task> list = new ArrayList<>(List.of(tasks));
+        Comparator<JobScheduler.Task> order = JobScheduler.order(now, 10 * MINUTE, 15 * MINUTE);
+        list.sort(order);
+        return list;
+    }
+
+    @Test
+    public void testClassThenShortestFirst() {
+        JobScheduler.Task bigBatch = task(JobPriority.BATCH, 10);
+        JobScheduler.Task longStream = task(JobPriority.NORMAL, 4_000_000_000L);
+        JobScheduler.Task shortClip = task(JobPriority.NORMAL, 5_000_000L);
+        JobScheduler.Task interactive = task(JobPriority.INTERACTIVE, -1);
+
+        long now = System.currentTimeMillis();
+        assertEquals(List.of(interactive, shortClip, longStream, bigBatch),
+                sorted(now, bigBatch, longStream, shortClip, interactive));
+    }
+
+    @Test
+    public void testAgingAndDeadline() {
+        JobScheduler.Task batch = task(JobPriority.BATCH, 1);
+        JobScheduler.Task normal = task(JobPriority.NORMAL, 100);
+        long now = System.currentTimeMillis();
+
+        assertEquals(batch, sorted(now + 10 * MINUTE, batch, normal).getLast());
+        // за 20 минут ожидания BATCH поднялся до INTERACTIVE-класса
+        assertEquals(batch, sorted(now + 20 * MINUTE, batch, normal).getFirst());
+
+        JobScheduler.Task urgent = task(JobPriority.BATCH, 1_000_000_000L);
+        urgent.jobs().getFirst().setDeadline(Instant.ofEpochMilli(now + 5 * MINUTE));
+        assertEquals(urgent, sorted(now, normal, urgent).getFirst());
+    }
+
+    @Test
+    public void testInteractivePreemptsBatch() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            JobScheduler scheduler = new JobScheduler(1, 1, Duration.ofMinutes(10), Duration.ofMinutes(15),
+                    executor, System::currentTimeMillis, null);
+            DownloadJob batchJob = new DownloadJob("https://example.com/archive", Path.of("."));
+            batchJob.setPriority(JobPriority.BATCH);
+            CountDownLatch batchRunning = new CountDownLatch(1);
+            CountDownLatch interactiveRan = new CountDownLatch(1);
+
+            scheduler.submit(List.of(batchJob), () -> {
+                batchRunning.countDown();
+                // «загрузка» идёт, пока её не приостановят
+                while (!batchJob.isPauseRequested()) Thread.onSpinWait();
+            });
+            assertTrue(batchRunning.await(5, TimeUnit.SECONDS));
+
+            DownloadJob clip = new DownloadJob("https://example.com/clip", Path.of("."));
+            clip.setPriority(JobPriority.INTERACTIVE);
+            scheduler.submit(List.of(clip), interactiveRan::countDown);
+
+            assertTrue(interactiveRan.await(5, TimeUnit.SECONDS));
+            assertTrue(batchJob.isPauseRequested());
+            assertFalse(clip.isPauseRequested());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReconsiderAfterCancelAndReprioritize() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            JobScheduler scheduler = new JobScheduler(1, 1, Duration.ofMinutes(10), Duration.ofMinutes(15),
+                    executor, System::currentTimeMillis, null);
+            DownloadJob running = new DownloadJob("https://example.com/archive", Path.of("."));
+            running.setPriority(JobPriority.NORMAL);
+            CountDownLatch started = new CountDownLatch(1);
+            scheduler.submit(List.of(running), () -> {
+                started.countDown();
+                while (!running.isPauseRequested()) Thread.onSpinWait();
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // отменённая в очереди задача не ждёт слота
+            DownloadJob dropped = new DownloadJob("https://example.com/dropped", Path.of("."));
+            CountDownLatch droppedRan = new CountDownLatch(1);
+            scheduler.submit(List.of(dropped), droppedRan::countDown);
+            dropped.cancel();
+            scheduler.reconsider();
+            assertTrue(droppedRan.await(5, TimeUnit.SECONDS));
+            assertFalse(running.isPauseRequested());
+
+            // поднятая до INTERACTIVE задача вытесняет работающую
+            DownloadJob urgent = new DownloadJob("https://example.com/urgent", Path.of("."));
+            urgent.setPriority(JobPriority.BATCH);
+            CountDownLatch urgentRan = new CountDownLatch(1);
+            scheduler.submit(List.of(urgent), urgentRan::countDown);
+            assertEquals(1, scheduler.pendingCount());
+            urgent.setPriority(JobPriority.INTERACTIVE);
+            scheduler.reconsider();
+            assertTrue(urgentRan.await(5, TimeUnit.SECONDS));
+            assertTrue(running.isPauseRequested());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
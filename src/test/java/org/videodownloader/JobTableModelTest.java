@@ -0,0 +1,46 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class JobTableModelTest {
+
+    @Test
+    public void testEventsMergedIntoOneUpdatePerFlush() {
+        JobTableModel model = new JobTableModel();
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+
+        List<DownloadJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            DownloadJob job = new DownloadJob("https://example.com/v" + i, Path.of("."));
+            jobs.add(job);
+            model.jobChanged(job);
+        }
+        model.flush();
+        assertEquals(5, model.getRowCount());
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.INSERT, events.getFirst().getType());
+
+        // сотни строк прогресса двух задач — одно событие на их диапазон строк
+        events.clear();
+        for (int n = 0; n < 300; n++) {
+            jobs.get(1).setProgress(new YtDlpProgress(n / 3.0, 1 << 20, 1024, 10, -1));
+            model.jobChanged(jobs.get(1));
+            model.jobChanged(jobs.get(3));
+        }
+        model.flush();
+        model.flush();
+        assertEquals(1, events.size());
+        assertEquals(TableModelEvent.UPDATE, events.getFirst().getType());
+        assertEquals(1, events.getFirst().getFirstRow());
+        assertEquals(3, events.getFirst().getLastRow());
+        assertEquals(100, model.getValueAt(1, JobTableModel.COL_PROGRESS));
+    }
+}
@@ -0,0 +1,62 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LoadSamplerTest {
+
+    private static DownloadJob job(String url, JobState state, long speed) {
+        DownloadJob job = new DownloadJob(url, Path.of("."));
+        job.setState(state);
+        if (speed >= 0) job.setProgress(new YtDlpProgress(10, 1 << 30, speed, 60, -1));
+        return job;
+    }
+
+    @Test
+    public void testRingKeepsWindowInOrder() {
+        LoadSampler sampler = new LoadSampler(Duration.ofSeconds(3));
+        DownloadJob a = job("https://a.example.com/1", JobState.DOWNLOADING, 1000);
+        DownloadJob b = job("https://b.example.com/2", JobState.DOWNLOADING, 500);
+        DownloadJob waiting = job("https://a.example.com/3", JobState.QUEUED, -1);
+        // приостановленная скорость не считается, хотя прогресс остался
+        DownloadJob paused = job("https://a.example.com/4", JobState.PAUSED, 9999);
+
+        for (int t = 1; t <= 5; t++) {
+            sampler.sample(t * 1000L, List.of(a, b, waiting, paused), t);
+        }
+        LoadSampler.View view = new LoadSampler.View(sampler.capacity());
+        sampler.copyTo(view);
+
+        // окно из трёх замеров после перезаписи кольца — от старых к новым
+        assertEquals(3, view.count);
+        assertArrayEquals(new long[]{3000, 4000, 5000}, view.times);
+        assertArrayEquals(new int[]{3, 4, 5}, view.browsers);
+        assertArrayEquals(new int[]{2, 2, 2}, view.active);
+        assertArrayEquals(new int[]{2, 2, 2}, view.queued);
+        assertEquals(1500, view.total[2]);
+        assertEquals("a.example.com", view.hostNames[0]);
+        assertEquals(1000, view.hosts[0][2]);
+        assertEquals(500, view.hosts[1][2]);
+    }
+
+    @Test
+    public void testExtraHostsGoToOther() {
+        LoadSampler sampler = new LoadSampler(Duration.ofSeconds(10));
+        List<DownloadJob> jobs = new ArrayList<>();
+        for (int h = 0; h < LoadSampler.MAX_HOSTS + 2; h++) {
+            jobs.add(job("https://h" + h + ".example.com/v", JobState.DOWNLOADING, 100));
+        }
+        sampler.sample(1000, jobs, 0);
+        LoadSampler.View view = new LoadSampler.View(sampler.capacity());
+        sampler.copyTo(view);
+        assertEquals(LoadSampler.OTHER_HOSTS, view.hostNames[LoadSampler.MAX_HOSTS]);
+        assertEquals(200, view.hosts[LoadSampler.MAX_HOSTS][0]);
+    }
+}
@@ -0,0 +1,35 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoadTest {
+
+    /** Нагрузочный прогон; в обычную сборку не входит — только {@code mvn test -Pload-test}. */
+    @Test
+    @Tag("load")
+    public void testLoad() throws Exception {
+        LoadTestHarness.Report report = LoadTestHarness.run(LoadTestHarness.Config.fromSystemProperties(),
+                Path.of(System.getProperty("buildDir", "target"), "load-test"));
+        System.out.print(report.format());
+        // сбои сервера внесены с расчётом на повторы: задача должна их пережить
+        assertEquals(0, report.failed(), report.format());
+    }
+
+    /** Короткий прогон в обычной сборке: заглушка, пакеты, HLS и повторы после сбоев работают вместе. */
+    @Test
+    public void testSmallRunWithInjectedFailures() throws Exception {
+        LoadTestHarness.Config config = new LoadTestHarness.Config(4, 2, 0.5, true, false,
+                new FakeMediaServer.Options(256 << 10, 4, Duration.ofMillis(5), 0, 0.2, 7), Duration.ofSeconds(120));
+        LoadTestHarness.Report report = LoadTestHarness.run(config, null);
+        assertEquals(4, report.succeeded(), report.format());
+        assertEquals(4L * (256 << 10), report.bytes());
+        assertTrue(report.p50Millis() > 0);
+    }
+}
@@ -0,0 +1,298 @@
+package org.videodownloader;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * Нагрузочный прогон без сети: {@link FakeMediaServer} раздаёт синтетические ролики, вместо yt-dlp работает
+ * {@link FakeYtDlp}, а N задач идут через настоящий {@link VideoDownloadManager} — очередь, пакеты, сторож
+ * зависаний, журнал, история, дедупликация. Итог — {@link Report}: пропускная способность, задержка задач
+ * (постановка → итог) по перцентилям и расход ресурсов JVM; каждый прогон дописывается строкой в CSV,
+ * чтобы сравнивать прогоны между собой.
+ * <p>
+ * Запуск: {@code mvn test -Pload-test} (параметры — системные свойства {@code loadtest.*}, см. {@link Config#fromSystemProperties})
+ * или {@link #main} из IDE.
+ */
+final class LoadTestHarness {
+
+    /**
+     * @param jobs        сколько задач поставить разом
+     * @param concurrency предел одновременных задач (и задач одного сайта — здесь он один)
+     * @param hlsShare    доля роликов, раздаваемых HLS-плейлистом
+     * @param batch       пакетный режим yt-dlp (несколько URL на процесс)
+     * @param sizeProbe   опрашивать размер роликов перед постановкой в очередь
+     * @param server      параметры сервера
+     * @param timeout     предел на весь прогон
+     */
+    record Config(int jobs, int concurrency, double hlsShare, boolean batch, boolean sizeProbe,
+                  FakeMediaServer.Options server, Duration timeout) {
+
+        static Config fromSystemProperties() {
+            FakeMediaServer.Options d = FakeMediaServer.Options.defaults();
+            return new Config(
+                    Integer.getInteger("loadtest.jobs", 40),
+                    Integer.getInteger("loadtest.concurrency", 8),
+                    Double.parseDouble(System.getProperty("loadtest.hlsShare", "0.25")),
+                    Boolean.parseBoolean(System.getProperty("loadtest.batch", "true")),
+                    Boolean.parseBoolean(System.getProperty("loadtest.sizeProbe", "true")),
+                    new FakeMediaServer.Options(
+                            Long.getLong("loadtest.mediaKiB", d.mediaBytes() >> 10) << 10,
+                            Integer.getInteger("loadtest.hlsSegments", d.hlsSegments()),
+                            Duration.ofMillis(Long.getLong("loadtest.latencyMs", d.latency().toMillis())),
+                            Long.getLong("loadtest.bandwidthKiB", 4096) << 10,
+                            Double.parseDouble(System.getProperty("loadtest.failureRate", "0.02")),
+                            Long.getLong("loadtest.seed", d.seed())),
+                    Duration.ofSeconds(Long.getLong("loadtest.timeoutSec", 600)));
+        }
+    }
+
+    record Report(Config config, int succeeded, int failed, long bytes, Duration wall, long p50Millis, long p90Millis,
+                  long p99Millis, long maxMillis, long requests, long failuresInjected, int peakThreads,
+                  int peakChildProcesses, long peakHeapBytes, Duration jvmCpu, long gcCount, Duration gcTime) {
+
+        double mibPerSecond() {
+            return bytes / (1024.0 * 1024) / Math.max(0.001, wall.toMillis() / 1000.0);
+        }
+
+        String format() {
+            FakeMediaServer.Options s = config.server();
+            return String.format(Locale.ROOT, """
+                            Load test: %d jobs, concurrency %d, %d KiB each, %.0f%% HLS, batch %s, probe %s
+                              server: latency %d ms, %d KiB/s per connection, failure rate %.1f%%, seed %d
+                              jobs: %d ok, %d failed in %.1f s
+                              throughput: %.2f MiB/s (%.1f MiB total)
+                              job latency: p50 %d ms, p90 %d ms, p99 %d ms, max %d ms
+                              server: %d requests, %d failures injected
+                              resources: peak %d threads, %d child processes, %.1f MiB heap; JVM CPU %.1f s; GC %d (%d ms)
+                            """,
+                    config.jobs(), config.concurrency(), s.mediaBytes() >> 10, config.hlsShare() * 100, config.batch(),
+                    config.sizeProbe(), s.latency().toMillis(), s.bytesPerSecond() >> 10, s.failureRate() * 100,
+                    s.seed(), succeeded, failed, wall.toMillis() / 1000.0, mibPerSecond(), bytes / (1024.0 * 1024),
+                    p50Millis, p90Millis, p99Millis, maxMillis, requests, failuresInjected, peakThreads,
+                    peakChildProcesses, peakHeapBytes / (1024.0 * 1024), jvmCpu.toMillis() / 1000.0, gcCount,
+                    gcTime.toMillis());
+        }
+
+        static final String CSV_HEADER = "time,jobs,concurrency,media_kib,hls_share,batch,size_probe,latency_ms,"
+                + "bandwidth_kib,failure_rate,seed,ok,failed,wall_ms,mib_per_s,p50_ms,p90_ms,p99_ms,max_ms,"
+                + "requests,failures_injected,peak_threads,peak_children,peak_heap_mib,jvm_cpu_ms,gc_count,gc_ms";
+
+        String csv() {
+            FakeMediaServer.Options s = config.server();
+            return String.join(",", LocalDateTime.now().withNano(0).toString(), str(config.jobs()),
+                    str(config.concurrency()), str(s.mediaBytes() >> 10), str(config.hlsShare()), str(config.batch()),
+                    str(config.sizeProbe()), str(s.latency().toMillis()), str(s.bytesPerSecond() >> 10),
+                    str(s.failureRate()), str(s.seed()), str(succeeded), str(failed), str(wall.toMillis()),
+                    String.format(Locale.ROOT, "%.3f", mibPerSecond()), str(p50Millis), str(p90Millis),
+                    str(p99Millis), str(maxMillis), str(requests), str(failuresInjected), str(peakThreads),
+                    str(peakChildProcesses), str(peakHeapBytes >> 20), str(jvmCpu.toMillis()), str(gcCount),
+                    str(gcTime.toMillis()));
+        }
+
+        private static String str(Object o) {
+            return String.valueOf(o);
+        }
+    }
+
+    /** Пиковые значения ресурсов, снимаемые раз в 100 мс. */
+    private static final class ResourceSampler implements AutoCloseable {
+        private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "load-test-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        volatile int peakThreads;
+        volatile int peakChildren;
+        volatile long peakHeap;
+
+        ResourceSampler() {
+            timer.scheduleAtFixedRate(this::sample, 0, 100, TimeUnit.MILLISECONDS);
+        }
+
+        private void sample() {
+            peakThreads = Math.max(peakThreads, ManagementFactory.getThreadMXBean().getThreadCount());
+            peakChildren = Math.max(peakChildren, (int) ProcessHandle.current().descendants().count());
+            peakHeap = Math.max(peakHeap, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+
+        @Override
+        public void close() {
+            timer.shutdownNow();
+        }
+    }
+
+    private LoadTestHarness() {}
+
+    public static void main(String[] args) throws Exception {
+        Report report = run(Config.fromSystemProperties(), Path.of("target", "load-test"));
+        System.out.print(report.format());
+    }
+
+    /**
+     * Один прогон. Рабочая папка (состояние приложения, загрузки, обёртка yt-dlp) создаётся во временной
+     * и удаляется; в resultsDir дописывается results.csv. Системные свойства приложения на время прогона
+     * подменяются и потом восстанавливаются.
+     */
+    static Report run(Config config, Path resultsDir) throws Exception {
+        Path work = Files.createTempDirectory("videodownloader-load");
+        Map<String, String> previous = new HashMap<>();
+        try (FakeMediaServer server = new FakeMediaServer(config.server())) {
+            setProperty(previous, "home", work.resolve("home").toString());
+            setProperty(previous, "ytdlp", writeYtDlpWrapper(work).toString());
+            setProperty(previous, "maxConcurrentJobs", Integer.toString(config.concurrency()));
+            setProperty(previous, "maxJobsPerHost", Integer.toString(config.concurrency()));
+            setProperty(previous, "batch", Boolean.toString(config.batch()));
+            setProperty(previous, "sizeProbe", Boolean.toString(config.sizeProbe()));
+
+            List<String> urls = new ArrayList<>();
+            int hlsEvery = config.hlsShare() > 0 ? (int) Math.max(1, Math.round(1 / config.hlsShare())) : 0;
+            for (int i = 1; i <= config.jobs(); i++) {
+                urls.add(server.pageUrl(i, hlsEvery > 0 && i % hlsEvery == 0));
+            }
+            Report report = drive(config, server, urls, work.resolve("downloads"));
+            if (resultsDir != null) appendCsv(resultsDir.resolve("results.csv"), report);
+            return report;
+        } finally {
+            previous.forEach((key, value) -> {
+                if (value == null) System.clearProperty(key);
+                else System.setProperty(key, value);
+            });
+            deleteTree(work);
+        }
+    }
+
+    private static Report drive(Config config, FakeMediaServer server, List<String> urls, Path downloads)
+            throws InterruptedException, TimeoutException {
+        Map<Long, Long> finishedAt = new ConcurrentHashMap<>();
+        VideoDownloadManager manager = new VideoDownloadManager();
+        manager.setSelectedOutputPath(downloads.toString());
+        manager.addJobObserver(job -> {
+            if (job.getState().isTerminal()) finishedAt.putIfAbsent(job.getId(), System.currentTimeMillis());
+        });
+
+        long cpuBefore = processCpuNanos();
+        long[] gcBefore = gcTotals();
+        long started = System.nanoTime();
+        List<DownloadJob> jobs;
+        try (ResourceSampler sampler = new ResourceSampler()) {
+            jobs = manager.downloadVideos(urls, JobOptions.INTERACTIVE, status -> { });
+            long deadline = System.nanoTime() + config.timeout().toNanos();
+            while (!jobs.stream().allMatch(j -> finishedAt.containsKey(j.getId()))) {
+                if (System.nanoTime() > deadline) {
+                    throw new TimeoutException("Load test did not finish in " + config.timeout());
+                }
+                Thread.sleep(50);
+            }
+            Duration wall = Duration.ofNanos(System.nanoTime() - started);
+            long[] gcAfter = gcTotals();
+
+            List<Long> latencies = new ArrayList<>();
+            int ok = 0;
+            long bytes = 0;
+            for (DownloadJob job : jobs) {
+                latencies.add(finishedAt.get(job.getId()) - job.getQueuedAt());
+                if (job.getState() == JobState.DONE) {
+                    ok++;
+                    bytes += size(job.getSavedFile());
+                }
+            }
+            latencies.sort(Comparator.naturalOrder());
+            return new Report(config, ok, jobs.size() - ok, bytes, wall,
+                    percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                    latencies.isEmpty() ? 0 : latencies.getLast(), server.requests.get(), server.failuresInjected.get(),
+                    sampler.peakThreads, sampler.peakChildren, sampler.peakHeap,
+                    Duration.ofNanos(processCpuNanos() - cpuBefore), gcAfter[0] - gcBefore[0],
+                    Duration.ofMillis(gcAfter[1] - gcBefore[1]));
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    /**
+     * Исполняемая обёртка «yt-dlp» в dir: запускает {@link FakeYtDlp} той же JVM с классами тестов.
+     * Флаги — на быстрый старт: процесс живёт секунды, как и настоящий yt-dlp.
+     */
+    static Path writeYtDlpWrapper(Path dir) throws IOException, URISyntaxException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String classes = Path.of(FakeYtDlp.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        String args = "-XX:TieredStopAtLevel=1 -XX:+UseSerialGC -Xshare:auto -cp \"" + classes + "\" "
+                + FakeYtDlp.class.getName();
+        boolean windows = System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win");
+        Path wrapper = dir.resolve(windows ? "yt-dlp.cmd" : "yt-dlp");
+        String script = windows
+                ? "@echo off\r\n\"" + java + "\" " + args + " %*\r\n"
+                : "#!/bin/sh\nexec \"" + java + "\" " + args + " \"$@\"\n";
+        Files.writeString(wrapper, script, StandardCharsets.UTF_8);
+        if (!wrapper.toFile().setExecutable(true)) throw new IOException("Cannot make " + wrapper + " executable");
+        return wrapper;
+    }
+
+    private static void setProperty(Map<String, String> previous, String name, String value) {
+        String key = "videodownloader." + name;
+        previous.putIfAbsent(key, System.getProperty(key));
+        System.setProperty(key, value);
+    }
+
+    static long percentile(List<Long> sorted, double q) {
+        if (sorted.isEmpty()) return 0;
+        return sorted.get(Math.max(0, (int) Math.ceil(q * sorted.size()) - 1));
+    }
+
+    private static long size(Path file) {
+        try {
+            return file == null ? 0 : Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long processCpuNanos() {
+        return ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os
+                ? os.getProcessCpuTime() : 0;
+    }
+
+    /** Число сборок и их суммарное время (мс) по всем сборщикам. */
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    private static void appendCsv(Path file, Report report) throws IOException {
+        Files.createDirectories(file.getParent());
+        String line = (Files.exists(file) ? "" : Report.CSV_HEADER + "\n") + report.csv() + "\n";
+        Files.writeString(file, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void deleteTree(Path root) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException ignored) {
+            // временная папка — не страшно, если что-то останется
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.videodownloader;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogManagerTest {
+
+    private static LoggingEvent event(Level level, String message, String job) {
+        LoggingEvent ev = new LoggingEvent();
+        ev.setLoggerContext(new LoggerContext());
+        ev.setLevel(level);
+        ev.setLoggerName("org.videodownloader.Test");
+        ev.setMessage(message);
+        ev.setMDCPropertyMap(job == null ? Map.of() : Map.of(LogManager.MDC_JOB, job));
+        return ev;
+    }
+
+    @Test
+    public void testBufferKeepsNewestAndResumesFromCursor() {
+        LogManager.Buffer buffer = new LogManager.Buffer(3);
+        for (int i = 0; i < 5; i++) buffer.add(event(Level.INFO, "m" + i, null));
+
+        List<String> seen = new ArrayList<>();
+        long cursor = buffer.read(0, e -> seen.add(e.event().getFormattedMessage()));
+        // перезаписанные m0 и m1 пропущены
+        assertEquals(List.of("m2", "m3", "m4"), seen);
+        assertEquals(5, cursor);
+
+        seen.clear();
+        buffer.add(event(Level.INFO, "m5", null));
+        assertEquals(6, buffer.read(cursor, e -> seen.add(e.event().getFormattedMessage())));
+        assertEquals(List.of("m5"), seen);
+    }
+
+    @Test
+    public void testFilterByLevelAndJob() {
+        assertFalse(LogManager.matches(event(Level.DEBUG, "x", null), Level.INFO, ""));
+        assertTrue(LogManager.matches(event(Level.WARN, "x", null), Level.INFO, ""));
+        // пакет пишет номера всех своих задач
+        assertTrue(LogManager.matches(event(Level.INFO, "x", "4,7,9"), Level.INFO, "7"));
+        assertFalse(LogManager.matches(event(Level.INFO, "x", "17"), Level.INFO, "7"));
+        assertFalse(LogManager.matches(event(Level.INFO, "x", null), Level.INFO, "7"));
+    }
+}
@@ -0,0 +1,60 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsServerTest {
+
+    @Test
+    public void testHistogramAndLiveState() {
+        LatencyHistogram h = Metrics.latency(Metrics.Stage.PAGE_LOAD, "https://prom.example.com/a", "ok");
+        h.recordMicros(3_000);
+        h.recordMicros(200_000);
+        h.recordMicros(900_000_000);
+
+        DownloadJob running = new DownloadJob("https://prom.example.com/b", Path.of("."));
+        running.setState(JobState.DOWNLOADING);
+        running.setProgress(new YtDlpProgress(10, 1000, 2048, 5, -1));
+
+        StringBuilder sb = new StringBuilder();
+        MetricsServer.render(sb, List.of(running));
+        String text = sb.toString();
+
+        String labels = "host=\"prom.example.com\",outcome=\"ok\"";
+        assertTrue(text.contains("# TYPE videodownloader_page_load_seconds histogram\n"));
+        // корзины накопительные; 900 с не попадает ни в одну конечную
+        assertTrue(text.contains("videodownloader_page_load_seconds_bucket{" + labels + ",le=\"0.005\"} 1\n"));
+        assertTrue(text.contains("videodownloader_page_load_seconds_bucket{" + labels + ",le=\"0.25\"} 2\n"));
+        assertTrue(text.contains("videodownloader_page_load_seconds_bucket{" + labels + ",le=\"600\"} 2\n"));
+        assertTrue(text.contains("videodownloader_page_load_seconds_bucket{" + labels + ",le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("videodownloader_page_load_seconds_count{" + labels + "} 3\n"));
+        assertTrue(text.contains("videodownloader_jobs{state=\"downloading\"} 1\n"));
+        assertTrue(text.contains("videodownloader_jobs{state=\"queued\"} 0\n"));
+        assertTrue(text.contains("videodownloader_host_speed_bytes_per_second{host=\"prom.example.com\"} 2048\n"));
+        // одна строка TYPE на семейство
+        assertEquals(text.indexOf("# TYPE videodownloader_page_load_seconds "),
+                text.lastIndexOf("# TYPE videodownloader_page_load_seconds "));
+    }
+
+    @Test
+    public void testServesOverHttp() throws Exception {
+        Metrics.counter("bytes", "https://http.example.com/v", "ok").add(42);
+        try (MetricsServer server = new MetricsServer("127.0.0.1", 0, List::of)) {
+            HttpResponse<String> resp = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + "/metrics")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, resp.statusCode());
+            assertEquals(MetricsServer.CONTENT_TYPE, resp.headers().firstValue("Content-Type").orElse(""));
+            assertTrue(resp.body().contains("videodownloader_bytes_total{host=\"http.example.com\",outcome=\"ok\"} 42\n"));
+        }
+    }
+}
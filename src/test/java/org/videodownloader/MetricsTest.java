@@ -0,0 +1,50 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTest {
+
+    @Test
+    public void testBucketsRoundTripWithBoundedError() {
+        for (long v : new long[]{0, 1, 31, 32, 33, 47, 1000, 123_456, 60_000_000L, Long.MAX_VALUE / 2}) {
+            long top = LatencyHistogram.highest(LatencyHistogram.index(v));
+            assertTrue(top >= v, "upper bound below value " + v);
+            // погрешность корзины — не больше 1/HALF значения
+            assertTrue(top - v <= v / LatencyHistogram.HALF, "bucket too wide for " + v);
+        }
+        // соседние корзины стыкуются без пропусков
+        for (int i = 1; i < 500; i++) {
+            assertEquals(LatencyHistogram.index(LatencyHistogram.highest(i - 1) + 1), i);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) h.recordMicros(ms * 1000L);
+        assertEquals(1000, h.getCount());
+        assertEquals(500.5, h.getMeanMillis(), 1e-9);
+        assertEquals(500, h.getP50Millis(), 500.0 / LatencyHistogram.HALF);
+        assertEquals(990, h.getP99Millis(), 990.0 / LatencyHistogram.HALF);
+        assertEquals(1000, h.getMaxMillis(), 1e-9);
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getP90Millis());
+    }
+
+    @Test
+    public void testExportedOverJmx() throws Exception {
+        LatencyHistogram h = Metrics.latency(Metrics.Stage.QUEUE_WAIT, "https://jmx.example.com/v/1", "ok");
+        assertSame(h, Metrics.latency(Metrics.Stage.QUEUE_WAIT, "https://jmx.example.com/v/2", "ok"));
+        h.recordMicros(2_000);
+        Object count = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                Metrics.objectName("Latency", "queue_wait", "jmx.example.com", "ok"), "Count");
+        assertEquals(h.getCount(), count);
+    }
+}
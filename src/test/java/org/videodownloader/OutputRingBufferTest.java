@@ -0,0 +1,39 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutputRingBufferTest {
+
+    @Test
+    public void testKeepsOnlyLastLines() {
+        OutputRingBuffer tail = new OutputRingBuffer(3, 1024);
+        for (int i = 1; i <= 10; i++) {
+            tail.add("line " + i);
+        }
+        assertEquals(List.of("line 8", "line 9", "line 10"), tail.lines());
+        assertTrue(tail.snapshot().startsWith("... (7 earlier line(s) omitted)"));
+    }
+
+    @Test
+    public void testByteLimitEvictsOldest() {
+        OutputRingBuffer tail = new OutputRingBuffer(100, 20);
+        tail.add("aaaaaaaaa");   // 10 байт с переводом строки
+        tail.add("bbbbbbbbb");
+        tail.add("ccccccccc");
+        assertEquals(List.of("bbbbbbbbb", "ccccccccc"), tail.lines());
+        assertEquals(20, tail.byteSize());
+    }
+
+    @Test
+    public void testOversizedLineIsKept() {
+        OutputRingBuffer tail = new OutputRingBuffer(5, 8);
+        tail.add("short");
+        tail.add("much longer than the limit");
+        assertEquals(List.of("much longer than the limit"), tail.lines());
+    }
+}
@@ -0,0 +1,129 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openqa.selenium.devtools.v136.network.model.ResourceType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PageReplayTest {
+    static final String PAGE = "https://fixture.test/watch/1";
+    static final String EMBED = "https://fixture.test/embed/1";
+    static final String MEDIA = "https://media.fixture.test/v/1.mp4";
+
+    /**
+     * Первый архив корпуса: страница с плеером и iframe, встраиваемая страница — ресурс iframe_content.html
+     * (пустая, медиа в ней нет), медиа без тела и короткая ссылка с переадресацией на страницу.
+     */
+    static PageArchive iframeContentFixture(Path dir) throws IOException {
+        byte[] embed;
+        try (InputStream in = PageReplayTest.class.getResourceAsStream("/iframe_content.html")) {
+            assertNotNull(in, "iframe_content.html");
+            embed = in.readAllBytes();
+        }
+        String page = "<!doctype html><html><head><title>Fixture</title></head><body>"
+                + "<video src=\"" + MEDIA + "\" autoplay muted></video>"
+                + "<iframe src=\"/embed/1\"></iframe></body></html>";
+        PageArchive archive = PageArchive.create(dir);
+        archive.add("GET", "https://fixture.test/s/1", 302, null, PAGE, null);
+        archive.add("GET", PAGE, 200, "text/html", null, page.getBytes(StandardCharsets.UTF_8));
+        archive.add("GET", EMBED, 200, "text/html", null, embed);
+        archive.add("GET", MEDIA, 200, "video/mp4", null, null);
+        archive.save();
+        return archive;
+    }
+
+    @Test
+    public void testArchiveRoundTrip(@TempDir Path dir) throws IOException {
+        iframeContentFixture(dir);
+        PageArchive archive = PageArchive.open(dir);
+
+        assertEquals(4, archive.exchanges().size());
+        PageArchive.Exchange embed = archive.find("GET", EMBED + "#autoplay");
+        assertNotNull(embed);
+        assertArrayEquals(PageReplayTest.class.getResourceAsStream("/iframe_content.html").readAllBytes(),
+                archive.body(embed));
+        PageArchive.Exchange redirect = archive.find("GET", "https://fixture.test/s/1");
+        assertEquals(302, redirect.status());
+        assertEquals(PAGE, redirect.location());
+        assertTrue(PageReplayer.headers(redirect).stream().anyMatch(h -> h.getName().equals("Location")));
+        // у медиа только заголовки
+        assertEquals(0, archive.body(archive.find("GET", MEDIA)).length);
+        assertNull(archive.find("POST", PAGE));
+        assertNull(archive.find("GET", "https://fixture.test/other"));
+    }
+
+    @Test
+    public void testMediaBodiesAreNotRecorded() {
+        assertTrue(PageRecorder.isMedia(ResourceType.MEDIA, "application/octet-stream", "https://a/b"));
+        assertTrue(PageRecorder.isMedia(ResourceType.XHR, "video/mp2t", "https://a/seg-1"));
+        assertTrue(PageRecorder.isMedia(ResourceType.XHR, null, "https://a/seg-1.ts?token=x"));
+        assertFalse(PageRecorder.isMedia(ResourceType.XHR, "audio/mpegurl", "https://a/index.m3u8"));
+        assertFalse(PageRecorder.isMedia(ResourceType.SCRIPT, "text/javascript", "https://a/player.js"));
+    }
+
+    /**
+     * Извлечение по архиву в настоящем Chrome: задержка и пиковая память браузера без сети.
+     * Нужен установленный Chrome, поэтому только {@code mvn test -Pload-test}; число прогонов — loadtest.replayRuns.
+     */
+    @Test
+    @Tag("load")
+    public void testExtractionFromFixture(@TempDir Path dir) throws Exception {
+        iframeContentFixture(dir);
+        int runs = Integer.getInteger("loadtest.replayRuns", 5);
+        String previous = System.getProperty("videodownloader.replay");
+        System.setProperty("videodownloader.replay", dir.toString());
+        AtomicLong peakRss = new AtomicLong();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakRss.accumulateAndGet(childrenRssKiB(), Math::max),
+                0, 100, TimeUnit.MILLISECONDS);
+        List<Long> millis = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs; i++) {
+                long began = System.nanoTime();
+                assertEquals(MEDIA, VideoExtractor.extractVideoUrl(PAGE));
+                millis.add((System.nanoTime() - began) / 1_000_000);
+            }
+        } finally {
+            sampler.shutdownNow();
+            if (previous == null) System.clearProperty("videodownloader.replay");
+            else System.setProperty("videodownloader.replay", previous);
+        }
+        Collections.sort(millis);
+        System.out.printf("replay extraction: runs=%d p50=%d ms max=%d ms peak browser RSS=%d MiB%n",
+                runs, LoadTestHarness.percentile(millis, 0.5), millis.get(millis.size() - 1), peakRss.get() >> 10);
+    }
+
+    /** Сумма VmRSS дочерних процессов (Chrome и его рендереры); вне Linux — 0. */
+    private static long childrenRssKiB() {
+        return ProcessHandle.current().descendants().mapToLong(p -> {
+            try {
+                for (String line : Files.readAllLines(Path.of("/proc", Long.toString(p.pid()), "status"))) {
+                    if (line.startsWith("VmRSS:")) return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            } catch (IOException | NumberFormatException e) {
+                // процесс уже завершился
+            }
+            return 0;
+        }).sum();
+    }
+}
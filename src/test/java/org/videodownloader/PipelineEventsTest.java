@@ -0,0 +1,52 @@
+package org.videodownloader;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PipelineEventsTest {
+
+    @Test
+    public void testStageEventCarriesJobHostAndOutcome(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("pipeline.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.videodownloader.YtDlpProcess");
+            recording.disable("org.videodownloader.TitleFetch");
+            recording.start();
+
+            PipelineEvents.YtDlpProcess event = new PipelineEvents.YtDlpProcess();
+            event.begin();
+            event.exitCode = 0;
+            event.bytes = 1234;
+            event.finish("7", "https://media.example.com/v/1", "success");
+
+            // выключенный тип не пишется
+            PipelineEvents.TitleFetch skipped = new PipelineEvents.TitleFetch();
+            skipped.begin();
+            skipped.finish("8", "https://media.example.com/v/2", "ok");
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().startsWith("org.videodownloader."))
+                .toList();
+        assertEquals(1, events.size());
+        RecordedEvent e = events.getFirst();
+        assertEquals("org.videodownloader.YtDlpProcess", e.getEventType().getName());
+        assertEquals("7", e.getString("job"));
+        assertEquals("media.example.com", e.getString("host"));
+        assertEquals("success", e.getString("outcome"));
+        assertEquals(1234, e.getLong("bytes"));
+        assertTrue(e.getEventType().getCategoryNames().contains(PipelineEvents.CATEGORY));
+    }
+}
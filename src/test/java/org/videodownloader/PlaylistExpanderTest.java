@@ -0,0 +1,63 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+public class PlaylistExpanderTest {
+
+    @Test
+    public void testAutoModeRecognisesListings() {
+        PlaylistExpander.Mode auto = PlaylistExpander.Mode.AUTO;
+        assertTrue(PlaylistExpander.shouldExpand("https://www.youtube.com/playlist?list=PL123", auto));
+        assertTrue(PlaylistExpander.shouldExpand("https://www.youtube.com/watch?v=abc&list=PL123", auto));
+        assertTrue(PlaylistExpander.shouldExpand("https://www.youtube.com/@somechannel/videos", auto));
+        assertTrue(PlaylistExpander.shouldExpand("https://soundcloud.com/artist/sets/album", auto));
+        assertFalse(PlaylistExpander.shouldExpand("https://www.youtube.com/watch?v=abc", auto));
+        assertFalse(PlaylistExpander.shouldExpand("https://example.com/video/42", auto));
+        assertFalse(PlaylistExpander.shouldExpand("https://www.youtube.com/playlist?list=PL123", PlaylistExpander.Mode.OFF));
+    }
+
+    @Test
+    public void testParseLine() {
+        PlaylistExpander.Entry e = PlaylistExpander.parseLine("https://www.youtube.com/watch?v=abc\tMy clip\tabc");
+        assertEquals("https://www.youtube.com/watch?v=abc", e.url());
+        assertEquals("My clip", e.title());
+        assertEquals("abc", e.id());
+        // без id ролик узнаётся по ссылке
+        assertEquals("https://example.com/v/1", PlaylistExpander.parseLine("https://example.com/v/1\tx\tNA").id());
+
+        assertNull(PlaylistExpander.parseLine("https://example.com/v/1\tNA").title());
+        assertNull(PlaylistExpander.parseLine("abc123\tid instead of url"));
+        assertNull(PlaylistExpander.parseLine(""));
+    }
+
+    /** yt-dlp успел выдать часть списка и упал — вызывающий должен узнать, что список неполный. */
+    @Test
+    public void testIncompleteListingIsReported(@TempDir Path dir) throws Exception {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"), "shell stub");
+        Path stub = dir.resolve("yt-dlp");
+        Files.writeString(stub, "#!/bin/sh\nprintf 'https://example.com/v/1\\tOne\\t1\\n"
+                + "https://example.com/v/2\\tTwo\\t2\\n'\nexit 1\n");
+        assertTrue(stub.toFile().setExecutable(true));
+        String previous = System.getProperty("videodownloader.ytdlp");
+        System.setProperty("videodownloader.ytdlp", stub.toString());
+        try {
+            PlaylistExpander.Listing listing = PlaylistExpander.expand("https://example.com/playlist/1",
+                    new CancellationToken());
+            assertFalse(listing.complete());
+            assertEquals(2, listing.entries().size());
+        } finally {
+            if (previous == null) System.clearProperty("videodownloader.ytdlp");
+            else System.setProperty("videodownloader.ytdlp", previous);
+        }
+    }
+}
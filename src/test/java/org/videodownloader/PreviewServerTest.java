@@ -0,0 +1,102 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PreviewServerTest {
+
+    @TempDir
+    Path tmp;
+
+    private static HttpResponse<String> get(URI uri, String range) throws Exception {
+        HttpRequest.Builder rb = HttpRequest.newBuilder(uri);
+        if (range != null) rb.header("Range", range);
+        return HttpClient.newHttpClient().send(rb.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void testRangesOfGrowingFile() throws Exception {
+        Path video = tmp.resolve("clip.mp4");
+        Path part = tmp.resolve("clip.mp4.part");
+        Files.writeString(part, "0123456789");
+        DownloadJob job = new DownloadJob("https://example.com/clip", tmp);
+        job.setSavedFile(video);
+        job.setState(JobState.DOWNLOADING);
+
+        try (PreviewServer server = new PreviewServer(0)) {
+            URI uri = server.publish(job);
+
+            HttpResponse<String> first = get(uri, "bytes=2-5");
+            assertEquals(206, first.statusCode());
+            assertEquals("2345", first.body());
+            // пока файл растёт, полный размер неизвестен
+            assertEquals("bytes 2-5/*", first.headers().firstValue("Content-Range").orElseThrow());
+            assertEquals("video/mp4", first.headers().firstValue("Content-Type").orElseThrow());
+
+            // ещё не записанный диапазон ждёт данных
+            CompletableFuture<HttpResponse<String>> later = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return get(uri, "bytes=10-");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(300);
+            Files.writeString(part, "abcdef", StandardOpenOption.APPEND);
+            HttpResponse<String> tail = later.get(5, TimeUnit.SECONDS);
+            assertEquals(206, tail.statusCode());
+            assertEquals("abcdef", tail.body());
+
+            // yt-dlp переименовал .part, загрузка закончена — размер известен
+            Files.move(part, video);
+            job.setState(JobState.DONE);
+            HttpResponse<String> done = get(uri, "bytes=-4");
+            assertEquals("bytes 12-15/16", done.headers().firstValue("Content-Range").orElseThrow());
+            assertEquals("cdef", done.body());
+            assertEquals(416, get(uri, "bytes=16-").statusCode());
+
+            HttpResponse<String> full = get(uri, null);
+            assertEquals(200, full.statusCode());
+            assertEquals("0123456789abcdef", full.body());
+        }
+    }
+
+    @Test
+    public void testFinishedFilesAreNotPublishedTwice() throws Exception {
+        try (PreviewServer server = new PreviewServer(0)) {
+            Path clip = tmp.resolve("clip.mp4");
+            URI first = server.publish(finished(clip));
+            // каждый предпросмотр готового файла приходит новой задачей-обёрткой
+            assertEquals(first, server.publish(finished(clip)));
+            assertEquals(1, server.published());
+
+            DownloadJob running = new DownloadJob("https://example.com/live", tmp);
+            running.setState(JobState.DOWNLOADING);
+            server.publish(running);
+            for (int i = 0; i < PreviewServer.MAX_FINISHED + 5; i++) {
+                server.publish(finished(tmp.resolve(i + ".mp4")));
+            }
+            assertEquals(PreviewServer.MAX_FINISHED + 1, server.published());
+            assertEquals(404, get(first, null).statusCode());
+        }
+    }
+
+    private DownloadJob finished(Path file) {
+        DownloadJob job = new DownloadJob(file.toUri().toString(), tmp);
+        job.setSavedFile(file);
+        job.setState(JobState.DONE);
+        return job;
+    }
+}
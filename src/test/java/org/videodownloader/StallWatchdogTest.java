@@ -0,0 +1,54 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+public class StallWatchdogTest {
+
+    @Test
+    public void testPostProcessingLines() {
+        assertTrue(StallWatchdog.isPostProcessing("[Merger] Merging formats into \"clip.mkv\""));
+        assertTrue(StallWatchdog.isPostProcessing("[ExtractAudio] Destination: clip.m4a"));
+        assertTrue(StallWatchdog.isPostProcessing("[FixupM3u8] Fixing MPEG-TS in MP4 container of \"clip.mp4\""));
+        assertTrue(StallWatchdog.isPostProcessing("[ffmpeg] Merging formats into \"clip.mp4\""));
+        assertFalse(StallWatchdog.isPostProcessing("[download] Destination: clip.f137.mp4"));
+        assertFalse(StallWatchdog.isPostProcessing("[youtube] abc: Downloading webpage"));
+        assertFalse(StallWatchdog.isPostProcessing(""));
+    }
+
+    /** После строки слияния процесс молчит дольше обычного окна — сторож его не трогает. */
+    @Test
+    public void testSilentMergeIsNotKilled() throws Exception {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"), "sleep");
+        StallWatchdog watchdog = new StallWatchdog(Duration.ofMillis(500), Duration.ofSeconds(30));
+        Process merging = new ProcessBuilder("sleep", "30").start();
+        Process silent = new ProcessBuilder("sleep", "30").start();
+        try (StallWatchdog.Tracker merge = watchdog.watch("merge", merging);
+             StallWatchdog.Tracker plain = watchdog.watch("plain", silent)) {
+            merge.output("[Merger] Merging formats into \"clip.mkv\"");
+            plain.output("[info] clip: Downloading 1 format(s): 137+140");
+
+            Thread.sleep(2_000);
+
+            assertFalse(merge.isStalled());
+            assertTrue(merging.isAlive());
+            // без постобработки то же молчание — зависание
+            assertTrue(plain.isStalled());
+            assertTrue(silent.waitFor(5, TimeUnit.SECONDS));
+
+            // новая фаза загрузки возвращает обычное окно
+            merge.phase();
+            Thread.sleep(2_000);
+            assertTrue(merge.isStalled());
+        } finally {
+            merging.destroyForcibly();
+            silent.destroyForcibly();
+        }
+    }
+}
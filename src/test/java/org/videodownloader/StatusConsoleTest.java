@@ -0,0 +1,44 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StatusConsoleTest {
+
+    @Test
+    public void testCoalesceKeepsLastProgressPerJob() {
+        List<String> batch = List.of(
+                "[1/2] [download]   1.0% of 10MiB",
+                "[2/2] [download] Destination: b.mp4",
+                "[2/2] [download]   5.0% of 20MiB",
+                "[1/2] [download]   2.0% of 10MiB",
+                "[1/2] Merging formats",
+                "[2/2] [download]   6.0% of 20MiB");
+        assertEquals(List.of(
+                "[2/2] [download] Destination: b.mp4",
+                "[1/2] [download]   2.0% of 10MiB",
+                "[1/2] Merging formats",
+                "[2/2] [download]   6.0% of 20MiB"), StatusConsole.coalesce(batch));
+    }
+
+    @Test
+    public void testDocumentDropsOldestLines() {
+        JTextArea area = new JTextArea();
+        int[] frames = {0};
+        StatusConsole console = new StatusConsole(area, 3, () -> frames[0]++);
+        for (int i = 1; i <= 5; i++) console.append("line " + i);
+        console.flush();
+        // очередь длиннее документа — лишнее отброшено ещё до кадра
+        assertEquals("… 3 line(s) skipped\nline 4\nline 5\n", area.getText());
+
+        console.append("line 6");
+        console.flush();
+        console.flush(); // пустой кадр ничего не трогает
+        assertEquals("line 4\nline 5\nline 6\n", area.getText());
+        assertEquals(2, frames[0]);
+    }
+}
@@ -0,0 +1,35 @@
+package org.videodownloader;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class VideoDownloadManagerTest {
+
+    @Test
+    public void testSanitizeForFilename() {
+        assertEquals("a_b_c", VideoDownloadManager.sanitizeForFilename("  a: b\t/\"c\"  "));
+        assertEquals("x_y", VideoDownloadManager.sanitizeForFilename("__x___ _y_"));
+        // NFKC: лигатура раскладывается
+        assertEquals("fin", VideoDownloadManager.sanitizeForFilename("ﬁn"));
+        assertEquals("", VideoDownloadManager.sanitizeForFilename(" _\u0001|"));
+        assertEquals("", VideoDownloadManager.sanitizeForFilename(null));
+    }
+
+    @Test
+    public void testPreferredTitleAndSavedPath() {
+        String html = "<html><head><title>Plain</title><meta name=twitter:title content='Tw'>"
+                + "<meta property=og:title content='Og'></head></html>";
+        assertEquals("Og", VideoDownloadManager.preferredTitle(Jsoup.parse(html)));
+        assertEquals("Plain", VideoDownloadManager.preferredTitle(Jsoup.parse("<title>Plain</title><meta property=og:title content=' '>")));
+        assertNull(VideoDownloadManager.preferredTitle(Jsoup.parse("<p>no title</p>")));
+
+        assertEquals(Path.of("v.mp4").toAbsolutePath(), VideoDownloadManager.savedPathFrom("[download] Destination: v.mp4"));
+        assertNull(VideoDownloadManager.savedPathFrom(""));
+        assertNull(VideoDownloadManager.savedPathFrom("WARNING: [download] Destination: v.mp4"));
+    }
+}
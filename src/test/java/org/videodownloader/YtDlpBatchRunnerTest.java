@@ -0,0 +1,67 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class YtDlpBatchRunnerTest {
+
+    @TempDir
+    Path tmp;
+
+    /**
+     * Вывод пакета разбирается по задачам по отчётам yt-dlp, а не по строкам «Extracting URL»:
+     * длинный URL там укорочен, а встроенный плеер печатает свой адрес вместо адреса задачи.
+     */
+    @Test
+    public void testItemsAreAttributedByOriginalUrl() throws Exception {
+        String previousHome = System.getProperty("videodownloader.home");
+        System.setProperty("videodownloader.home", tmp.resolve("home").toString());
+        FakeMediaServer.Options o = FakeMediaServer.Options.defaults();
+        try (FakeMediaServer server = new FakeMediaServer(new FakeMediaServer.Options(64 * 1024, o.hlsSegments(),
+                Duration.ZERO, 0, 0, o.seed()))) {
+            Path out = Files.createDirectories(tmp.resolve("out"));
+            String longUrl = server.pageUrl(1, false) + "?list=" + "x".repeat(150);
+            String embedUrl = server.baseUrl() + "/watch/embed-2";
+            List<YtDlpBatchRunner.Item> items = List.of(
+                    new YtDlpBatchRunner.Item(new DownloadJob(longUrl, out), "first", 1),
+                    new YtDlpBatchRunner.Item(new DownloadJob(embedUrl, out), "second", 2),
+                    new YtDlpBatchRunner.Item(new DownloadJob(server.pageUrl(3, false), out), "third", 3));
+            List<String> command = List.of(LoadTestHarness.writeYtDlpWrapper(tmp).toString(), "--newline");
+            Queue<String> lines = new ConcurrentLinkedQueue<>();
+
+            new YtDlpBatchRunner(items, out, command, new StallWatchdog(Duration.ofSeconds(30), Duration.ofSeconds(60)),
+                    items.size(), job -> { }).run(lines::add);
+
+            assertTrue(lines.stream().anyMatch(l -> l.contains("Extracting URL: ") && l.contains("...")));
+            String[] ids = {"1", "2", "3"};
+            for (int i = 0; i < items.size(); i++) {
+                YtDlpBatchRunner.Item item = items.get(i);
+                assertTrue(item.succeeded(), item.smartBase);
+                assertEquals(out.resolve(item.smartBase + ".mp4").toAbsolutePath().normalize(), item.savedFile);
+                // содержимое ролика зависит от id — файл достался своей задаче
+                byte[] bytes = Files.readAllBytes(item.savedFile);
+                for (int b = 0; b < bytes.length; b += 997) {
+                    assertEquals(FakeMediaServer.byteAt(ids[i], b), bytes[b], item.smartBase + " @" + b);
+                }
+            }
+            try (Stream<Path> files = Files.list(out)) {
+                assertFalse(files.anyMatch(f -> f.getFileName().toString().startsWith("batch")));
+            }
+        } finally {
+            if (previousHome == null) System.clearProperty("videodownloader.home");
+            else System.setProperty("videodownloader.home", previousHome);
+        }
+    }
+}
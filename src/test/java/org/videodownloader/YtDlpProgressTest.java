@@ -0,0 +1,45 @@
+package org.videodownloader;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class YtDlpProgressTest {
+
+    @Test
+    public void testPlainProgressLine() {
+        YtDlpProgress p = YtDlpProgress.parse("[download]  45.3% of   10.00MiB at  1.50MiB/s ETA 00:05");
+        assertNotNull(p);
+        assertEquals(45.3, p.percent(), 1e-9);
+        assertEquals(10L * 1024 * 1024, p.totalBytes());
+        assertEquals((long) (1.5 * 1024 * 1024), p.speedBytesPerSec());
+        assertEquals(5, p.etaSeconds());
+        assertEquals(-1, p.fragment());
+    }
+
+    @Test
+    public void testFragmentedProgressLine() {
+        YtDlpProgress p = YtDlpProgress.parse("[download]  12.0% of ~ 120.50MiB at 3.00MiB/s ETA 01:02:03 (frag 12/300)");
+        assertNotNull(p);
+        assertEquals(3723, p.etaSeconds());
+        assertEquals(12, p.fragment());
+    }
+
+    @Test
+    public void testUnknownSpeedAndEta() {
+        YtDlpProgress p = YtDlpProgress.parse("[download]   0.0% of    2.00GiB at  Unknown B/s ETA Unknown");
+        assertNotNull(p);
+        assertEquals(-1, p.speedBytesPerSec());
+        assertEquals(-1, p.etaSeconds());
+        assertEquals(0, p.downloadedBytes());
+    }
+
+    @Test
+    public void testNonProgressLines() {
+        assertNull(YtDlpProgress.parse("[download] Destination: C:/Videos_Download/a.mp4"));
+        assertNull(YtDlpProgress.parse("[youtube] Extracting URL: https://example.com"));
+        assertNull(YtDlpProgress.parse(null));
+    }
+}